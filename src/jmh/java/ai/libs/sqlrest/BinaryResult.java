@@ -0,0 +1,54 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.encoding.BinaryResultReader;
+import ai.libs.sqlrest.encoding.BinaryResultWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a query result in the binary encoding of the service, see {@link BinaryResultWriter} for the format.
+ * Integers are read as longs, timestamps as {@link Timestamp}s and decimals as {@link BigDecimal}s.
+ */
+public class BinaryResult {
+
+    public static final String MEDIA_TYPE = BinaryResultWriter.MEDIA_TYPE_VALUE;
+
+    private final String[] columnNames;
+
+    private final byte[] columnTypes;
+
+    private final List<Object[]> rows = new ArrayList<>();
+
+    private BinaryResult(String[] columnNames, byte[] columnTypes) {
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+    }
+
+    public static BinaryResult read(InputStream in) throws IOException {
+        BinaryResultReader reader = new BinaryResultReader(in);
+        BinaryResult result = new BinaryResult(reader.getColumnNames().toArray(new String[0]), reader.getColumnTypes());
+        Object[] row;
+        while ((row = reader.nextRow()) != null) {
+            result.rows.add(row);
+        }
+        return result;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    public byte[] getColumnTypes() {
+        return columnTypes;
+    }
+
+    public List<Object[]> getRows() {
+        return rows;
+    }
+
+}
@@ -0,0 +1,81 @@
+package ai.libs.sqlrest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a query result in the columnar JSON encoding of the service: the column names and types,
+ * followed by the rows as positional arrays.
+ */
+public class ColumnarResult {
+
+    public static final String MEDIA_TYPE = "application/vnd.sqlrest.columnar+json";
+
+    private final List<String> columnNames = new ArrayList<>();
+
+    private final List<String> columnTypes = new ArrayList<>();
+
+    private final List<Object[]> rows = new ArrayList<>();
+
+    public static ColumnarResult read(ObjectMapper mapper, InputStream in) throws IOException {
+        ColumnarResult result = new ColumnarResult();
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                expect(parser.nextToken(), JsonToken.START_ARRAY);
+                if ("columns".equals(field)) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String key = parser.getCurrentName();
+                            parser.nextToken();
+                            if ("name".equals(key)) {
+                                result.columnNames.add(parser.getValueAsString());
+                            } else if ("type".equals(key)) {
+                                result.columnTypes.add(parser.getValueAsString());
+                            }
+                        }
+                    }
+                } else if ("rows".equals(field)) {
+                    int numColumns = result.columnNames.size();
+                    while (parser.nextToken() == JsonToken.START_ARRAY) {
+                        Object[] row = new Object[numColumns];
+                        int i = 0;
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            row[i++] = mapper.readValue(parser, Object.class);
+                        }
+                        result.rows.add(row);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Malformed columnar result: expected " + expected + " but got " + actual);
+        }
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    public List<String> getColumnTypes() {
+        return columnTypes;
+    }
+
+    public List<Object[]> getRows() {
+        return rows;
+    }
+
+}
@@ -144,6 +144,31 @@ public enum SQLRestServiceHandler {
         }
     }
 
+    /**
+     * Runs the requests and statements of the service on virtual threads instead of platform threads.
+     * Requires the service to run on Java 21 or newer.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        if(process != null && process.isAlive()) {
+            throw new IllegalStateException("Cannot change property after startup.");
+        }
+        serverProperties.put(IServerConfig.K_VIRTUAL_THREADS, String.valueOf(virtualThreads));
+    }
+
+    /**
+     * Runs the service as the reactive server instead of the servlet server.
+     */
+    public void setReactive(boolean reactive) {
+        if(process != null && process.isAlive()) {
+            throw new IllegalStateException("Cannot change property after startup.");
+        }
+        if(reactive) {
+            applicationProperties.put("spring.profiles.active", "reactive");
+        } else {
+            applicationProperties.remove("spring.profiles.active");
+        }
+    }
+
     private void loadExistingProperties(File propFile, Properties target) {
         Properties alreadyExistingProps = new Properties();
         try(InputStream propFileIn = new FileInputStream(propFile)) {
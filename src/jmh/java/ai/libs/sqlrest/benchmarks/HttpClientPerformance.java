@@ -3,6 +3,7 @@ package ai.libs.sqlrest.benchmarks;
 import ai.libs.jaicore.basic.kvstore.KVStore;
 import ai.libs.sqlrest.*;
 import ai.libs.sqlrest.model.SQLQuery;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.type.CollectionType;
 import org.aeonbits.owner.ConfigCache;
@@ -16,10 +17,13 @@ import org.openjdk.jmh.infra.Blackhole;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -48,6 +52,19 @@ public class HttpClientPerformance {
     }) // each entry is 3.5 kByte
     private String query;
 
+    /*
+     * The encoding of the response, selected by the accept header:
+     * JSON objects per row, newline delimited JSON objects, column names once followed by positional arrays,
+     * or the binary format with typed columns.
+     */
+    @Param({
+            "json",
+            "ndjson",
+            "columnar",
+            "binary",
+    })
+    private String encoding;
+
     private SQLQuery queryObj;
 
     private CloseableHttpClient httpclient;
@@ -69,16 +86,55 @@ public class HttpClientPerformance {
         SQLBenchmarkUtil.flushDB();
     }
 
+    private String getAcceptedMediaType() {
+        switch (encoding) {
+            case "json":
+                return MediaType.APPLICATION_JSON_VALUE;
+            case "ndjson":
+                return "application/x-ndjson";
+            case "columnar":
+                return ColumnarResult.MEDIA_TYPE;
+            case "binary":
+                return BinaryResult.MEDIA_TYPE;
+            default:
+                throw new IllegalArgumentException("Unknown encoding: " + encoding);
+        }
+    }
+
+    private Object readResult(InputStream in) throws IOException {
+        switch (encoding) {
+            case "json":
+                return mapper.readValue(in, collectionType);
+            case "ndjson":
+                try (MappingIterator<KVStore> rows = mapper.readerFor(KVStore.class).readValues(in)) {
+                    return rows.readAll();
+                }
+            case "columnar":
+                return ColumnarResult.read(mapper, in);
+            case "binary":
+                return BinaryResult.read(in);
+            default:
+                throw new IllegalArgumentException("Unknown encoding: " + encoding);
+        }
+    }
+
     @Benchmark
     public void springWebClient(SQLClientState state, Blackhole bh) throws IOException {
         WebClient webClient = state.getWebClient();
         WebClient.RequestHeadersSpec<?> request
                 = webClient.post()
                 .uri("query")
+                .accept(MediaType.parseMediaType(getAcceptedMediaType()))
                 .body(BodyInserters.fromValue(queryObj));
-        List<KVStore> end = request.retrieve().bodyToMono(keyStoreListType).block();
-        assert end != null;
-        bh.consume(end);
+        if("json".equals(encoding)) {
+            List<KVStore> end = request.retrieve().bodyToMono(keyStoreListType).block();
+            assert end != null;
+            bh.consume(end);
+        } else {
+            byte[] body = request.retrieve().bodyToMono(byte[].class).block();
+            assert body != null;
+            bh.consume(readResult(new ByteArrayInputStream(body)));
+        }
     }
 
     @Benchmark
@@ -87,11 +143,12 @@ public class HttpClientPerformance {
         String postBody = mapper.writeValueAsString(queryObj);
         httpPost.setEntity(new  StringEntity(postBody));
         httpPost.setHeader("Content-Type", "application/json");
+        httpPost.setHeader("Accept", getAcceptedMediaType());
         CloseableHttpResponse response2 = httpclient.execute(httpPost);
 
         try {
             assert response2.getStatusLine().getStatusCode() == 200;
-            List<KVStore> o = mapper.readValue(response2.getEntity().getContent(), collectionType);
+            Object o = readResult(response2.getEntity().getContent());
             assert o != null;
             bh.consume(o);
         } finally {
@@ -18,6 +18,9 @@ import java.util.concurrent.*;
 
 /*
  * Assumes that the service is running
+ *
+ * The thread mode compares the service on platform threads with the service on virtual threads,
+ * for which the service has to run on Java 21 or newer.
  */
 @BenchmarkMode(Mode.SingleShotTime)
 @OutputTimeUnit(TimeUnit.SECONDS)
@@ -64,6 +67,11 @@ public class ParallelSelectService {
     })
     private String limitedAccessNum;
 
+    @Param({
+            "platform", "virtual", "reactive"
+    })
+    private String serverMode;
+
     private SQLQuery queryObj;
 
     private ExecutorService executor;
@@ -105,6 +113,8 @@ public class ParallelSelectService {
 //        numberOfJobs = Integer.parseInt(numWorkers) * 2;
         numberOfJobs = Integer.parseInt(numJobs);
         SQLRestServiceHandler.INSTANCE.setAccessLimit(Integer.parseInt(limitedAccessNum));
+        SQLRestServiceHandler.INSTANCE.setVirtualThreads("virtual".equals(serverMode));
+        SQLRestServiceHandler.INSTANCE.setReactive("reactive".equals(serverMode));
         SQLBenchmarkUtil.startService(serviceState, state);
         SQLBenchmarkUtil.flushDB();
     }
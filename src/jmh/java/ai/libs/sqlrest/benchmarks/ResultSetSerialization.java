@@ -0,0 +1,115 @@
+package ai.libs.sqlrest.benchmarks;
+
+import ai.libs.jaicore.db.sql.ResultSetToKVStoreSerializer;
+import ai.libs.sqlrest.encoding.JsonRowsWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the serialization of a result set into the JSON response of /query:
+ * the rows as key-value stores serialized by jackson, as before, against the rows written straight from the result set.
+ * The result set is held in memory, so that only the serialization is measured.
+ * Its rows are shaped like the benchmark table: an id, the time an experiment started and 100 further columns
+ * of text, integers and doubles, about 3.5 kByte per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgs = {"-Xms4G", "-Xmx8G"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 4, time = 10)
+public class ResultSetSerialization {
+
+    private static final int NUM_VALUE_COLUMNS = 100;
+
+    @Param({
+            "1",
+            "100",
+            "10000",
+    })
+    private int numRows;
+
+    private CachedRowSet resultSet;
+
+    private ObjectMapper mapper;
+
+    private JsonRowsWriter writer;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+
+    @Setup
+    public void setup() throws SQLException {
+        // Configured like the object mapper of the service.
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = new JsonRowsWriter(mapper, false);
+        resultSet = RowSetProvider.newFactory().createCachedRowSet();
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(NUM_VALUE_COLUMNS + 2);
+        defineColumn(metaData, 1, "id", Types.INTEGER);
+        defineColumn(metaData, 2, "time_started", Types.TIMESTAMP);
+        for (int i = 0; i < NUM_VALUE_COLUMNS; i++) {
+            defineColumn(metaData, i + 3, "c" + i, i % 3 == 0 ? Types.INTEGER : i % 3 == 1 ? Types.DOUBLE : Types.LONGVARCHAR);
+        }
+        resultSet.setMetaData(metaData);
+
+        Random random = new Random(0);
+        for (int row = 0; row < numRows; row++) {
+            resultSet.moveToInsertRow();
+            resultSet.updateInt(1, row);
+            if (random.nextBoolean()) {
+                resultSet.updateTimestamp(2, new Timestamp(1580000000000L + random.nextInt()));
+            } else {
+                resultSet.updateNull(2);
+            }
+            for (int i = 0; i < NUM_VALUE_COLUMNS; i++) {
+                if (i % 3 == 0) {
+                    resultSet.updateInt(i + 3, random.nextInt());
+                } else if (i % 3 == 1) {
+                    resultSet.updateDouble(i + 3, random.nextDouble());
+                } else {
+                    resultSet.updateString(i + 3, "value-" + Long.toHexString(random.nextLong()));
+                }
+            }
+            resultSet.insertRow();
+            resultSet.moveToCurrentRow();
+        }
+    }
+
+    private static void defineColumn(RowSetMetaDataImpl metaData, int column, String name, int type) throws SQLException {
+        metaData.setColumnName(column, name);
+        metaData.setColumnLabel(column, name);
+        metaData.setColumnType(column, type);
+        metaData.setSigned(column, true);
+        metaData.setNullable(column, RowSetMetaDataImpl.columnNullable);
+    }
+
+    @Benchmark
+    public void kvStoreSerializer(Blackhole bh) throws SQLException, IOException {
+        resultSet.beforeFirst();
+        out.reset();
+        mapper.writeValue(out, new ResultSetToKVStoreSerializer().serialize(resultSet));
+        bh.consume(out.size());
+    }
+
+    @Benchmark
+    public void directWriter(Blackhole bh) throws SQLException, IOException {
+        resultSet.beforeFirst();
+        out.reset();
+        writer.write(resultSet, out);
+        bh.consume(out.size());
+    }
+
+}
@@ -0,0 +1,205 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.model.ScalingDecision;
+import org.aeonbits.owner.ConfigCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scales the number of adapters of each token independently based on its recorded load.
+ * A token is scaled up if its requests wait for adapters, more requests are in flight than it has adapters,
+ * or its queries are slower than most queries of the server while all of its adapters are busy.
+ * It is scaled down if some of its adapters stayed unused.
+ * To avoid flapping, the load has to persist for a number of consecutive intervals before the token is scaled,
+ * with scaling down requiring more intervals than scaling up.
+ *
+ * If autoscaling is disabled, the configured number of adapter instances is applied to all tokens instead.
+ */
+@Component
+public class AdapterAutoscaler {
+
+    private final static Logger logger = LoggerFactory.getLogger(AdapterAutoscaler.class);
+
+    private static final IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
+
+    private static final int MAX_DECISIONS = 100;
+
+    private final SQLAdapterManager adapterManager;
+
+    private final QueryRuntimeModel runtimeModel;
+
+    private final Map<String, TokenState> tokenStates = new ConcurrentHashMap<>();
+
+    private final Deque<ScalingDecision> decisions = new ConcurrentLinkedDeque<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    public AdapterAutoscaler(SQLAdapterManager adapterManager, QueryRuntimeModel runtimeModel) {
+        this.adapterManager = adapterManager;
+        this.runtimeModel = runtimeModel;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SQL-Adapter-Autoscaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getAutoscaleInterval();
+        scheduler.scheduleWithFixedDelay(this::scaleSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void scaleSafely() {
+        try {
+            scale();
+        } catch(Exception ex) {
+            logger.error("Error while scaling adapters.", ex);
+        }
+    }
+
+    private boolean isEnabled() {
+        // Pooled tokens size their pool on their own.
+        return config.isAutoscaleEnabled() && !"pooled".equals(config.getEffectiveAdapterAccessMode());
+    }
+
+    private int getMin() {
+        return Math.max(1, config.getAutoscaleMin());
+    }
+
+    private int getMax() {
+        return Math.max(getMin(), Math.min(config.getAutoscaleMax(), config.getNumAdapterInstancesLimit()));
+    }
+
+    void scale() {
+        boolean enabled = isEnabled();
+        int min = getMin();
+        int max = getMax();
+        double globalP90 = runtimeModel.getSampleCount() == 0 ? 0 : runtimeModel.getQueryTime(0.9);
+        for (Map.Entry<String, TokenConnectionHandle> entry : adapterManager.getHandles().entrySet()) {
+            String token = entry.getKey();
+            TokenConnectionHandle handle = entry.getValue();
+            int numAdapters = handle.getNumConnections();
+            if(numAdapters == 0) {
+                // The adapters of the token haven't been created yet.
+                continue;
+            }
+            TokenState state = tokenStates.computeIfAbsent(token, t -> new TokenState());
+            TokenLoad.Window window = handle.getLoad().nextWindow();
+            state.lastWindow = window;
+            if(!enabled) {
+                handle.scaleNumConnections(adapterManager.getProvider(), 0);
+                continue;
+            }
+            int newNumAdapters = state.decide(numAdapters, window, globalP90, min, max,
+                    config.getAutoscaleScaleUpWait(), config.getAutoscaleScaleUpWindows(),
+                    config.getAutoscaleScaleDownWindows());
+            if(newNumAdapters != numAdapters) {
+                handle.scaleNumConnections(adapterManager.getProvider(), newNumAdapters);
+                ScalingDecision decision = new ScalingDecision(System.currentTimeMillis(), token,
+                        numAdapters, newNumAdapters, state.reason);
+                decisions.addFirst(decision);
+                while(decisions.size() > MAX_DECISIONS) {
+                    decisions.pollLast();
+                }
+                logger.info("Scaled adapters of token {} from {} to {}: {}", token, numAdapters, newNumAdapters, state.reason);
+            }
+        }
+    }
+
+    /**
+     * Returns the current number of adapters and the last recorded load of each token and the most recent decisions.
+     */
+    public Map<String, Object> getState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("enabled", isEnabled());
+        state.put("min", getMin());
+        state.put("max", getMax());
+        Map<String, Map<String, Object>> tokens = new TreeMap<>();
+        for (Map.Entry<String, TokenConnectionHandle> entry : adapterManager.getHandles().entrySet()) {
+            TokenConnectionHandle handle = entry.getValue();
+            Map<String, Object> tokenState = new LinkedHashMap<>();
+            tokenState.put("adapters", handle.getNumConnections());
+            tokenState.put("inFlight", handle.getLoad().getNumInFlight());
+            tokenState.put("waiting", handle.getLoad().getNumWaiting());
+            TokenState scalingState = tokenStates.get(entry.getKey());
+            if(scalingState != null && scalingState.lastWindow != null) {
+                tokenState.put("lastInterval", scalingState.lastWindow.toMap());
+            }
+            tokens.put(entry.getKey(), tokenState);
+        }
+        state.put("tokens", tokens);
+        state.put("decisions", new ArrayList<>(decisions));
+        return state;
+    }
+
+    /**
+     * Counts the consecutive intervals of high and low load of a token.
+     */
+    static final class TokenState {
+
+        private int numHigh = 0;
+
+        private int numLow = 0;
+
+        private volatile TokenLoad.Window lastWindow;
+
+        private String reason;
+
+        /**
+         * Returns the new number of adapters of the token, which equals the current one if it isn't scaled.
+         */
+        int decide(int numAdapters, TokenLoad.Window window, double globalP90, int min, int max,
+                   double scaleUpWait, int scaleUpWindows, int scaleDownWindows) {
+            if(numAdapters < min || numAdapters > max) {
+                numHigh = 0;
+                numLow = 0;
+                reason = String.format("bounds changed to [%d, %d]", min, max);
+                return Math.max(min, Math.min(max, numAdapters));
+            }
+            String highLoad = null;
+            if(window.getAvgWaitMillis() >= scaleUpWait) {
+                highLoad = String.format("requests waited %.1f ms on average", window.getAvgWaitMillis());
+            } else if(window.getPeakInFlight() > numAdapters) {
+                highLoad = String.format("%d requests were in flight at once", window.getPeakInFlight());
+            } else if(window.getPeakInFlight() >= numAdapters && globalP90 > 0 && window.getP90QueryTime() > globalP90) {
+                highLoad = String.format("all adapters were busy and the 0.9 quantile of query times was %.0f ms " +
+                        "compared to %.0f ms of the server", window.getP90QueryTime(), globalP90);
+            }
+            if(highLoad != null) {
+                numLow = 0;
+                if(++numHigh >= scaleUpWindows && numAdapters < max) {
+                    numHigh = 0;
+                    reason = highLoad;
+                    return Math.min(max, Math.max(numAdapters + 1, window.getPeakInFlight()));
+                }
+            } else if(window.getPeakInFlight() < numAdapters) {
+                numHigh = 0;
+                if(++numLow >= scaleDownWindows && numAdapters > min) {
+                    numLow = 0;
+                    reason = String.format("at most %d requests were in flight at once", window.getPeakInFlight());
+                    return numAdapters - 1;
+                }
+            } else {
+                numHigh = 0;
+                numLow = 0;
+            }
+            return numAdapters;
+        }
+    }
+
+}
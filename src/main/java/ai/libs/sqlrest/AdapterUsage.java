@@ -0,0 +1,100 @@
+package ai.libs.sqlrest;
+
+import ai.libs.jaicore.db.IDatabaseAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the requests that use an adapter, so that a removed adapter is only closed once it isn't in use anymore.
+ * A retired adapter is draining: it doesn't accept new requests and is closed by the last request that releases it,
+ * or once the drain deadline has passed.
+ */
+class AdapterUsage {
+
+    private final static Logger logger = LoggerFactory.getLogger(AdapterUsage.class);
+
+    private final IDatabaseAdapter adapter;
+
+    private final AtomicInteger numInFlight = new AtomicInteger(0);
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private volatile boolean draining = false;
+
+    private volatile long drainDeadline = Long.MAX_VALUE;
+
+    AdapterUsage(IDatabaseAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    /**
+     * Marks the adapter as being used by a request.
+     *
+     * @return False if the adapter is draining, in which case the request has to pick another adapter.
+     */
+    boolean tryUse() {
+        numInFlight.incrementAndGet();
+        if(draining) {
+            // The retiring thread may have seen the increment and left closing the adapter to this request.
+            release();
+            return false;
+        }
+        return true;
+    }
+
+    void release() {
+        if(numInFlight.decrementAndGet() == 0 && draining) {
+            close();
+        }
+    }
+
+    /**
+     * Stops routing requests to the adapter and closes it once no request uses it.
+     *
+     * @param drainDeadline The time in milliseconds after which the adapter is closed even if it is still in use.
+     */
+    void retire(long drainDeadline) {
+        this.drainDeadline = drainDeadline;
+        this.draining = true;
+        if(numInFlight.get() == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Closes the adapter if it is draining and its deadline has passed.
+     */
+    void closeIfOverdue(long now) {
+        if(draining && !closed.get() && now >= drainDeadline) {
+            logger.warn("Closing retired adapter with {} requests still in flight, as it didn't drain in time.",
+                    numInFlight.get());
+            close();
+        }
+    }
+
+    private void close() {
+        if(closed.compareAndSet(false, true)) {
+            adapter.close();
+        }
+    }
+
+    IDatabaseAdapter getAdapter() {
+        return adapter;
+    }
+
+    int getNumInFlight() {
+        return numInFlight.get();
+    }
+
+    boolean isDraining() {
+        return draining;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+}
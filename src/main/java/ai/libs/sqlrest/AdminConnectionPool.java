@@ -0,0 +1,108 @@
+package ai.libs.sqlrest;
+
+import ai.libs.jaicore.db.sql.SQLAdapter;
+import org.aeonbits.owner.ConfigCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of connections to the admin database, shared by all admin-side code:
+ * creating the admin tables, creating and listing experiments, resolving tokens and logging slow queries.
+ * Each connection is used by one caller at a time, so that callers neither contend on a single connection
+ * nor open a new connection per operation.
+ */
+public class AdminConnectionPool {
+
+    private final static Logger logger = LoggerFactory.getLogger(AdminConnectionPool.class);
+
+    private static AdminConnectionPool instance;
+
+    private final TokenAdapterPool pool;
+
+    private final long borrowTimeout;
+
+    private final ScheduledExecutorService maintenance;
+
+    AdminConnectionPool(IServerConfig config) {
+        this.pool = new TokenAdapterPool(config::createAdminAdapter, config.getAdminPoolMinIdle(),
+                config.getAdminPoolMaxSize(), config.getPoolIdleTimeout(), config.getPoolValidationInterval(),
+                config.getPoolValidationTimeout());
+        this.borrowTimeout = config.getAdminPoolBorrowTimeout();
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SQL-Admin-Pool-Maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getPoolMaintenanceInterval();
+        maintenance.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the pool of the server. It is created on first access, which may be before the application context.
+     */
+    public static synchronized AdminConnectionPool getInstance() {
+        if(instance == null) {
+            instance = new AdminConnectionPool(ConfigCache.getOrCreate(IServerConfig.class));
+        }
+        return instance;
+    }
+
+    /**
+     * Runs the given action with a connection of the pool, waiting for one if all are in use.
+     * The adapter must not be used after the action returned. If the action fails, the adapter is closed
+     * instead of being handed back, as its connection may be broken or in an unknown state.
+     */
+    public <T> T execute(AdminAction<T> action) throws SQLException {
+        SQLAdapter adapter;
+        try {
+            // The pool only holds adapters created by `createAdminAdapter`.
+            adapter = (SQLAdapter) pool.borrow(borrowTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection to the admin database.", e);
+        }
+        T result;
+        try {
+            result = action.apply(adapter);
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("An action on the admin database failed, its connection is closed: {}", e.getMessage());
+            pool.discardBorrowed(adapter);
+            throw e;
+        }
+        pool.giveBack(adapter);
+        return result;
+    }
+
+    private void maintain() {
+        try {
+            pool.maintain();
+        } catch(Exception ex) {
+            logger.error("Error while maintaining the admin connection pool.", ex);
+        }
+    }
+
+    public Map<String, Integer> getStats() {
+        return pool.getStats();
+    }
+
+    public void close() {
+        synchronized (AdminConnectionPool.class) {
+            if(instance == this) {
+                instance = null;
+            }
+        }
+        maintenance.shutdownNow();
+        pool.close();
+    }
+
+    public interface AdminAction<T> {
+        T apply(SQLAdapter adminAdapter) throws SQLException;
+    }
+
+}
@@ -10,22 +10,50 @@ import java.util.Random;
 import org.aeonbits.owner.ConfigCache;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.api4.java.datastructure.kvstore.IKVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import ai.libs.jaicore.db.sql.SQLAdapter;
 import ai.libs.sqlrest.model.Experiment;
+import ai.libs.sqlrest.supplier.CircuitBreaker;
 
 @RestController
 public class AdministrationController {
 
+	private final static Logger logger = LoggerFactory.getLogger(AdministrationController.class);
+
 	private static final IServerConfig CONFIG = ConfigCache.getOrCreate(IServerConfig.class);
-	private static SQLAdapter sql = null;
+
+	private final SQLAdapterManager adapterManager;
+
+	private final ConnectionWarmUp warmUp;
+
+	private final TokenCredentialCache credentialCache;
+
+	private final AdapterAutoscaler autoscaler;
+
+	private final AdminConnectionPool adminPool;
+
+	private final ReplicaRouter replicaRouter;
+
+	private final QueryCancellations cancellations;
+
+	public AdministrationController(final SQLAdapterManager adapterManager, final ConnectionWarmUp warmUp,
+			final TokenCredentialCache credentialCache, final AdapterAutoscaler autoscaler, final AdminConnectionPool adminPool,
+			final ReplicaRouter replicaRouter, final QueryCancellations cancellations) {
+		this.adapterManager = adapterManager;
+		this.warmUp = warmUp;
+		this.credentialCache = credentialCache;
+		this.autoscaler = autoscaler;
+		this.adminPool = adminPool;
+		this.replicaRouter = replicaRouter;
+		this.cancellations = cancellations;
+	}
 
 	@GetMapping("/v1/admin/experiment")
 	public Experiment generateNewExperiment(final @RequestParam(name = "name") String name) throws SQLException {
-		this.loadDatabaseConnection();
 		String token = DigestUtils.sha256Hex(new Random().nextDouble() + "");
 
 		String nameWithoutBlanks = name.replaceAll("\\s", "_");
@@ -50,31 +78,74 @@ public class AdministrationController {
 		String grantPrivileges = "GRANT ALL PRIVILEGES ON `" + dbNameAndUser + "`.* TO '" + dbNameAndUser + "'@'%'";
 		List<String> queries = Arrays.asList(createUserQuery, grantUsage, alterUserForAccess, createDB, grantPrivileges);
 
-		for (String query : queries) {
-			System.out.println("Execute query " + query);
-			sql.update(query);
-		}
-
-		sql.insert("experiments", data);
+		this.adminPool.execute(sql -> {
+			for (String query : queries) {
+				logger.debug("Execute query {}", redactPassword(query));
+				sql.update(query);
+			}
+			return sql.insert("experiments", data);
+		});
+		// The token may have been looked up before and be cached as unknown.
+		this.credentialCache.invalidate(token);
 
 		return new Experiment(name, token);
 	}
 
+	/*
+	 * Replaces the password of a statement that creates a user, so that it can be logged.
+	 */
+	static String redactPassword(final String query) {
+		return query.replaceAll("BY '[^']*'", "BY '***'");
+	}
+
 	@GetMapping("/v1/admin/adapterinstances")
 	public void setNumAdapterInstances(@RequestParam(name = "numInstances") final int numInstances) {
 		CONFIG.setProperty(IServerConfig.K_NUM_ADAPTER_INSTANCES, numInstances + "");
 	}
 
-	@GetMapping("/v1/admin/experiment/list")
-	public List<IKVStore> getExperiments() throws SQLException {
-		this.loadDatabaseConnection();
-		return sql.getResultsOfQuery("SELECT * FROM experiments");
+	@GetMapping("/v1/admin/connections")
+	public Map<String, Map<String, Integer>> getConnections() {
+		return this.adapterManager.getConnectionStats();
 	}
 
-	private void loadDatabaseConnection() {
-		if (sql == null) {
-			sql = new SQLAdapter(CONFIG.getDBHost(), CONFIG.getAdminDBUser(), CONFIG.getAdminDBPassword(), CONFIG.getAdminDBName());
-		}
+	@GetMapping("/v1/admin/autoscaler")
+	public Map<String, Object> getAutoscalerState() {
+		return this.autoscaler.getState();
+	}
+
+	@GetMapping("/v1/admin/warmup")
+	public Map<String, Number> warmUpConnections() throws SQLException, InterruptedException {
+		return this.warmUp.warmUp();
+	}
+
+	@GetMapping("/v1/admin/warmup/status")
+	public Map<String, Number> getWarmUpProgress() {
+		return this.warmUp.getProgress();
+	}
+
+	@GetMapping("/v1/admin/connections/admin")
+	public Map<String, Integer> getAdminConnections() {
+		return this.adminPool.getStats();
+	}
+
+	@GetMapping("/v1/admin/breakers")
+	public Map<String, Map<String, Object>> getCircuitBreakers() {
+		return CircuitBreaker.getStates();
+	}
+
+	@GetMapping("/v1/admin/replicas")
+	public Map<String, Map<String, Object>> getReplicas() {
+		return this.replicaRouter.getState();
+	}
+
+	@GetMapping("/v1/admin/cancellations")
+	public Map<String, Long> getCancellations() {
+		return this.cancellations.getStats();
+	}
+
+	@GetMapping("/v1/admin/experiment/list")
+	public List<IKVStore> getExperiments() throws SQLException {
+		return this.adminPool.execute(sql -> sql.getResultsOfQuery("SELECT * FROM experiments"));
 	}
 
 }
@@ -0,0 +1,157 @@
+package ai.libs.sqlrest;
+
+import org.aeonbits.owner.ConfigCache;
+import org.api4.java.datastructure.kvstore.IKVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens the connections of all experiments ahead of their first request.
+ * The experiments are read with a single query, which also fills the credential cache.
+ * If enabled, the warm-up runs once all beans are created, which is before the web server accepts requests.
+ * The tokens are warmed up in parallel, with the parallelism bounding the number of connections opened at once.
+ */
+@Component
+public class ConnectionWarmUp implements SmartInitializingSingleton {
+
+    private final static Logger logger = LoggerFactory.getLogger(ConnectionWarmUp.class);
+
+    private static final IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
+
+    private final SQLAdapterManager adapterManager;
+
+    private final TokenCredentialCache credentialCache;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final AtomicInteger numTokens = new AtomicInteger(0);
+
+    private final AtomicInteger numWarmed = new AtomicInteger(0);
+
+    private final AtomicInteger numFailed = new AtomicInteger(0);
+
+    private final AtomicInteger numConnections = new AtomicInteger(0);
+
+    private volatile long startTime, endTime;
+
+    public ConnectionWarmUp(SQLAdapterManager adapterManager, TokenCredentialCache credentialCache) {
+        this.adapterManager = adapterManager;
+        this.credentialCache = credentialCache;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if(!config.isWarmUpEnabled()) {
+            return;
+        }
+        try {
+            warmUp();
+        } catch (SQLException ex) {
+            logger.error("Couldn't read the experiments to warm up. Connections are opened on first request instead.", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted the warm-up of connections.");
+        }
+    }
+
+    /**
+     * Opens the connections of all experiments and blocks until it is done.
+     *
+     * @return The progress of the finished warm-up.
+     * @throws IllegalStateException if a warm-up is already running.
+     */
+    public Map<String, Number> warmUp() throws SQLException, InterruptedException {
+        if(!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A warm-up of the connections is already running.");
+        }
+        try {
+            numWarmed.set(0);
+            numFailed.set(0);
+            numConnections.set(0);
+            endTime = 0;
+            startTime = System.currentTimeMillis();
+            List<IKVStore> experiments = credentialCache.preload();
+            numTokens.set(experiments.size());
+            logger.info("Warming up the connections of {} experiments.", experiments.size());
+
+            int parallelism = Math.max(1, Math.min(config.getWarmUpParallelism(), experiments.size()));
+            AtomicInteger threadIndex = new AtomicInteger(0);
+            ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "SQL-Warm-Up-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                for (IKVStore experiment : experiments) {
+                    executor.execute(() -> warmUp(experiment));
+                }
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } finally {
+                executor.shutdownNow();
+            }
+            endTime = System.currentTimeMillis();
+            logger.info("Warmed up {} connections of {} experiments in {} ms. {} experiments failed.",
+                    numConnections.get(), numWarmed.get(), endTime - startTime, numFailed.get());
+            return getProgress();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void warmUp(IKVStore experiment) {
+        String token = experiment.getAsString("experiment_token");
+        try {
+            if(token == null) {
+                throw new IllegalStateException("The experiment has no token.");
+            }
+            numConnections.addAndGet(adapterManager.warmUp(token));
+            numWarmed.incrementAndGet();
+        } catch (Exception ex) {
+            numFailed.incrementAndGet();
+            logger.warn("Couldn't warm up the connections of experiment {}.", experiment.getAsString("experiment_name"), ex);
+        }
+        reportProgress();
+    }
+
+    private void reportProgress() {
+        int total = numTokens.get();
+        int done = numWarmed.get() + numFailed.get();
+        // Log about every tenth of the experiments.
+        int step = Math.max(1, total / 10);
+        if(done % step == 0 || done == total) {
+            logger.info("Warm-up progress: {}/{} experiments, {} connections.", done, total, numConnections.get());
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Returns the progress of the running or the last warm-up.
+     */
+    public Map<String, Number> getProgress() {
+        Map<String, Number> progress = new LinkedHashMap<>();
+        progress.put("experiments", numTokens.get());
+        progress.put("warmed", numWarmed.get());
+        progress.put("failed", numFailed.get());
+        progress.put("connections", numConnections.get());
+        long end = endTime > 0 ? endTime : System.currentTimeMillis();
+        progress.put("durationMillis", startTime > 0 ? end - startTime : 0);
+        return progress;
+    }
+
+}
@@ -1,8 +1,6 @@
 package ai.libs.sqlrest;
 
-import ai.libs.jaicore.db.sql.SQLAdapter;
 import ai.libs.sqlrest.model.SQLQuery;
-import org.aeonbits.owner.ConfigCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,24 +28,16 @@ public class DBQueryLogger implements IDBQueryLogger {
 
     public static final String LOG_REASON_TIMEOUT = "QUERY_TIMED_OUT";
 
-    private static final IServerConfig CONF = ConfigCache.getOrCreate(IServerConfig.class);
-
     private final SQLAdapterManager manager;
 
     private String insertionQuery, updateQuery;
 
-    private SQLAdapter adapter;
+    private final AdminConnectionPool adminPool;
 
     @Autowired
-    public DBQueryLogger(SQLAdapterManager manager) {
+    public DBQueryLogger(SQLAdapterManager manager, AdminConnectionPool adminPool) {
         this.manager = manager;
-    }
-
-    private synchronized SQLAdapter getAdapter() {
-        if(adapter == null) {
-            adapter = CONF.createAdminAdapter();
-        }
-        return adapter;
+        this.adminPool = adminPool;
     }
 
     private synchronized String getInsertionString() {
@@ -102,7 +92,6 @@ public class DBQueryLogger implements IDBQueryLogger {
     public int logTimeOut(SQLQuery query,
                           long timeStarted, long queryThreshold, String execTime,
                           int numRequestsSinceQuery, int numUnfinishedRequestsSinceQuery) throws Exception {
-        SQLAdapter adapter = getAdapter();
         String insertionString = getInsertionString();
         int numConnections = manager.getNumConnections();
         int numConnectionsToken = manager.getNumConnections(query.getToken());
@@ -134,7 +123,7 @@ public class DBQueryLogger implements IDBQueryLogger {
                     numJVMThreads, ((usedJVMMemory /10000)/100.), ((freeJVMMemory /10000)/100.));
         }
 
-        int[] ids = adapter.insert(insertionString, values);
+        int[] ids = adminPool.execute(adapter -> adapter.insert(insertionString, values));
 
         if(ids == null || ids.length != 1) {
             throw new SQLException("No id returned: " +
@@ -144,10 +133,10 @@ public class DBQueryLogger implements IDBQueryLogger {
     }
 
     public void updateFinished(int id, long execTime) throws Exception {
-        SQLAdapter adapter = getAdapter();
         String[] values = {
                 String.valueOf(execTime), String.valueOf(id)
         };
-        adapter.update(getUpdateQuery(), values);
+        String updateQuery = getUpdateQuery();
+        adminPool.execute(adapter -> adapter.update(updateQuery, values));
     }
 }
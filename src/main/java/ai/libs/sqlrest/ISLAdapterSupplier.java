@@ -4,6 +4,14 @@ import ai.libs.jaicore.db.IDatabaseAdapter;
 
 public interface ISLAdapterSupplier {
 
-    IDatabaseAdapter get(final String user, final String password, final String database);
+    default IDatabaseAdapter get(final String user, final String password, final String database) {
+        return get(null, user, password, database);
+    }
+
+    /**
+     * Returns an adapter to the database on the given host, e.g. a read replica.
+     * A null host refers to the primary host.
+     */
+    IDatabaseAdapter get(final String host, final String user, final String password, final String database);
 
 }
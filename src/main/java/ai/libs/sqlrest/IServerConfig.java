@@ -24,6 +24,58 @@ public interface IServerConfig extends Mutable {
 
     public static final String K_ADAPTER_ACCESS_RANDOM = "server.adapter.randomAccess";
     public static final String K_ADAPTER_LIMIT_ACCESS = "server.adapter.accessLimited";
+    public static final String K_ADAPTER_ACCESS_MODE = "server.adapter.accessMode";
+    public static final String K_ADAPTER_LEASE_TIMEOUT = "server.adapter.leaseTimeout";
+    public static final String K_ADAPTER_LEASE_MAX_WAITING = "server.adapter.leaseMaxWaiting";
+
+    public static final String K_CONNECTION_PING_INTERVAL = "db.connection.pingInterval";
+    public static final String K_CONNECTION_IDLE_TIMEOUT = "db.connection.idleTimeout";
+    public static final String K_CONNECTION_MIN_WARM = "db.connection.minWarm";
+    public static final String K_CONNECTION_VALIDATION_QUERY = "db.connection.validationQuery";
+    public static final String K_CONNECTION_VALIDATION_TIMEOUT = "db.connection.validationTimeout";
+
+    public static final String K_WARM_UP_ENABLED = "server.warmUp.enabled";
+    public static final String K_WARM_UP_PARALLELISM = "server.warmUp.parallelism";
+
+    public static final String K_TOKEN_CACHE_MAX_SIZE = "server.tokenCache.maxSize";
+    public static final String K_TOKEN_CACHE_TTL = "server.tokenCache.ttl";
+    public static final String K_TOKEN_CACHE_NEGATIVE_TTL = "server.tokenCache.negativeTtl";
+    public static final String K_TOKEN_CACHE_PRELOAD = "server.tokenCache.preload";
+
+    public static final String K_AUTOSCALE_ENABLED = "server.autoscale.enabled";
+    public static final String K_AUTOSCALE_INTERVAL = "server.autoscale.interval";
+    public static final String K_AUTOSCALE_MIN = "server.autoscale.min";
+    public static final String K_AUTOSCALE_MAX = "server.autoscale.max";
+    public static final String K_AUTOSCALE_SCALE_UP_WAIT = "server.autoscale.scaleUpWait";
+    public static final String K_AUTOSCALE_SCALE_UP_WINDOWS = "server.autoscale.scaleUpWindows";
+    public static final String K_AUTOSCALE_SCALE_DOWN_WINDOWS = "server.autoscale.scaleDownWindows";
+
+    public static final String K_ADAPTER_DRAIN_TIMEOUT = "server.adapter.drainTimeout";
+
+    public static final String K_ADMIN_POOL_MIN_IDLE = "db.admin.pool.minIdle";
+    public static final String K_ADMIN_POOL_MAX_SIZE = "db.admin.pool.maxSize";
+    public static final String K_ADMIN_POOL_BORROW_TIMEOUT = "db.admin.pool.borrowTimeout";
+
+    public static final String K_CONNECT_TIMEOUT = "db.connect.timeout";
+    public static final String K_CONNECT_ATTEMPTS = "db.connect.attempts";
+    public static final String K_CONNECT_BACKOFF = "db.connect.backoff";
+    public static final String K_CONNECT_THREADS = "db.connect.threads";
+    public static final String K_BREAKER_FAILURE_THRESHOLD = "db.breaker.failureThreshold";
+    public static final String K_BREAKER_OPEN_DURATION = "db.breaker.openDuration";
+    public static final String K_BREAKER_MAX_OPEN_DURATION = "db.breaker.maxOpenDuration";
+
+    public static final String K_REPLICA_HOSTS = "db.replicas";
+    public static final String K_REPLICA_ROUTING = "db.replica.routing";
+    public static final String K_REPLICA_MAX_LAG = "db.replica.maxLag";
+    public static final String K_REPLICA_LAG_CHECK_INTERVAL = "db.replica.lagCheckInterval";
+
+    public static final String K_POOL_MIN_IDLE = "server.pool.minIdle";
+    public static final String K_POOL_MAX_SIZE = "server.pool.maxSize";
+    public static final String K_POOL_BORROW_TIMEOUT = "server.pool.borrowTimeout";
+    public static final String K_POOL_IDLE_TIMEOUT = "server.pool.idleTimeout";
+    public static final String K_POOL_VALIDATION_INTERVAL = "server.pool.validationInterval";
+    public static final String K_POOL_VALIDATION_TIMEOUT = "server.pool.validationTimeout";
+    public static final String K_POOL_MAINTENANCE_INTERVAL = "server.pool.maintenanceInterval";
 
     public static final String K_SERVER_LOGGING_LOG_SLOW_QUERIES = "server.logging.logSlowQueries";
     public static final String K_SERVER_LOGGING_SLOW_QUERY_THRESHOLD = "server.logging.slowQueryThreshold";
@@ -45,6 +97,37 @@ public interface IServerConfig extends Mutable {
     public static final String K_DB_PROP_CACHE_PREP_STMT_SIZE = "db.prop.cachePrepStmtSize";
     public static final String K_DB_PROP_CACHE_PREP_STMT_SQL_LIMIT = "db.prop.cachePrepStmtSqlLimit";
     public static final String K_DB_PROP_USE_UNBUFFERED_INPUT = "db.prop.useUnbufferedInput";
+    public static final String K_DB_PROP_USE_CURSOR_FETCH = "db.prop.useCursorFetch";
+
+    public static final String K_DB_PROP_REWRITE_BATCHED_STATEMENTS = "db.prop.rewriteBatchedStatements";
+
+    public static final String K_STREAM_FETCH_SIZE = "server.stream.fetchSize";
+
+    public static final String K_BATCH_MAX_STATEMENTS = "server.batch.maxStatements";
+
+    public static final String K_TRANSACTION_LOCK_TIMEOUT = "server.transaction.lockTimeout";
+
+    public static final String K_STATEMENT_CACHE_SIZE = "server.statementCache.size";
+
+    public static final String K_PREPARED_MAX_PER_TOKEN = "server.prepared.maxPerToken";
+
+    public static final String K_BULK_INSERT_CHUNK_SIZE = "server.bulkInsert.chunkSize";
+
+    public static final String K_ASYNC_THREADS = "server.async.threads";
+
+    public static final String K_ASYNC_MAX_JOBS_PER_TOKEN = "server.async.maxJobsPerToken";
+
+    public static final String K_ASYNC_RESULT_TTL = "server.async.resultTtl";
+
+    public static final String K_ASYNC_MAX_RETAINED_BYTES = "server.async.maxRetainedBytes";
+
+    public static final String K_EXECUTOR_THREADS = "server.executor.threads";
+
+    public static final String K_EXECUTOR_QUEUE_SIZE = "server.executor.queueSize";
+
+    public static final String K_EXECUTOR_REJECTION = "server.executor.rejection";
+
+    public static final String K_VIRTUAL_THREADS = "server.virtualThreads";
 
 
     @Key(K_DB_HOST)
@@ -88,6 +171,446 @@ public interface IServerConfig extends Mutable {
     @DefaultValue("true")
     public boolean isAccessRandom();
 
+    /**
+     * Returns the name of the strategy that hands out adapters to requests: `random`, `cyclic`, `leased` or `pooled`.
+     * If undefined, `isAccessRandom()` decides between random and cyclic access.
+     * In `leased` mode every request leases one of the token's adapters exclusively and releases it when done.
+     * In `pooled` mode every request borrows an adapter of the token's pool exclusively and returns it when done.
+     */
+    @Key(K_ADAPTER_ACCESS_MODE)
+    public String getAdapterAccessMode();
+
+    /**
+     * Returns the adapter access mode in lower case, falling back to `isAccessRandom()` if it is undefined.
+     */
+    default String getEffectiveAdapterAccessMode() {
+        String accessMode = getAdapterAccessMode();
+        if(accessMode == null || accessMode.trim().isEmpty()) {
+            return isAccessRandom() ? "random" : "cyclic";
+        }
+        return accessMode.trim().toLowerCase();
+    }
+
+    /**
+     * Returns the time in milliseconds a request waits for an adapter if all adapters of its token are leased.
+     */
+    @Key(K_ADAPTER_LEASE_TIMEOUT)
+    @DefaultValue("30000")
+    public long getAdapterLeaseTimeout();
+
+    /**
+     * Returns the number of requests that may wait for an adapter of a single token in `leased` mode.
+     * Further requests are rejected right away.
+     */
+    @Key(K_ADAPTER_LEASE_MAX_WAITING)
+    @DefaultValue("1000")
+    public int getAdapterLeaseMaxWaiting();
+
+    /**
+     * Returns the time in milliseconds after which idle connections are validated in the background.
+     */
+    @Key(K_CONNECTION_PING_INTERVAL)
+    @DefaultValue("60000")
+    public long getConnectionPingInterval();
+
+    /**
+     * Returns the time in milliseconds a database may be unused before its connections are closed.
+     * A value of 0 or less keeps all connections open.
+     */
+    @Key(K_CONNECTION_IDLE_TIMEOUT)
+    @DefaultValue("1800000")
+    public long getConnectionIdleTimeout();
+
+    /**
+     * Returns the number of connections per database that are kept open even after the idle timeout.
+     */
+    @Key(K_CONNECTION_MIN_WARM)
+    @DefaultValue("1")
+    public int getConnectionMinWarm();
+
+    /**
+     * Returns the query used to validate idle connections. If empty, the driver pings the server instead.
+     */
+    @Key(K_CONNECTION_VALIDATION_QUERY)
+    @DefaultValue("")
+    public String getConnectionValidationQuery();
+
+    /**
+     * Returns the time in seconds the validation of an idle connection may take.
+     */
+    @Key(K_CONNECTION_VALIDATION_TIMEOUT)
+    @DefaultValue("2")
+    public int getConnectionValidationTimeout();
+
+    /**
+     * Returns the time in milliseconds a removed adapter may finish its running queries before it is closed anyway.
+     */
+    @Key(K_ADAPTER_DRAIN_TIMEOUT)
+    @DefaultValue("60000")
+    public long getAdapterDrainTimeout();
+
+    /**
+     * If true, connections of all experiments are opened at startup before requests are accepted.
+     */
+    @Key(K_WARM_UP_ENABLED)
+    @DefaultValue("false")
+    public boolean isWarmUpEnabled();
+
+    /**
+     * Returns the number of tokens whose connections are opened in parallel during warm-up.
+     */
+    @Key(K_WARM_UP_PARALLELISM)
+    @DefaultValue("8")
+    public int getWarmUpParallelism();
+
+    /**
+     * Returns the maximum number of tokens whose credentials are cached.
+     */
+    @Key(K_TOKEN_CACHE_MAX_SIZE)
+    @DefaultValue("10000")
+    public int getTokenCacheMaxSize();
+
+    /**
+     * Returns the time in milliseconds the credentials of a token are cached.
+     */
+    @Key(K_TOKEN_CACHE_TTL)
+    @DefaultValue("600000")
+    public long getTokenCacheTtl();
+
+    /**
+     * Returns the time in milliseconds an unknown token is remembered as unknown.
+     */
+    @Key(K_TOKEN_CACHE_NEGATIVE_TTL)
+    @DefaultValue("30000")
+    public long getTokenCacheNegativeTtl();
+
+    /**
+     * If true, the credentials of all experiments are loaded into the cache at startup.
+     */
+    @Key(K_TOKEN_CACHE_PRELOAD)
+    @DefaultValue("true")
+    public boolean isTokenCachePreloadEnabled();
+
+    /**
+     * If true, the number of adapters of each token is scaled between min and max based on its load.
+     * Otherwise all tokens use the configured number of adapter instances.
+     */
+    @Key(K_AUTOSCALE_ENABLED)
+    @DefaultValue("false")
+    public boolean isAutoscaleEnabled();
+
+    /**
+     * Returns the time in milliseconds between two scaling decisions.
+     */
+    @Key(K_AUTOSCALE_INTERVAL)
+    @DefaultValue("10000")
+    public long getAutoscaleInterval();
+
+    @Key(K_AUTOSCALE_MIN)
+    @DefaultValue("1")
+    public int getAutoscaleMin();
+
+    @Key(K_AUTOSCALE_MAX)
+    @DefaultValue("8")
+    public int getAutoscaleMax();
+
+    /**
+     * Returns the average time in milliseconds requests may wait for an adapter before the token is scaled up.
+     */
+    @Key(K_AUTOSCALE_SCALE_UP_WAIT)
+    @DefaultValue("50")
+    public double getAutoscaleScaleUpWait();
+
+    /**
+     * Returns the number of consecutive intervals with high load before a token is scaled up.
+     */
+    @Key(K_AUTOSCALE_SCALE_UP_WINDOWS)
+    @DefaultValue("2")
+    public int getAutoscaleScaleUpWindows();
+
+    /**
+     * Returns the number of consecutive intervals with low load before a token is scaled down.
+     */
+    @Key(K_AUTOSCALE_SCALE_DOWN_WINDOWS)
+    @DefaultValue("6")
+    public int getAutoscaleScaleDownWindows();
+
+    /**
+     * Returns the time in milliseconds a request waits for a connection to be established, including retries.
+     */
+    @Key(K_CONNECT_TIMEOUT)
+    @DefaultValue("10000")
+    public long getConnectTimeout();
+
+    /**
+     * Returns the number of attempts to establish a connection before giving up.
+     */
+    @Key(K_CONNECT_ATTEMPTS)
+    @DefaultValue("3")
+    public int getConnectAttempts();
+
+    /**
+     * Returns the time in milliseconds before the second attempt to establish a connection.
+     * The time doubles with every further attempt.
+     */
+    @Key(K_CONNECT_BACKOFF)
+    @DefaultValue("250")
+    public long getConnectBackoff();
+
+    /**
+     * Returns the number of threads that establish connections.
+     */
+    @Key(K_CONNECT_THREADS)
+    @DefaultValue("8")
+    public int getConnectThreads();
+
+    /**
+     * Returns the number of consecutive failed connection attempts after which the circuit breaker of a host opens.
+     */
+    @Key(K_BREAKER_FAILURE_THRESHOLD)
+    @DefaultValue("5")
+    public int getBreakerFailureThreshold();
+
+    /**
+     * Returns the time in milliseconds the circuit breaker of a host stays open before a connection is attempted again.
+     * The time doubles every time the attempt fails.
+     */
+    @Key(K_BREAKER_OPEN_DURATION)
+    @DefaultValue("2000")
+    public long getBreakerOpenDuration();
+
+    @Key(K_BREAKER_MAX_OPEN_DURATION)
+    @DefaultValue("60000")
+    public long getBreakerMaxOpenDuration();
+
+    /**
+     * Returns the hosts of the read replicas of the database. Read queries are routed to them, if any are configured.
+     */
+    @Key(K_REPLICA_HOSTS)
+    @DefaultValue("")
+    public String[] getReplicaHosts();
+
+    /**
+     * Returns how read queries are spread over the replicas: `roundRobin` or `leastLoaded`.
+     */
+    @Key(K_REPLICA_ROUTING)
+    @DefaultValue("roundRobin")
+    public String getReplicaRouting();
+
+    /**
+     * Returns the replication lag in seconds above which a replica doesn't receive read queries.
+     * A value of 0 or less disables the lag check.
+     */
+    @Key(K_REPLICA_MAX_LAG)
+    @DefaultValue("10")
+    public int getReplicaMaxLag();
+
+    @Key(K_REPLICA_LAG_CHECK_INTERVAL)
+    @DefaultValue("5000")
+    public long getReplicaLagCheckInterval();
+
+    /**
+     * Returns the number of rows that are fetched from the database at once while a query result is streamed.
+     * Only takes effect with cursor fetch enabled.
+     */
+    @Key(K_STREAM_FETCH_SIZE)
+    @DefaultValue("500")
+    public int getStreamFetchSize();
+
+    /**
+     * Returns the maximum number of statements of a batch. Larger batches are rejected.
+     */
+    @Key(K_BATCH_MAX_STATEMENTS)
+    @DefaultValue("1000")
+    public int getBatchMaxStatements();
+
+    /**
+     * Returns the time in milli seconds a transaction waits for the other requests on the connection of its adapter
+     * to finish, before it gives up.
+     */
+    @Key(K_TRANSACTION_LOCK_TIMEOUT)
+    @DefaultValue("10000")
+    public long getTransactionLockTimeout();
+
+    /**
+     * Returns the number of prepared statements of parameterized queries that are kept open per connection for reuse.
+     * 0 disables the reuse.
+     */
+    @Key(K_STATEMENT_CACHE_SIZE)
+    @DefaultValue("25")
+    public int getStatementCacheSize();
+
+    /**
+     * Returns the maximum number of statements a token can prepare to run them by their handle.
+     */
+    @Key(K_PREPARED_MAX_PER_TOKEN)
+    @DefaultValue("1000")
+    public int getMaxPreparedStatementsPerToken();
+
+    /**
+     * Returns the number of rows of a bulk insert that are sent to the database at once.
+     */
+    @Key(K_BULK_INSERT_CHUNK_SIZE)
+    @DefaultValue("1000")
+    public int getBulkInsertChunkSize();
+
+    /**
+     * Returns the number of threads that run asynchronous queries.
+     */
+    @Key(K_ASYNC_THREADS)
+    @DefaultValue("8")
+    public int getAsyncThreads();
+
+    /**
+     * Returns the number of asynchronous queries a token may have queued or running at the same time.
+     */
+    @Key(K_ASYNC_MAX_JOBS_PER_TOKEN)
+    @DefaultValue("4")
+    public int getAsyncMaxJobsPerToken();
+
+    /**
+     * Returns the time in milliseconds the result of an asynchronous query is kept after it finished.
+     */
+    @Key(K_ASYNC_RESULT_TTL)
+    @DefaultValue("300000")
+    public long getAsyncResultTtl();
+
+    /**
+     * Returns the number of bytes of results of asynchronous queries that are kept at most.
+     * The oldest results are dropped first.
+     */
+    @Key(K_ASYNC_MAX_RETAINED_BYTES)
+    @DefaultValue("268435456")
+    public long getAsyncMaxRetainedBytes();
+
+    /**
+     * Returns the number of threads that run the statements of a single token.
+     * If it is 0 or less, the token has as many threads as it has connections, see `getEffectiveExecutorThreads()`.
+     */
+    @Key(K_EXECUTOR_THREADS)
+    @DefaultValue("0")
+    public int getExecutorThreads();
+
+    /**
+     * Returns the number of threads that run the statements of a single token: the configured number,
+     * or else the number of connections a token uses at most on each of the primary and the replicas.
+     */
+    default int getEffectiveExecutorThreads() {
+        if(getExecutorThreads() > 0) {
+            return getExecutorThreads();
+        }
+        int connections;
+        if(isAccessLimited()) {
+            connections = getNumAdapterAccessLimit();
+        } else if("pooled".equals(getEffectiveAdapterAccessMode())) {
+            connections = getPoolMaxSize();
+        } else if(isAutoscaleEnabled()) {
+            connections = getAutoscaleMax();
+        } else {
+            connections = getNumAdapterInstances();
+        }
+        int numHosts = 1;
+        for (String replica : getReplicaHosts()) {
+            if(!replica.trim().isEmpty()) {
+                numHosts++;
+            }
+        }
+        return Math.max(1, connections * numHosts);
+    }
+
+    /**
+     * Returns the number of requests of a single token that wait for a thread, further requests are rejected.
+     */
+    @Key(K_EXECUTOR_QUEUE_SIZE)
+    @DefaultValue("100")
+    public int getExecutorQueueSize();
+
+    /**
+     * Returns what happens to a request if the queue of its token is full:
+     * `abort` rejects it with 503, `callerRuns` runs it on the thread of the request.
+     */
+    @Key(K_EXECUTOR_REJECTION)
+    @DefaultValue("abort")
+    public String getExecutorRejection();
+
+    /**
+     * Returns true if requests and their statements run on virtual threads, which requires Java 21 or newer.
+     * The number of statements of a token that run at the same time is limited as configured for the executors.
+     */
+    @Key(K_VIRTUAL_THREADS)
+    @DefaultValue("false")
+    public boolean isVirtualThreadsEnabled();
+
+    /**
+     * Returns the number of idle connections to the admin database that are kept open.
+     */
+    @Key(K_ADMIN_POOL_MIN_IDLE)
+    @DefaultValue("1")
+    public int getAdminPoolMinIdle();
+
+    /**
+     * Returns the maximum number of connections to the admin database used at once.
+     */
+    @Key(K_ADMIN_POOL_MAX_SIZE)
+    @DefaultValue("4")
+    public int getAdminPoolMaxSize();
+
+    /**
+     * Returns the time in milliseconds to wait for a connection to the admin database if all are in use.
+     */
+    @Key(K_ADMIN_POOL_BORROW_TIMEOUT)
+    @DefaultValue("10000")
+    public long getAdminPoolBorrowTimeout();
+
+    /**
+     * Returns the number of idle adapters that the pool of a token keeps open.
+     */
+    @Key(K_POOL_MIN_IDLE)
+    @DefaultValue("1")
+    public int getPoolMinIdle();
+
+    /**
+     * Returns the maximum number of adapters, and thereby connections, that the pool of a single token opens.
+     */
+    @Key(K_POOL_MAX_SIZE)
+    @DefaultValue("16")
+    public int getPoolMaxSize();
+
+    /**
+     * Returns the time in milliseconds a request waits for an adapter of an exhausted pool before it fails.
+     */
+    @Key(K_POOL_BORROW_TIMEOUT)
+    @DefaultValue("30000")
+    public long getPoolBorrowTimeout();
+
+    /**
+     * Returns the time in milliseconds after which idle adapters exceeding `getPoolMinIdle()` are closed.
+     */
+    @Key(K_POOL_IDLE_TIMEOUT)
+    @DefaultValue("300000")
+    public long getPoolIdleTimeout();
+
+    /**
+     * Returns the time in milliseconds an adapter may stay idle before it is validated again when being borrowed.
+     */
+    @Key(K_POOL_VALIDATION_INTERVAL)
+    @DefaultValue("30000")
+    public long getPoolValidationInterval();
+
+    /**
+     * Returns the time in seconds the validation of a pooled connection may take.
+     */
+    @Key(K_POOL_VALIDATION_TIMEOUT)
+    @DefaultValue("2")
+    public int getPoolValidationTimeout();
+
+    /**
+     * Returns the interval in milliseconds in which idle adapters are evicted and pools are refilled.
+     */
+    @Key(K_POOL_MAINTENANCE_INTERVAL)
+    @DefaultValue("10000")
+    public long getPoolMaintenanceInterval();
+
     /**
      * Returns true if access to adapters of a specific token is limited to a `getNumAdapterAccessLimit()` amount.
      * Remaining requests are blocked.
@@ -182,4 +705,18 @@ public interface IServerConfig extends Mutable {
     @Key(K_DB_PROP_USE_UNBUFFERED_INPUT)
     @DefaultValue("true")
     boolean getDPPropUseUnbufferedInput();
+
+    /**
+     * Statements with a fetch size fetch their rows through a server-side cursor instead of reading the whole result.
+     */
+    @Key(K_DB_PROP_USE_CURSOR_FETCH)
+    @DefaultValue("true")
+    boolean getDBPropUseCursorFetch();
+
+    /**
+     * Batches of inserts are sent as multi-row inserts.
+     */
+    @Key(K_DB_PROP_REWRITE_BATCHED_STATEMENTS)
+    @DefaultValue("true")
+    boolean getDBPropRewriteBatchedStatements();
 }
@@ -0,0 +1,108 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.model.SQLQuery;
+import ai.libs.sqlrest.supplier.QueryCancellation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cancels the statements of requests whose clients went away, so that the database doesn't keep working
+ * on results nobody reads, and records how many requests of each token were cancelled.
+ *
+ * The cancellation of a request is opened by the request, which runs its statements with it.
+ * It is cancelled if the asynchronous request times out, see {@link SQLServerConfiguration}, or fails,
+ * or by the request itself if writing its response fails.
+ *
+ * Tomcat doesn't watch the connection of an asynchronous request while it waits for its result, so it doesn't
+ * report a client that goes away meanwhile. Streamed results notice it once writing the rows fails.
+ * The other requests time out at their deadline instead, see `X-Request-Timeout`, and at the timeout of
+ * asynchronous requests if they have none.
+ */
+@Component
+public class QueryCancellations implements DeferredResultProcessingInterceptor {
+
+    private final static Logger logger = LoggerFactory.getLogger(QueryCancellations.class);
+
+    private static final String REQUEST_ATTRIBUTE = QueryCancellations.class.getName() + ".request";
+
+    private final Map<String, AtomicLong> numCancelled = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a new cancellation for the request of the query, which is bound to the current web request, if any.
+     * The statements of the request time out at the deadline of the query.
+     */
+    public QueryCancellation open(SQLQuery query) {
+        String token = query.getToken();
+        QueryCancellation cancellation = new QueryCancellation(token, query.getDeadline());
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if(attributes != null) {
+            attributes.setAttribute(REQUEST_ATTRIBUTE, new Request(token, cancellation), RequestAttributes.SCOPE_REQUEST);
+        }
+        return cancellation;
+    }
+
+    /**
+     * Cancels the request of the token and records it, unless it was done or cancelled already.
+     * @param reason Why the request is cancelled, for the log.
+     */
+    public void cancel(String token, QueryCancellation cancellation, String reason) {
+        if(cancellation.cancel()) {
+            numCancelled.computeIfAbsent(String.valueOf(token), t -> new AtomicLong(0)).incrementAndGet();
+            logger.info("Cancelled a query of token {}, because {}.", token, reason);
+        }
+    }
+
+    @Override
+    public <T> boolean handleTimeout(NativeWebRequest request, DeferredResult<T> deferredResult) {
+        cancel(request, "the request timed out");
+        return true;
+    }
+
+    @Override
+    public <T> boolean handleError(NativeWebRequest request, DeferredResult<T> deferredResult, Throwable t) {
+        cancel(request, "the client went away");
+        return true;
+    }
+
+    private void cancel(NativeWebRequest request, String reason) {
+        Object attribute = request.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if(attribute instanceof Request) {
+            Request cancelled = (Request) attribute;
+            cancel(cancelled.token, cancelled.cancellation, reason);
+        }
+    }
+
+    /**
+     * Returns the number of cancelled requests by their token.
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new TreeMap<>();
+        numCancelled.forEach((token, count) -> stats.put(token, count.get()));
+        return stats;
+    }
+
+    private static class Request {
+
+        private final String token;
+
+        private final QueryCancellation cancellation;
+
+        private Request(String token, QueryCancellation cancellation) {
+            this.token = token;
+            this.cancellation = cancellation;
+        }
+
+    }
+
+}
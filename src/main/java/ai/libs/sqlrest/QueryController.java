@@ -1,24 +1,67 @@
 package ai.libs.sqlrest;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+
+import javax.servlet.http.HttpServletResponse;
 
 import ai.libs.jaicore.db.IDatabaseAdapter;
+import ai.libs.sqlrest.encoding.BinaryResultReader;
+import ai.libs.sqlrest.encoding.BinaryResultWriter;
+import ai.libs.sqlrest.encoding.ColumnarJsonReader;
+import ai.libs.sqlrest.encoding.ColumnarJsonWriter;
+import ai.libs.sqlrest.encoding.JsonRowsWriter;
+import ai.libs.sqlrest.encoding.ResultSetWriter;
+import ai.libs.sqlrest.encoding.RowReader;
+import ai.libs.sqlrest.supplier.CustomDatabaseAdapter;
+import ai.libs.sqlrest.supplier.QueryCancellation;
+import ai.libs.sqlrest.supplier.QueryCursor;
+import ai.libs.sqlrest.supplier.Transaction;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.aeonbits.owner.ConfigCache;
 import org.api4.java.datastructure.kvstore.IKVStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import ai.libs.sqlrest.model.DeadlineExceededException;
+import ai.libs.sqlrest.model.QueryJobStatus;
+import ai.libs.sqlrest.model.SQLBatch;
+import ai.libs.sqlrest.model.SQLExecution;
+import ai.libs.sqlrest.model.SQLPreparedStatement;
 import ai.libs.sqlrest.model.SQLQuery;
+import ai.libs.sqlrest.model.SQLStatement;
+import ai.libs.sqlrest.model.StatementResult;
+import ai.libs.sqlrest.model.TransactionResult;
 
 @RestController
+@Profile("!reactive")
 public class QueryController {
 
     private final static Logger logger = LoggerFactory.getLogger(QueryController.class);
@@ -30,51 +73,569 @@ public class QueryController {
 
 	private QueryRuntimeModel runtimeModel;
 
-	public QueryController(@Qualifier("interceptorConf") IQueryInterceptor access, QueryRuntimeModel runtimeModel) {
+	private final ObjectMapper objectMapper;
+
+	private final StatementRegistry statementRegistry;
+
+	private final QueryJobs queryJobs;
+
+	private final QueryExecutors executors;
+
+	private final QueryCancellations cancellations;
+
+	/*
+	 * The longest time a request for the result of an asynchronous query waits for it to finish.
+	 */
+	private static final long MAX_JOB_WAIT = 60000;
+
+	private final ResultSetWriter ndjsonWriter, jsonArrayWriter, columnarWriter, binaryWriter;
+
+	public QueryController(@Qualifier("interceptorConf") IQueryInterceptor access, QueryRuntimeModel runtimeModel,
+						   ObjectMapper objectMapper, StatementRegistry statementRegistry, QueryJobs queryJobs,
+						   QueryExecutors executors, QueryCancellations cancellations) {
 	    this.iQueryInterceptor = access;
 	    this.runtimeModel = runtimeModel;
+	    this.statementRegistry = statementRegistry;
+	    this.queryJobs = queryJobs;
+	    this.executors = executors;
+	    this.cancellations = cancellations;
+	    this.objectMapper = objectMapper;
+	    this.ndjsonWriter = new JsonRowsWriter(objectMapper, true);
+	    this.jsonArrayWriter = new JsonRowsWriter(objectMapper, false);
+	    this.columnarWriter = new ColumnarJsonWriter(objectMapper);
+	    this.binaryWriter = new BinaryResultWriter();
     }
 
 	private ClosableQuery getConnector(final SQLQuery query) throws SQLException, InterruptedException {
 	    return iQueryInterceptor.requestConnection(query);
     }
 
+	/*
+	 * Runs the call on a thread of the token. Its statements time out at the deadline of the request.
+	 * Tomcat doesn't notice that the client went away while the request waits for the call, so the request times out
+	 * at its deadline as well, which cancels the statements that still run and answers it with 504.
+	 * Requests without a deadline are cancelled once the asynchronous request times out, see QueryCancellations.
+	 */
+	private <T> DeferredResult<T> submit(final SQLQuery query, final QueryExecutors.Call<T> call) {
+		setDeadline(query);
+		QueryCancellation cancellation = this.cancellations.open(query);
+		DeferredResult<T> result;
+		if (query.hasDeadline()) {
+			result = new DeferredResult<>(Math.max(1, query.getRemainingMillis()));
+			// The callback runs before the interceptors of the request, which are skipped once it set the result.
+			result.onTimeout(() -> {
+				this.cancellations.cancel(query.getToken(), cancellation, "the deadline passed");
+				result.setErrorResult(new DeadlineExceededException(query.getToken(), "before the response was sent"));
+			});
+		} else {
+			result = new DeferredResult<>();
+		}
+		this.executors.submit(query.getToken(), () -> cancellation.run(call::call)).whenComplete((value, error) -> {
+			if (error == null) {
+				result.setResult(value);
+			} else {
+				result.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Runs a read query. It is routed to a read replica, if any are configured,
+	 * unless the X-Read-Primary header is set to read the client's own writes.
+	 * The rows are written as JSON straight from the result set, the response is sent once all of them are written.
+	 * Like the other statements, the query runs on a thread of its token, see {@link QueryExecutors}.
+	 */
 	@PostMapping("/query")
-	public List<IKVStore> query(@RequestBody final SQLQuery query) throws SQLException, IOException, InterruptedException {
+	public DeferredResult<ResponseEntity<byte[]>> query(@RequestBody final SQLQuery query,
+								@RequestHeader(value = "X-Read-Primary", defaultValue = "false") final boolean readPrimary) {
+		try {
+			this.assertLegalQuery(query.getQuery());
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Query is not allowed", e);
+		}
+		query.setReadOnly(!readPrimary);
+		return this.submit(query, () -> {
+			byte[] body;
+			try (ClosableQuery connection = this.getConnector(query)) {
+				body = this.queryAsJson(connection.getAdapter(), query.getQuery(), query.getParameters());
+			}
+			return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+		});
+	}
+
+	/**
+	 * Runs a read query like `/query` in the background and responds at once with the id of its job,
+	 * whose result is then fetched from `/jobs/{id}`. The job fails if the query doesn't finish by its deadline.
+	 */
+	@PostMapping("/query/async")
+	public ResponseEntity<QueryJobStatus> queryAsync(@RequestBody final SQLQuery query,
+								@RequestHeader(value = "X-Read-Primary", defaultValue = "false") final boolean readPrimary) {
+		try {
+			this.assertLegalQuery(query.getQuery());
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Query is not allowed", e);
+		}
+		query.setReadOnly(!readPrimary);
+		setDeadline(query);
+		QueryJobs.Job job = this.queryJobs.submit(query.getToken(), this.cancellations.open(query), () -> {
+			try (ClosableQuery connection = this.getConnector(query)) {
+				return this.queryAsJson(connection.getAdapter(), query.getQuery(), query.getParameters());
+			}
+		});
+		return ResponseEntity.accepted().location(URI.create("/jobs/" + job.getId())).body(job.getStatus());
+	}
+
+	/**
+	 * Responds with the rows of an asynchronous query once it is done. If it isn't, the request waits for it
+	 * up to the given milliseconds without holding a thread, and then responds with its state and 202.
+	 * A failed query is answered with its error and 500, an unknown or expired job with 404.
+	 */
+	@GetMapping("/jobs/{id}")
+	public DeferredResult<ResponseEntity<?>> job(@PathVariable final String id,
+								@RequestParam(value = "wait", defaultValue = "0") final long wait) {
+		QueryJobs.Job job = this.queryJobs.get(id);
+		if (job == null || job.isFinished() || wait <= 0) {
+			DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+			result.setResult(this.jobResponse(job));
+			return result;
+		}
+		DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(Math.min(wait, MAX_JOB_WAIT),
+				() -> this.jobResponse(job));
+		job.getCompletion().thenAccept(done -> result.setResult(this.jobResponse(done)));
+		return result;
+	}
+
+	private ResponseEntity<?> jobResponse(final QueryJobs.Job job) {
+		if (job == null) {
+			return ResponseEntity.notFound().build();
+		}
+		switch (job.getState()) {
+			case DONE:
+				byte[] rows = job.getResult();
+				if (rows == null) {
+					// The result was dropped in the meantime.
+					return ResponseEntity.notFound().build();
+				}
+				return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(rows);
+			case FAILED:
+				return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(job.getStatus());
+			case CANCELLED:
+				return ResponseEntity.notFound().build();
+			default:
+				return ResponseEntity.accepted().body(job.getStatus());
+		}
+	}
+
+	/**
+	 * Removes an asynchronous query. It isn't run anymore if it is queued, and its result is dropped if it is done.
+	 */
+	@DeleteMapping("/jobs/{id}")
+	public boolean removeJob(@PathVariable final String id) {
+		return this.queryJobs.remove(id);
+	}
+
+	private byte[] queryAsJson(final IDatabaseAdapter adapter, final String sql, final List<Object> parameters)
+			throws SQLException, IOException {
+		if (!(adapter instanceof CustomDatabaseAdapter)) {
+			if (!parameters.isEmpty()) {
+				throw new UnsupportedOperationException("Parameters require the adapters of this server, but got: "
+						+ adapter.getClass().getName());
+			}
+			return this.objectMapper.writeValueAsBytes(adapter.query(sql));
+		}
+		try (QueryCursor cursor = ((CustomDatabaseAdapter) adapter).openCursor(sql, parameters, 0)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+			this.jsonArrayWriter.write(cursor.getResultSet(), out);
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Runs a read query like `/query`, but streams the rows as newline delimited JSON objects while they are fetched
+	 * from the database, so that the result is never held in memory as a whole.
+	 * Selected by accepting application/x-ndjson.
+	 */
+	@PostMapping(value = "/query", produces = JsonRowsWriter.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> queryAsNdJson(@RequestBody final SQLQuery query,
+								@RequestHeader(value = "X-Read-Primary", defaultValue = "false") final boolean readPrimary)
+			throws SQLException, InterruptedException {
+		return this.streamQuery(query, readPrimary, this.ndjsonWriter);
+	}
+
+	/**
+	 * Runs a read query like `/query`, but responds with the column names and types once, followed by the rows
+	 * as positional arrays. Selected by accepting application/vnd.sqlrest.columnar+json.
+	 */
+	@PostMapping(value = "/query", produces = ColumnarJsonWriter.MEDIA_TYPE_VALUE)
+	public ResponseEntity<StreamingResponseBody> queryAsColumns(@RequestBody final SQLQuery query,
+								@RequestHeader(value = "X-Read-Primary", defaultValue = "false") final boolean readPrimary)
+			throws SQLException, InterruptedException {
+		return this.streamQuery(query, readPrimary, this.columnarWriter);
+	}
+
+	/**
+	 * Runs a read query like `/query`, but responds in the binary format of {@link BinaryResultWriter}.
+	 * Selected by accepting application/vnd.sqlrest.binary.
+	 */
+	@PostMapping(value = "/query", produces = BinaryResultWriter.MEDIA_TYPE_VALUE)
+	public ResponseEntity<StreamingResponseBody> queryAsBinary(@RequestBody final SQLQuery query,
+								@RequestHeader(value = "X-Read-Primary", defaultValue = "false") final boolean readPrimary)
+			throws SQLException, InterruptedException {
+		return this.streamQuery(query, readPrimary, this.binaryWriter);
+	}
+
+	/**
+	 * Runs a read query like `/query` and responds with the same JSON array, but streams the rows while they are
+	 * fetched from the database.
+	 */
+	@PostMapping("/query/stream")
+	public ResponseEntity<StreamingResponseBody> queryAsStream(@RequestBody final SQLQuery query,
+								@RequestHeader(value = "X-Read-Primary", defaultValue = "false") final boolean readPrimary)
+			throws SQLException, InterruptedException {
+		return this.streamQuery(query, readPrimary, this.jsonArrayWriter);
+	}
+
+	/*
+	 * Sets the deadline of the query from the X-Request-Timeout header of the current request, if it has one.
+	 * Invalid values are answered with 400.
+	 */
+	private static void setDeadline(final SQLQuery query) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes instanceof ServletRequestAttributes) {
+			query.setTimeoutFromHeader(((ServletRequestAttributes) attributes).getRequest().getHeader(SQLQuery.TIMEOUT_HEADER));
+		}
+	}
+
+	private ResponseEntity<StreamingResponseBody> streamQuery(final SQLQuery query, final boolean readPrimary,
+															  final ResultSetWriter writer)
+			throws SQLException, InterruptedException {
 		try {
 			this.assertLegalQuery(query.getQuery());
 		} catch (Exception e) {
 			throw new IllegalArgumentException("Query is not allowed", e);
 		}
-        try (ClosableQuery connection = this.getConnector(query)) {
-            return connection.getAdapter().query(query.getQuery());
-        }
+		query.setReadOnly(!readPrimary);
+		setDeadline(query);
+		// The query is run before the response is committed, so that errors are answered with an error status.
+		ClosableQuery connection = this.getConnector(query);
+		QueryCancellation cancellation = this.cancellations.open(query);
+		QueryCursor cursor;
+		try {
+			cursor = this.openCursor(connection.getAdapter(), query, cancellation);
+		} catch (SQLException | RuntimeException e) {
+			connection.close();
+			throw e;
+		}
+		StreamingResponseBody body = out -> {
+			try (QueryCursor c = cursor) {
+				try {
+					writer.write(c.getResultSet(), out);
+				} catch (IOException e) {
+					// Most likely the client went away. The statement is cancelled before the cursor is closed,
+					// so that the database stops producing rows nobody reads.
+					this.cancellations.cancel(query.getToken(), cancellation, "writing the rows failed");
+					throw e;
+				}
+			} catch (IOException e) {
+				logger.warn("Streaming the result of a query was aborted: {}", e.getMessage());
+				throw e;
+			} catch (SQLException e) {
+				throw new IOException("Error while streaming the result of a query.", e);
+			} finally {
+				try {
+					connection.close();
+				} catch (SQLException e) {
+					logger.warn("Error while releasing the connection of a streamed query: {}", e.getMessage());
+				}
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType(writer.getMediaType())).body(body);
+	}
+
+	private QueryCursor openCursor(final IDatabaseAdapter adapter, final SQLQuery query,
+								   final QueryCancellation cancellation) throws SQLException {
+		if (!(adapter instanceof CustomDatabaseAdapter)) {
+			throw new UnsupportedOperationException("Streaming query results requires the adapters of this server, "
+					+ "but got: " + adapter.getClass().getName());
+		}
+		// The statement stays registered with the cancellation until the cursor is closed.
+		try {
+			return cancellation.run(() -> ((CustomDatabaseAdapter) adapter).openCursor(query.getQuery(),
+					query.getParameters(), config.getStreamFetchSize()));
+		} catch (SQLException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SQLException(e);
+		}
 	}
 
 	@PostMapping("/update")
-	public int update(@RequestBody final SQLQuery query) throws SQLException, InterruptedException, IOException {
+	public DeferredResult<Integer> update(@RequestBody final SQLQuery query) {
 		try {
 			this.assertLegalQuery(query.getQuery());
 		} catch (Exception e) {
 			throw new IllegalArgumentException("Query is not allowed", e);
 		}
-        try (ClosableQuery connection = this.getConnector(query)) {
-            IDatabaseAdapter connector = connection.getAdapter();
-            return connector.update(query.getQuery());
-        }
+		return this.submit(query, () -> {
+			try (ClosableQuery connection = this.getConnector(query)) {
+				IDatabaseAdapter connector = connection.getAdapter();
+				return connector.update(query.getQuery(), query.getParameters());
+			}
+		});
 	}
 
 	@PostMapping("/insert")
-	public int[] insert(@RequestBody final SQLQuery query) throws SQLException, InterruptedException {
+	public DeferredResult<int[]> insert(@RequestBody final SQLQuery query) {
 		try {
 			this.assertLegalQuery(query.getQuery());
 		} catch (Exception e) {
 			throw new IllegalArgumentException("Query is not allowed", e);
 		}
-        try (ClosableQuery connection = this.getConnector(query)) {
-            IDatabaseAdapter connector = connection.getAdapter();
-            return connector.insert(query.getQuery(), Collections.emptyList());
-        }
+		return this.submit(query, () -> {
+			try (ClosableQuery connection = this.getConnector(query)) {
+				IDatabaseAdapter connector = connection.getAdapter();
+				return connector.insert(query.getQuery(), query.getParameters());
+			}
+		});
+	}
+
+	/**
+	 * Registers a statement of the token, which is then run by `/execute` with its handle.
+	 * The statement is prepared on the connection that serves this request, so that errors of the token
+	 * or the statement are reported here. Connections that didn't prepare it yet do so when they run it first.
+	 */
+	@PostMapping("/prepare")
+	public DeferredResult<Map<String, Long>> prepare(@RequestBody final SQLPreparedStatement statement) {
+		try {
+			this.assertLegalQuery(statement.getQuery());
+			Objects.requireNonNull(statement.getType(), "The statement has no type.");
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Query is not allowed", e);
+		}
+		SQLQuery query = new SQLQuery(statement.getToken(), statement.getQuery());
+		return this.submit(query, () -> {
+			try (ClosableQuery connection = this.getConnector(query)) {
+				IDatabaseAdapter adapter = connection.getAdapter();
+				if (adapter instanceof CustomDatabaseAdapter) {
+					((CustomDatabaseAdapter) adapter).prepare(statement.getQuery(), statement.getType() == SQLStatement.Type.INSERT);
+				}
+			}
+			long handle = this.statementRegistry.register(statement.getToken(),
+					new SQLStatement(statement.getType(), statement.getQuery()));
+			return Collections.singletonMap("handle", handle);
+		});
+	}
+
+	/**
+	 * Runs a statement prepared by `/prepare` with the given parameters. Queries are routed to a read replica
+	 * like the ones of `/query`, unless the X-Read-Primary header is set.
+	 */
+	@PostMapping("/execute")
+	public DeferredResult<StatementResult> execute(@RequestBody final SQLExecution execution,
+								@RequestHeader(value = "X-Read-Primary", defaultValue = "false") final boolean readPrimary) {
+		SQLStatement prepared = this.statementRegistry.get(execution.getToken(), execution.getHandle());
+		SQLStatement statement = new SQLStatement(prepared.getType(), prepared.getQuery());
+		statement.setParameters(execution.getParameters());
+		SQLQuery query = new SQLQuery(execution.getToken(), statement.getQuery(), statement.getParameters());
+		query.setReadOnly(statement.getType() == SQLStatement.Type.QUERY && !readPrimary);
+		return this.submit(query, () -> {
+			try (ClosableQuery connection = this.getConnector(query)) {
+				return this.runStatement(connection.getAdapter(), statement);
+			}
+		});
+	}
+
+	/**
+	 * Removes a statement prepared by `/prepare`, its handle can't be used anymore.
+	 */
+	@PostMapping("/release")
+	public boolean release(@RequestBody final SQLExecution execution) {
+		return this.statementRegistry.release(execution.getToken(), execution.getHandle());
+	}
+
+	/**
+	 * Runs the statements of a batch in their order, one after another on the same connection,
+	 * and responds with the result of each of them.
+	 * The batch passes the interceptors once, so it is limited, timed and logged as a single query.
+	 * A failed statement doesn't fail the batch, its error is part of the results instead.
+	 */
+	@PostMapping("/batch")
+	public DeferredResult<List<StatementResult>> batch(@RequestBody final SQLBatch batch) {
+		SQLQuery query = this.toQuery(batch);
+		return this.submit(query, () -> this.runBatch(batch, query));
+	}
+
+	private List<StatementResult> runBatch(final SQLBatch batch, final SQLQuery query)
+			throws SQLException, InterruptedException, IOException {
+		List<SQLStatement> statements = batch.getStatements();
+		List<StatementResult> results = new ArrayList<>(statements.size());
+		try (ClosableQuery connection = this.getConnector(query)) {
+			IDatabaseAdapter adapter = connection.getAdapter();
+			boolean failed = false;
+			for (SQLStatement statement : statements) {
+				if (failed && batch.isStopOnError()) {
+					results.add(StatementResult.ofError("Skipped after a previous statement failed."));
+					continue;
+				}
+				try {
+					results.add(this.runStatement(adapter, statement));
+				} catch (SQLException e) {
+					logger.debug("Statement of a batch of token {} failed: {}", batch.getToken(), e.getMessage());
+					results.add(StatementResult.ofError(e.getMessage()));
+					failed = true;
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Runs the statements of a batch in one transaction, which is committed once all of them succeeded.
+	 * If a statement fails, the transaction is rolled back and the response has the status 409 (Conflict).
+	 * The connection of the adapter is held exclusively during the transaction, other requests on it wait meanwhile.
+	 */
+	@PostMapping("/transaction")
+	public DeferredResult<ResponseEntity<TransactionResult>> transaction(@RequestBody final SQLBatch batch) {
+		SQLQuery query = this.toQuery(batch);
+		return this.submit(query, () -> this.runTransaction(batch, query));
+	}
+
+	private ResponseEntity<TransactionResult> runTransaction(final SQLBatch batch, final SQLQuery query)
+			throws SQLException, InterruptedException, IOException {
+		List<SQLStatement> statements = batch.getStatements();
+		List<StatementResult> results = new ArrayList<>(statements.size());
+		try (ClosableQuery connection = this.getConnector(query)) {
+			IDatabaseAdapter adapter = connection.getAdapter();
+			if (!(adapter instanceof CustomDatabaseAdapter)) {
+				throw new UnsupportedOperationException("Transactions require the adapters of this server, but got: "
+						+ adapter.getClass().getName());
+			}
+			try (Transaction transaction = ((CustomDatabaseAdapter) adapter).beginTransaction(config.getTransactionLockTimeout())) {
+				for (SQLStatement statement : statements) {
+					try {
+						results.add(this.runStatement(transaction, statement));
+					} catch (SQLException e) {
+						logger.debug("Transaction of token {} is rolled back: {}", batch.getToken(), e.getMessage());
+						results.add(StatementResult.ofError(e.getMessage()));
+						return ResponseEntity.status(HttpStatus.CONFLICT).body(new TransactionResult(false, results));
+					}
+				}
+				transaction.commit();
+			}
+		}
+		return ResponseEntity.ok(new TransactionResult(true, results));
+	}
+
+	/*
+	 * Checks the statements of the batch and returns the query that describes the whole batch to the interceptors,
+	 * e.g. in the log of slow queries.
+	 */
+	private SQLQuery toQuery(final SQLBatch batch) {
+		List<SQLStatement> statements = batch.getStatements();
+		if (statements == null || statements.isEmpty()) {
+			throw new IllegalArgumentException("The batch has no statements.");
+		}
+		if (statements.size() > config.getBatchMaxStatements()) {
+			throw new IllegalArgumentException("The batch has " + statements.size() + " statements, at most "
+					+ config.getBatchMaxStatements() + " are allowed.");
+		}
+		StringJoiner sql = new StringJoiner(";\n");
+		for (SQLStatement statement : statements) {
+			try {
+				this.assertLegalQuery(statement.getQuery());
+				Objects.requireNonNull(statement.getType(), "The statement has no type.");
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Query is not allowed", e);
+			}
+			sql.add(statement.getQuery());
+		}
+		return new SQLQuery(batch.getToken(), sql.toString());
+	}
+
+	private StatementResult runStatement(final Transaction transaction, final SQLStatement statement)
+			throws SQLException, IOException {
+		switch (statement.getType()) {
+			case UPDATE:
+				return StatementResult.ofUpdateCount(transaction.update(statement.getQuery(), statement.getParameters()));
+			case INSERT:
+				return StatementResult.ofGeneratedKeys(transaction.insert(statement.getQuery(), statement.getParameters()));
+			default:
+				ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+				if (!transaction.query(statement.getQuery(), statement.getParameters(), resultSet -> this.jsonArrayWriter.write(resultSet, out))) {
+					return StatementResult.ofRows("[]");
+				}
+				return StatementResult.ofRows(new String(out.toByteArray(), StandardCharsets.UTF_8));
+		}
+	}
+
+	private StatementResult runStatement(final IDatabaseAdapter adapter, final SQLStatement statement)
+			throws SQLException, IOException {
+		switch (statement.getType()) {
+			case UPDATE:
+				return StatementResult.ofUpdateCount(adapter.update(statement.getQuery(), statement.getParameters()));
+			case INSERT:
+				return StatementResult.ofGeneratedKeys(adapter.insert(statement.getQuery(), statement.getParameters()));
+			default:
+				return StatementResult.ofRows(new String(this.queryAsJson(adapter, statement.getQuery(),
+						statement.getParameters()), StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Inserts rows into a table of the token while they are received, in batches of `server.bulkInsert.chunkSize` rows.
+	 * The body has the columns and rows like the result of a query accepting application/vnd.sqlrest.columnar+json.
+	 * Responds with the number of inserted rows and their generated keys.
+	 */
+	@PostMapping(value = "/insert/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, ColumnarJsonWriter.MEDIA_TYPE_VALUE})
+	public StatementResult bulkInsert(@RequestParam final String token, @RequestParam final String table,
+									  final InputStream body) throws SQLException, InterruptedException, IOException {
+		return this.bulkInsert(token, table, new ColumnarJsonReader(this.objectMapper.getFactory(), body));
+	}
+
+	/**
+	 * Inserts rows like `/insert/bulk`, but reads them in the binary format of {@link BinaryResultWriter}.
+	 */
+	@PostMapping(value = "/insert/bulk", consumes = BinaryResultWriter.MEDIA_TYPE_VALUE)
+	public StatementResult bulkInsertBinary(@RequestParam final String token, @RequestParam final String table,
+											final InputStream body) throws SQLException, InterruptedException, IOException {
+		return this.bulkInsert(token, table, new BinaryResultReader(body));
+	}
+
+	private StatementResult bulkInsert(final String token, final String table, final RowReader rows)
+			throws SQLException, InterruptedException, IOException {
+		SQLQuery query = new SQLQuery(token, "INSERT INTO " + table + " (" + String.join(", ", rows.getColumnNames()) + ")");
+		setDeadline(query);
+		// The rows are inserted on the thread of the request, as they are read from its body meanwhile.
+		QueryCancellation cancellation = this.cancellations.open(query);
+		try {
+			return cancellation.run(() -> this.insertRows(query, table, rows));
+		} catch (SQLException | IOException | InterruptedException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SQLException(e);
+		}
+	}
+
+	private StatementResult insertRows(final SQLQuery query, final String table, final RowReader rows)
+			throws SQLException, InterruptedException, IOException {
+		int[] numRows = {0};
+		int[] generatedKeys;
+		try (ClosableQuery connection = this.getConnector(query)) {
+			IDatabaseAdapter adapter = connection.getAdapter();
+			if (!(adapter instanceof CustomDatabaseAdapter)) {
+				throw new UnsupportedOperationException("Bulk inserts require the adapters of this server, but got: "
+						+ adapter.getClass().getName());
+			}
+			generatedKeys = ((CustomDatabaseAdapter) adapter).insertRows(table, rows.getColumnNames(), () -> {
+				Object[] row = rows.nextRow();
+				if (row != null) {
+					numRows[0]++;
+				}
+				return row;
+			}, config.getBulkInsertChunkSize());
+		}
+		return StatementResult.ofInsertedRows(numRows[0], generatedKeys);
 	}
 
 	@GetMapping("/runtime")
@@ -88,4 +649,18 @@ public class QueryController {
 		}
     }
 
+	/**
+	 * Answers statements that timed out with 504, like requests whose deadline passed. These are the ones that
+	 * reached the query timeout of the driver and the ones the database interrupted, e.g. at its max execution time.
+	 * Other errors are left to the default handling.
+	 */
+	@ExceptionHandler(SQLException.class)
+	public void handleTimeout(final SQLException e, final HttpServletResponse response) throws SQLException, IOException {
+		if (!(e instanceof SQLTimeoutException) && !QueryCancellation.CANCELLED_SQL_STATE.equals(e.getSQLState())) {
+			throw e;
+		}
+		logger.info("A statement timed out: {}", e.getMessage());
+		response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "The statement timed out");
+	}
+
 }
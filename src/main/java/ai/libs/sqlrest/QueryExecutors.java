@@ -0,0 +1,278 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.model.RequestQueueFullException;
+import org.aeonbits.owner.ConfigCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the statements of requests on threads of their token, so that the requests don't block the threads
+ * of the web server while they wait for the database. Each token has a bounded number of threads, by default
+ * as many as it has connections, and a bounded queue of requests that wait for a thread.
+ * If the queue is full, a request is either rejected or run on its own thread, as configured.
+ *
+ * Idle threads end after a while, so that tokens without requests have no threads, and the executors of tokens
+ * without threads are removed, so that requests with unknown tokens don't leave executors behind.
+ *
+ * With virtual threads, each request runs on a new virtual thread instead, and a semaphore of the token
+ * limits how many of them run their statements at the same time.
+ */
+@Component
+public class QueryExecutors {
+
+    private final static Logger logger = LoggerFactory.getLogger(QueryExecutors.class);
+
+    private static final IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
+
+    private static final long KEEP_ALIVE_MILLIS = 60000;
+
+    /**
+     * The work of a request that runs on a thread of its token.
+     */
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+    private final AtomicInteger executorIndex = new AtomicInteger(0);
+
+    private final int numThreads;
+
+    private final int queueSize;
+
+    private final boolean callerRuns;
+
+    /*
+     * Runs every request on a new virtual thread, null if platform threads are used.
+     */
+    private final ExecutorService virtualThreads;
+
+    private final Map<String, TokenGate> gates = new ConcurrentHashMap<>();
+
+    private final long keepAliveMillis;
+
+    /*
+     * Removes the executors and gates of tokens without requests.
+     */
+    private final ScheduledExecutorService reaper;
+
+    @Autowired
+    public QueryExecutors() {
+        this(config.getEffectiveExecutorThreads(), config.getExecutorQueueSize(), config.getExecutorRejection(),
+                config.isVirtualThreadsEnabled(), KEEP_ALIVE_MILLIS);
+    }
+
+    // For testing
+    QueryExecutors(int numThreads, int queueSize, String rejection, boolean virtualThreads) {
+        this(numThreads, queueSize, rejection, virtualThreads, KEEP_ALIVE_MILLIS);
+    }
+
+    // For testing
+    QueryExecutors(int numThreads, int queueSize, String rejection, boolean virtualThreads, long keepAliveMillis) {
+        this.numThreads = numThreads;
+        this.keepAliveMillis = keepAliveMillis;
+        this.queueSize = queueSize;
+        if("callerRuns".equalsIgnoreCase(rejection)) {
+            this.callerRuns = true;
+        } else if("abort".equalsIgnoreCase(rejection)) {
+            this.callerRuns = false;
+        } else {
+            throw new IllegalArgumentException("Unknown rejection policy: " + rejection);
+        }
+        this.virtualThreads = virtualThreads ? VirtualThreads.newThreadPerTaskExecutor("SQL-Executor-Virtual-") : null;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SQL-Executor-Reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::evictIdle, keepAliveMillis, keepAliveMillis, TimeUnit.MILLISECONDS);
+        logger.info("Running the statements of each token on {} {}threads with {} waiting requests ({}).",
+                numThreads, virtualThreads ? "virtual " : "", queueSize, rejection);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reaper.shutdownNow();
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+        if(virtualThreads != null) {
+            virtualThreads.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the call on a thread of the token.
+     * @return The result of the call, completed exceptionally if the call fails.
+     * @throws RequestQueueFullException Thrown, if the token has the maximum number of requests waiting already.
+     */
+    public <T> CompletableFuture<T> submit(String token, Call<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if(virtualThreads != null) {
+            submitVirtual(token, call, result);
+        } else {
+            execute(token, () -> run(call, result));
+        }
+        return result;
+    }
+
+    private void execute(String token, Runnable task) {
+        while(true) {
+            try {
+                executors.computeIfAbsent(token, this::createExecutor).execute(task);
+                return;
+            } catch (RetiredExecutorException e) {
+                // The executor was removed meanwhile, the task is handed to a new one.
+            }
+        }
+    }
+
+    /**
+     * Returns an executor that runs its tasks like the calls of `submit`, on the threads of the token.
+     */
+    public Executor asExecutor(String token) {
+        return task -> submit(token, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private static <T> void run(Call<T> call, CompletableFuture<T> result) {
+        try {
+            result.complete(call.call());
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private <T> void submitVirtual(String token, Call<T> call, CompletableFuture<T> result) {
+        // The request is counted while the gate is looked up, so that the gate isn't removed in between.
+        TokenGate gate = gates.compute(token, (t, existing) -> {
+            TokenGate counted = existing == null ? new TokenGate(numThreads) : existing;
+            counted.pending.incrementAndGet();
+            return counted;
+        });
+        if(gate.pending.get() > numThreads + queueSize) {
+            gate.pending.decrementAndGet();
+            if(!callerRuns) {
+                throw new RequestQueueFullException(token, queueSize);
+            }
+            run(call, result);
+            return;
+        }
+        virtualThreads.execute(() -> {
+            try {
+                gate.permits.acquire();
+                try {
+                    run(call, result);
+                } finally {
+                    gate.permits.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+            } finally {
+                gate.pending.decrementAndGet();
+            }
+        });
+    }
+
+    private ThreadPoolExecutor createExecutor(String token) {
+        String threadPrefix = "SQL-Executor-" + executorIndex.incrementAndGet() + "-";
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        RejectedExecutionHandler rejection = (runnable, executor) -> {
+            if(executor.isShutdown()) {
+                throw new RetiredExecutorException();
+            }
+            if(!callerRuns) {
+                throw new RequestQueueFullException(token, queueSize);
+            }
+            runnable.run();
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads, keepAliveMillis, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+                    Thread thread = new Thread(runnable, threadPrefix + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, rejection);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /*
+     * Removes the executors whose threads all ended as they were idle, and the gates without requests.
+     * An executor is shut down while it is removed, which lets it finish a task that was handed to it meanwhile,
+     * and rejects later tasks, which are handed to a new executor then.
+     */
+    void evictIdle() {
+        for (String token : executors.keySet()) {
+            executors.computeIfPresent(token, (t, executor) -> {
+                if(executor.getPoolSize() > 0 || !executor.getQueue().isEmpty()) {
+                    return executor;
+                }
+                executor.shutdown();
+                return null;
+            });
+        }
+        for (String token : gates.keySet()) {
+            gates.computeIfPresent(token, (t, gate) -> gate.pending.get() > 0 ? gate : null);
+        }
+    }
+
+    // For testing
+    int getNumTokens() {
+        return executors.size() + gates.size();
+    }
+
+    /**
+     * Returns the number of requests of the token that run or wait for a thread.
+     */
+    public int getNumPending(String token) {
+        TokenGate gate = gates.get(token);
+        if(gate != null) {
+            return gate.pending.get();
+        }
+        ThreadPoolExecutor executor = executors.get(token);
+        return executor == null ? 0 : executor.getActiveCount() + executor.getQueue().size();
+    }
+
+    /*
+     * Thrown when a task is handed to an executor that was removed.
+     */
+    private static class RetiredExecutorException extends RejectedExecutionException {
+    }
+
+    /*
+     * The limits of a token with virtual threads: the permits to run a statement and the number of requests
+     * that run or wait for a permit.
+     */
+    private static class TokenGate {
+
+        private final Semaphore permits;
+
+        private final AtomicInteger pending = new AtomicInteger(0);
+
+        private TokenGate(int numThreads) {
+            this.permits = new Semaphore(numThreads);
+        }
+
+    }
+
+}
@@ -0,0 +1,322 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.model.QueryJobStatus;
+import ai.libs.sqlrest.model.QueryJobStatus.State;
+import ai.libs.sqlrest.model.TooManyQueryJobsException;
+import ai.libs.sqlrest.supplier.QueryCancellation;
+import org.aeonbits.owner.ConfigCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs queries in the background, so that long queries don't hold a request thread while they run.
+ * A token has at most a configured number of queries queued or running at the same time.
+ *
+ * The result of a finished query is kept until its time to live is over or it is removed by the client.
+ * The results are bounded in size as a whole, if they exceed it, the oldest ones are dropped first.
+ */
+@Component
+public class QueryJobs {
+
+    private final static Logger logger = LoggerFactory.getLogger(QueryJobs.class);
+
+    private static final IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
+
+    /**
+     * The query of a job, which returns its result as JSON.
+     */
+    public interface Work {
+        byte[] run() throws Exception;
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    /*
+     * The number of queued or running jobs by their token. Tokens without such jobs have no entry.
+     */
+    private final Map<String, Integer> activePerToken = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor;
+
+    private final int maxJobsPerToken;
+
+    private final long resultTtl;
+
+    private final long maxRetainedBytes;
+
+    private final LongSupplier clock;
+
+    /*
+     * The finished jobs in the order they finished, guarded by this.
+     */
+    private final Deque<Job> finished = new ArrayDeque<>();
+
+    private long retainedBytes = 0;
+
+    private ScheduledExecutorService reaper;
+
+    @Autowired
+    public QueryJobs() {
+        this(newExecutor(config.getAsyncThreads()), config.getAsyncMaxJobsPerToken(), config.getAsyncResultTtl(),
+                config.getAsyncMaxRetainedBytes(), System::currentTimeMillis);
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SQL-Async-Reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, Math.min(resultTtl / 2, 60000));
+        reaper.scheduleWithFixedDelay(this::evictExpired, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // For testing
+    QueryJobs(ExecutorService executor, int maxJobsPerToken, long resultTtl, long maxRetainedBytes, LongSupplier clock) {
+        this.executor = executor;
+        this.maxJobsPerToken = maxJobsPerToken;
+        this.resultTtl = resultTtl;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.clock = clock;
+    }
+
+    private static ExecutorService newExecutor(int numThreads) {
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        return Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "SQL-Async-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if(reaper != null) {
+            reaper.shutdownNow();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues the query of the token and returns its job.
+     * @param cancellation The cancellation the query runs with, which is cancelled if the job is removed while it runs.
+     * @throws TooManyQueryJobsException Thrown, if the token has the maximum number of queries queued or running already.
+     */
+    public Job submit(String token, QueryCancellation cancellation, Work work) {
+        boolean[] acquired = {false};
+        activePerToken.compute(token, (t, active) -> {
+            int numActive = active == null ? 0 : active;
+            if(numActive >= maxJobsPerToken) {
+                return active;
+            }
+            acquired[0] = true;
+            return numActive + 1;
+        });
+        if(!acquired[0]) {
+            throw new TooManyQueryJobsException(token, maxJobsPerToken);
+        }
+        Job job = new Job(UUID.randomUUID().toString(), token, cancellation);
+        jobs.put(job.id, job);
+        try {
+            job.future = executor.submit(() -> run(job, work));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            release(token);
+            throw e;
+        }
+        return job;
+    }
+
+    private void release(String token) {
+        activePerToken.computeIfPresent(token, (t, active) -> active > 1 ? active - 1 : null);
+    }
+
+    /*
+     * Runs the job unless it was cancelled while it was queued. A job is released here only, as the task
+     * of a cancelled job still runs, so that it isn't released twice if it was cancelled while it started.
+     */
+    private void run(Job job, Work work) {
+        try {
+            if(!job.state.compareAndSet(State.QUEUED, State.RUNNING)) {
+                return;
+            }
+            byte[] result = null;
+            String error = null;
+            try {
+                result = job.cancellation.run(work::run);
+            } catch (Exception e) {
+                logger.warn("The asynchronous query {} failed.", job.id, e);
+                error = e.getMessage() == null ? e.toString() : e.getMessage();
+            }
+            finish(job, result, error);
+        } finally {
+            release(job.token);
+        }
+    }
+
+    private void finish(Job job, byte[] result, String error) {
+        synchronized (this) {
+            if(result != null && result.length > maxRetainedBytes) {
+                error = "The result has " + result.length + " bytes, more than the results of asynchronous queries may have.";
+                result = null;
+            }
+            // The result is set before the state, so that it is there once the job is seen as done.
+            job.result = result;
+            job.error = error;
+            job.finishedAt = clock.getAsLong();
+            if(!job.state.compareAndSet(State.RUNNING, result != null ? State.DONE : State.FAILED)) {
+                // The job was cancelled while it ran.
+                job.result = null;
+                return;
+            }
+            finished.addLast(job);
+            if(result != null) {
+                retainedBytes += result.length;
+                while(retainedBytes > maxRetainedBytes) {
+                    drop(finished.removeFirst());
+                }
+            }
+        }
+        job.completion.complete(job);
+    }
+
+    /*
+     * Called while holding the lock.
+     */
+    private void drop(Job job) {
+        jobs.remove(job.id);
+        if(job.result != null) {
+            retainedBytes -= job.result.length;
+            job.result = null;
+        }
+    }
+
+    /**
+     * Drops the jobs whose time to live is over.
+     */
+    synchronized void evictExpired() {
+        long now = clock.getAsLong();
+        while(!finished.isEmpty() && now - finished.peekFirst().finishedAt >= resultTtl) {
+            drop(finished.removeFirst());
+        }
+    }
+
+    /**
+     * Returns the job with the given id, or null if there is none or its result was dropped.
+     */
+    public Job get(String id) {
+        Job job = jobs.get(id);
+        if(job != null && job.isFinished() && clock.getAsLong() - job.finishedAt >= resultTtl) {
+            return null;
+        }
+        return job;
+    }
+
+    /**
+     * Removes the job with the given id. Queued jobs are not run anymore, but count towards the limit of the token
+     * until their turn comes. Running ones are cancelled, which stops the statement that runs at the moment,
+     * and their thread is interrupted if it waits for a connection. The query then releases its connection.
+     * @return false if there is no job with the id.
+     */
+    public boolean remove(String id) {
+        Job job = jobs.remove(id);
+        if(job == null) {
+            return false;
+        }
+        if(job.state.compareAndSet(State.QUEUED, State.CANCELLED)) {
+            // The task isn't cancelled, it sees the state once it runs and releases the job then.
+            logger.debug("The queued asynchronous query {} was removed.", id);
+        } else if(job.state.compareAndSet(State.RUNNING, State.CANCELLED)) {
+            // JDBC drivers don't stop statements that run if their thread is interrupted.
+            job.cancellation.cancel();
+            job.future.cancel(true);
+        } else {
+            synchronized (this) {
+                finished.remove(job);
+                drop(job);
+            }
+        }
+        job.completion.complete(job);
+        return true;
+    }
+
+    public int getNumActiveJobs(String token) {
+        Integer active = activePerToken.get(token);
+        return active == null ? 0 : active;
+    }
+
+    public static final class Job {
+
+        private final String id;
+
+        private final String token;
+
+        private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+
+        private final CompletableFuture<Job> completion = new CompletableFuture<>();
+
+        private final QueryCancellation cancellation;
+
+        private volatile Future<?> future;
+
+        private volatile byte[] result;
+
+        private volatile String error;
+
+        private volatile long finishedAt;
+
+        private Job(String id, String token, QueryCancellation cancellation) {
+            this.id = id;
+            this.token = token;
+            this.cancellation = cancellation;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public State getState() {
+            return state.get();
+        }
+
+        public boolean isFinished() {
+            State current = state.get();
+            return current == State.DONE || current == State.FAILED;
+        }
+
+        /**
+         * Returns the rows of the query as JSON, once it is done.
+         */
+        public byte[] getResult() {
+            return result;
+        }
+
+        public QueryJobStatus getStatus() {
+            return new QueryJobStatus(id, state.get(), error);
+        }
+
+        /**
+         * Completes once the job is finished or removed.
+         */
+        public CompletableFuture<Job> getCompletion() {
+            return completion;
+        }
+    }
+
+}
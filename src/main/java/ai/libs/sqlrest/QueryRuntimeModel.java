@@ -6,6 +6,7 @@ import org.springframework.stereotype.Component;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Component
 public class QueryRuntimeModel {
@@ -14,6 +15,11 @@ public class QueryRuntimeModel {
 
     private final AtomicLong count = new AtomicLong(0);
 
+    /*
+     * Every query records its time here, so a monitor would pin the platform threads of virtual threads that wait for it.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
     private final double[] STD_QUANTILES = {
       0.005, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.995
     };
@@ -21,31 +27,51 @@ public class QueryRuntimeModel {
     public QueryRuntimeModel() {
     }
 
-    public synchronized void recordQueryTime(long time) {
-        timeDigest.add(time);
-        count.incrementAndGet();
+    public void recordQueryTime(long time) {
+        lock.lock();
+        try {
+            timeDigest.add(time);
+            count.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
     }
 
     public long getSampleCount() {
         return count.get();
     }
 
-    public synchronized void reset() {
-        timeDigest = TDigest.createDigest(500);
-        count.set(0);
+    public void reset() {
+        lock.lock();
+        try {
+            timeDigest = TDigest.createDigest(500);
+            count.set(0);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized double getQueryTime(double quantile) {
-        return timeDigest.quantile(quantile);
+    public double getQueryTime(double quantile) {
+        lock.lock();
+        try {
+            return timeDigest.quantile(quantile);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized Map<String, Double> getQueryTimes() {
-        Map<String, Double> queryTimes = new TreeMap<>();
-        for (double stdQuantile : STD_QUANTILES) {
-            queryTimes.put(String.valueOf(stdQuantile), timeDigest.quantile(stdQuantile));
+    public Map<String, Double> getQueryTimes() {
+        lock.lock();
+        try {
+            Map<String, Double> queryTimes = new TreeMap<>();
+            for (double stdQuantile : STD_QUANTILES) {
+                queryTimes.put(String.valueOf(stdQuantile), timeDigest.quantile(stdQuantile));
+            }
+            queryTimes.put("samples", (double) getSampleCount());
+            return queryTimes;
+        } finally {
+            lock.unlock();
         }
-        queryTimes.put("samples", (double) getSampleCount());
-        return queryTimes;
     }
 
 }
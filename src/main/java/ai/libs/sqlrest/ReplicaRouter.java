@@ -0,0 +1,232 @@
+package ai.libs.sqlrest;
+
+import ai.libs.jaicore.db.sql.SQLAdapter;
+import ai.libs.sqlrest.supplier.CircuitBreaker;
+import org.aeonbits.owner.ConfigCache;
+import org.api4.java.datastructure.kvstore.IKVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the read replica a read query is run on, either round-robin or the replica with the fewest queries in flight.
+ * Replicas whose replication lag exceeds the configured maximum, whose lag can't be determined
+ * or whose circuit breaker is open are skipped. If no replica is eligible, the query runs on the primary.
+ *
+ * The lag is checked periodically with `SHOW SLAVE STATUS` using the admin credentials,
+ * which requires the admin user to have the REPLICATION CLIENT privilege on the replicas.
+ */
+@Component
+public class ReplicaRouter {
+
+    private final static Logger logger = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    private static final IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
+
+    private final Map<String, Replica> replicas = new LinkedHashMap<>();
+
+    private final boolean leastLoaded;
+
+    private final int maxLag;
+
+    private final LagProbe lagProbe;
+
+    private final Predicate<String> isReachable;
+
+    private final AtomicInteger nextIndex = new AtomicInteger(0);
+
+    private final Map<String, SQLAdapter> lagCheckAdapters = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService monitor;
+
+    @Autowired
+    public ReplicaRouter() {
+        this(Arrays.stream(config.getReplicaHosts()).map(String::trim).filter(host -> !host.isEmpty())
+                        .collect(Collectors.toList()),
+                config.getReplicaRouting(), config.getReplicaMaxLag(), null,
+                host -> CircuitBreaker.forHost(host).isAvailable());
+    }
+
+    // For testing
+    ReplicaRouter(List<String> hosts, String routing, int maxLag, LagProbe lagProbe, Predicate<String> isReachable) {
+        hosts.forEach(host -> replicas.put(host, new Replica(host)));
+        if("leastLoaded".equalsIgnoreCase(routing)) {
+            this.leastLoaded = true;
+        } else if("roundRobin".equalsIgnoreCase(routing)) {
+            this.leastLoaded = false;
+        } else {
+            throw new IllegalArgumentException("Unknown replica routing: " + routing);
+        }
+        this.maxLag = maxLag;
+        this.lagProbe = lagProbe == null ? this::queryLag : lagProbe;
+        this.isReachable = isReachable;
+        if(!replicas.isEmpty()) {
+            logger.info("Routing read queries to the replicas {} ({}).", replicas.keySet(), routing);
+        }
+        if(replicas.isEmpty() || maxLag <= 0 || lagProbe != null) {
+            this.monitor = null;
+            return;
+        }
+        this.monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SQL-Replica-Monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        monitor.scheduleWithFixedDelay(this::checkLag, 0, config.getReplicaLagCheckInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if(monitor != null) {
+            monitor.shutdownNow();
+        }
+        lagCheckAdapters.values().forEach(SQLAdapter::close);
+        lagCheckAdapters.clear();
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * Returns the replica the next read query is run on and counts the query as in flight on it,
+     * or null if the query has to run on the primary. The query has to be released once it is done.
+     */
+    public String route() {
+        List<Replica> eligible = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas.values()) {
+            if(!replica.excluded && isReachable.test(replica.host)) {
+                eligible.add(replica);
+            }
+        }
+        if(eligible.isEmpty()) {
+            return null;
+        }
+        Replica chosen;
+        if(leastLoaded) {
+            chosen = eligible.get(0);
+            for (Replica replica : eligible) {
+                if(replica.inFlight.get() < chosen.inFlight.get()) {
+                    chosen = replica;
+                }
+            }
+        } else {
+            int index = Math.floorMod(nextIndex.getAndIncrement(), eligible.size());
+            chosen = eligible.get(index);
+        }
+        chosen.inFlight.incrementAndGet();
+        return chosen.host;
+    }
+
+    public void release(String host) {
+        Replica replica = replicas.get(host);
+        if(replica == null) {
+            throw new IllegalStateException("Released a query of an unknown replica: " + host);
+        }
+        replica.inFlight.decrementAndGet();
+    }
+
+    /**
+     * Determines the replication lag of all replicas and excludes the ones lagging behind.
+     */
+    void checkLag() {
+        for (Replica replica : replicas.values()) {
+            boolean excluded;
+            String reason = null;
+            try {
+                Long lag = lagProbe.getLag(replica.host);
+                replica.lag = lag;
+                if(lag == null) {
+                    excluded = true;
+                    reason = "its replication isn't running";
+                } else {
+                    excluded = lag > maxLag;
+                    reason = "it lags " + lag + " s behind";
+                }
+            } catch (Exception ex) {
+                replica.lag = null;
+                excluded = true;
+                reason = "its lag couldn't be determined: " + ex.getMessage();
+            }
+            if(excluded && !replica.excluded) {
+                logger.warn("Replica {} is excluded from routing, because {}.", replica.host, reason);
+            } else if(!excluded && replica.excluded) {
+                logger.info("Replica {} receives read queries again.", replica.host);
+            }
+            replica.excluded = excluded;
+        }
+    }
+
+    private Long queryLag(String host) throws SQLException {
+        SQLAdapter adapter = lagCheckAdapters.computeIfAbsent(host, h -> new SQLAdapter(h, config.getAdminDBUser(),
+                config.getAdminDBPassword(), config.getAdminDBName(), config.getDBPropUseSsl()));
+        try {
+            List<IKVStore> status = adapter.getResultsOfQuery("SHOW SLAVE STATUS");
+            if(status.isEmpty()) {
+                // The host isn't replicating, so it can't lag behind.
+                return 0L;
+            }
+            Object lag = status.get(0).get("Seconds_Behind_Master");
+            return lag == null ? null : Long.valueOf(lag.toString());
+        } catch (SQLException | RuntimeException ex) {
+            lagCheckAdapters.remove(host);
+            adapter.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the lag, the number of queries in flight and if it is excluded for each replica.
+     */
+    public Map<String, Map<String, Object>> getState() {
+        Map<String, Map<String, Object>> state = new LinkedHashMap<>();
+        for (Replica replica : replicas.values()) {
+            Map<String, Object> replicaState = new LinkedHashMap<>();
+            replicaState.put("lagSeconds", replica.lag);
+            replicaState.put("excluded", replica.excluded);
+            replicaState.put("reachable", isReachable.test(replica.host));
+            replicaState.put("inFlight", replica.inFlight.get());
+            state.put(replica.host, replicaState);
+        }
+        return state;
+    }
+
+    interface LagProbe {
+        /**
+         * Returns the replication lag of the host in seconds, or null if its replication isn't running.
+         */
+        Long getLag(String host) throws SQLException;
+    }
+
+    private static final class Replica {
+
+        private final String host;
+
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+
+        private volatile Long lag;
+
+        private volatile boolean excluded = false;
+
+        private Replica(String host) {
+            this.host = host;
+        }
+    }
+
+}
@@ -1,47 +1,201 @@
 package ai.libs.sqlrest;
 
 import ai.libs.jaicore.db.IDatabaseAdapter;
+import ai.libs.sqlrest.model.SQLQuery;
+import org.aeonbits.owner.ConfigCache;
+import org.api4.java.datastructure.kvstore.IKVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class SQLAdapterManager {
 
+    private final static Logger logger = LoggerFactory.getLogger(SQLAdapterManager.class);
+
+    private static final IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
+
     private final Map<String, TokenConnectionHandle> tokenConnectionHandleMap = new ConcurrentHashMap<>();
 
     private ISLAdapterSupplier provider;
 
+    private final TokenCredentialCache credentialCache;
+
+    private final ScheduledExecutorService poolMaintenance;
+
     @Autowired
-    public SQLAdapterManager(ISLAdapterSupplier provider) {
+    public SQLAdapterManager(ISLAdapterSupplier provider, TokenCredentialCache credentialCache) {
         this.provider = provider;
+        this.credentialCache = credentialCache;
+        this.poolMaintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SQL-Pool-Maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getPoolMaintenanceInterval();
+        poolMaintenance.scheduleWithFixedDelay(this::maintainHandles, interval, interval, TimeUnit.MILLISECONDS);
     }
 
     public List<IDatabaseAdapter> getAdaptersFor(String token) {
-        TokenConnectionHandle handle = tokenConnectionHandleMap.computeIfAbsent(token, this::createTokenConnectionHandle);
+        TokenConnectionHandle handle;
+        try {
+            handle = getHandle(token);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
 //        handle.requireNumConnectionsMatchesConfig();
-        return handle.getCurrentAdapters();
+        List<IDatabaseAdapter> adapters = handle.getCurrentAdapters();
+        if(adapters.isEmpty()) {
+            // The adapters are created on first access, as tokens used in pooled access don't need them.
+            handle.requireNumConnectionsMatchesConfig(provider);
+            adapters = handle.getCurrentAdapters();
+        }
+        return adapters;
+    }
+
+    /**
+     * Returns the adapters the given query is run with: the adapters of its token to the host the query was routed to,
+     * or to the primary if it wasn't routed to a replica.
+     */
+    public List<IDatabaseAdapter> getAdaptersFor(SQLQuery query) {
+        if(query.getHost() == null) {
+            return getAdaptersFor(query.getToken());
+        }
+        // The replica adapters are sized like the primary adapters, so these have to be initialized first.
+        getAdaptersFor(query.getToken());
+        return tokenConnectionHandleMap.get(query.getToken()).getReplicaAdapters(provider, query.getHost());
     }
 
-    private TokenConnectionHandle createTokenConnectionHandle(final String token) {
-        TokenConnectionHandle handle = new TokenConnectionHandle(token);
+    /**
+     * Returns the load recorded for the given token.
+     */
+    public TokenLoad getLoad(String token) {
         try {
-            handle.loadDatabaseInfo();
+            return getHandle(token).getLoad();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        handle.requireNumConnectionsMatchesConfig(provider);
-        return handle;
+    }
+
+    /**
+     * Marks the adapter as being used by a request of the given token, so that it isn't closed if it is removed meanwhile.
+     *
+     * @return False if the adapter was removed from the token and must not be used anymore.
+     */
+    public boolean tryUseAdapter(String token, IDatabaseAdapter adapter) {
+        TokenConnectionHandle handle = tokenConnectionHandleMap.get(token);
+        return handle != null && handle.tryUse(adapter);
+    }
+
+    public void releaseAdapter(String token, IDatabaseAdapter adapter) {
+        TokenConnectionHandle handle = tokenConnectionHandleMap.get(token);
+        if(handle != null) {
+            handle.release(adapter);
+        }
+    }
+
+    /**
+     * Returns the handles of all tokens that were accessed so far.
+     */
+    Map<String, TokenConnectionHandle> getHandles() {
+        return tokenConnectionHandleMap;
+    }
+
+    ISLAdapterSupplier getProvider() {
+        return provider;
+    }
+
+    /**
+     * Borrows an adapter of the token of the given query exclusively, to the host the query was routed to.
+     * The adapter has to be handed back using `returnAdapter` once the request is done with it.
+     */
+    public IDatabaseAdapter borrowAdapter(SQLQuery query) throws SQLException, InterruptedException {
+        TokenConnectionHandle handle = getHandle(query.getToken());
+        // A request doesn't wait beyond its deadline.
+        long timeout = Math.min(config.getPoolBorrowTimeout(), query.getRemainingMillis());
+        return handle.getPool(provider, query.getHost()).borrow(timeout);
+    }
+
+    public void returnAdapter(SQLQuery query, IDatabaseAdapter adapter) {
+        TokenConnectionHandle handle = tokenConnectionHandleMap.get(query.getToken());
+        TokenAdapterPool pool = handle == null ? null : handle.getPoolIfPresent(query.getHost());
+        if(pool == null) {
+            throw new IllegalStateException("No pool exists for the token, but an adapter is returned.");
+        }
+        pool.giveBack(adapter);
+    }
+
+    /**
+     * Opens the connections of the given token ahead of its first request.
+     * Depending on the access mode either the adapters or the idle adapters of the pool are opened.
+     *
+     * @return The number of open adapters of the token.
+     */
+    public int warmUp(String token) throws SQLException {
+        if("pooled".equals(config.getEffectiveAdapterAccessMode())) {
+            TokenAdapterPool pool = getHandle(token).getPool(provider);
+            pool.maintain();
+            return pool.getNumAdapters();
+        }
+        List<IDatabaseAdapter> adapters = getAdaptersFor(token);
+        for (IDatabaseAdapter adapter : adapters) {
+            adapter.checkConnection();
+        }
+        return adapters.size();
+    }
+
+    private TokenConnectionHandle getHandle(final String token) throws SQLException {
+        TokenConnectionHandle handle = tokenConnectionHandleMap.get(token);
+        if(handle != null) {
+            return handle;
+        }
+        // Resolve the credentials outside of computeIfAbsent, so that a lookup doesn't block other tokens.
+        IKVStore credentials = credentialCache.getCredentials(token);
+        return tokenConnectionHandleMap.computeIfAbsent(token, t -> {
+            TokenConnectionHandle newHandle = new TokenConnectionHandle(t);
+            newHandle.setDatabaseInfo(credentials);
+            return newHandle;
+        });
+    }
+
+    private void maintainHandles() {
+        for (TokenConnectionHandle handle : tokenConnectionHandleMap.values()) {
+            try {
+                handle.closeOverdueAdapters();
+                for (TokenAdapterPool pool : handle.getPools()) {
+                    pool.maintain();
+                }
+            } catch(Exception ex) {
+                logger.error("Error while maintaining the adapters of a token.", ex);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poolMaintenance.shutdownNow();
+        for (TokenConnectionHandle handle : tokenConnectionHandleMap.values()) {
+            for (TokenAdapterPool pool : handle.getPools()) {
+                pool.close();
+            }
+        }
     }
 
     public int getNumConnections() {
         int numConnections = 0;
         for (Map.Entry<String, TokenConnectionHandle> entry : tokenConnectionHandleMap.entrySet()) {
-            numConnections += entry.getValue().getCurrentAdapters().size();
+            numConnections += getNumConnections(entry.getValue());
         }
         return numConnections;
     }
@@ -51,6 +205,34 @@ public class SQLAdapterManager {
         if(handle == null) {
             return 0;
         }
-        return handle.getCurrentAdapters().size();
+        return getNumConnections(handle);
+    }
+
+    private int getNumConnections(TokenConnectionHandle handle) {
+        int numConnections = handle.getCurrentAdapters().size() + handle.getNumReplicaAdapters();
+        for (TokenAdapterPool pool : handle.getPools()) {
+            numConnections += pool.getNumAdapters();
+        }
+        return numConnections;
+    }
+
+    /**
+     * Returns the number of adapters and the state of the adapter pool for each token.
+     */
+    public Map<String, Map<String, Integer>> getConnectionStats() {
+        Map<String, Map<String, Integer>> stats = new TreeMap<>();
+        for (Map.Entry<String, TokenConnectionHandle> entry : tokenConnectionHandleMap.entrySet()) {
+            TokenConnectionHandle handle = entry.getValue();
+            Map<String, Integer> tokenStats = new TreeMap<>();
+            tokenStats.put("adapters", handle.getCurrentAdapters().size());
+            tokenStats.put("replicaAdapters", handle.getNumReplicaAdapters());
+            tokenStats.put("draining", handle.getNumDraining());
+            TokenAdapterPool pool = handle.getPoolIfPresent(null);
+            if(pool != null) {
+                pool.getStats().forEach((key, value) -> tokenStats.put("pool." + key, value));
+            }
+            stats.put(entry.getKey(), tokenStats);
+        }
+        return stats;
     }
 }
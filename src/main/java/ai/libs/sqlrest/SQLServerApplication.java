@@ -1,6 +1,5 @@
 package ai.libs.sqlrest;
 
-import ai.libs.jaicore.db.sql.SQLAdapter;
 import ai.libs.sqlrest.model.ResourceNotFoundException;
 import com.google.common.base.Charsets;
 import com.google.common.io.ByteSource;
@@ -44,24 +43,27 @@ public class SQLServerApplication {
 
 	private static void createAdminTables() throws SQLException, ResourceNotFoundException {
 		IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
-		SQLAdapter adminAdapter = config.createAdminAdapter();
+		AdminConnectionPool adminPool = AdminConnectionPool.getInstance();
 		if(config.isLogSlowQueriesEnabled()) {
-			createTables(adminAdapter, "logging");
+			createTables(adminPool, "logging");
 		}
-		createTables(adminAdapter, "experiments");
+		createTables(adminPool, "experiments");
 	}
 
-	private static void createTables(SQLAdapter adminAdapter, String tableName) throws SQLException,
+	private static void createTables(AdminConnectionPool adminPool, String tableName) throws SQLException,
 			ResourceNotFoundException {
 		String createTableQuery = getCreateTableSQLQuery(tableName);
-		try (PreparedStatement ps = adminAdapter.getPreparedStatement(createTableQuery)) {
-			ps.execute();
-		} catch (SQLSyntaxErrorException ex) {
-			// ignore an error thrown when the table already exists:
-			if(!ex.getMessage().matches("Table '.*' already exists")){
-				throw ex;
+		adminPool.execute(adminAdapter -> {
+			try (PreparedStatement ps = adminAdapter.getPreparedStatement(createTableQuery)) {
+				return ps.execute();
+			} catch (SQLSyntaxErrorException ex) {
+				// ignore an error thrown when the table already exists:
+				if(!ex.getMessage().matches("Table '.*' already exists")){
+					throw ex;
+				}
+				return false;
 			}
-		}
+		});
 	}
 
 	private static String getCreateTableSQLQuery(String tableName) throws ResourceNotFoundException {
@@ -98,9 +100,11 @@ public class SQLServerApplication {
 			logger.warn("Configuration has disabled the ssl connection to the database.");
 		}
 
-		SQLAdapter adminAdapter = config.createAdminAdapter();
 		try {
-			adminAdapter.checkConnection();
+			AdminConnectionPool.getInstance().execute(adminAdapter -> {
+				adminAdapter.checkConnection();
+				return null;
+			});
 		} catch (SQLException ex) {
 			throw new IllegalStateException("Couldn't connect to the database.", ex);
 		}
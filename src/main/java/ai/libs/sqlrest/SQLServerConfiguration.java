@@ -5,10 +5,14 @@ import ai.libs.sqlrest.supplier.CustomAdapterSupplier;
 import org.aeonbits.owner.ConfigCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 @ComponentScan
@@ -17,21 +21,44 @@ public class SQLServerConfiguration {
     private final static Logger logger = LoggerFactory.getLogger(SQLServerConfiguration.class);
 
     @Bean
-    IQueryInterceptor interceptorConf(ApplicationContext context, SQLAdapterManager adapterManager, QueryRuntimeModel runtimeModel) {
+    IQueryInterceptor interceptorConf(ApplicationContext context, SQLAdapterManager adapterManager, QueryRuntimeModel runtimeModel,
+                                      ReplicaRouter replicaRouter) {
         IServerConfig conf = ConfigCache.getOrCreate(IServerConfig.class);
         IQueryInterceptor impl;
-        if(conf.isAccessRandom()) {
-            logger.info("SQLAccess is random.");
-            impl = new RandomConnectionArbiter(adapterManager);
+        String accessMode = conf.getEffectiveAdapterAccessMode();
+        switch (accessMode) {
+            case "random":
+                logger.info("SQLAccess is random.");
+                impl = new RandomConnectionArbiter(adapterManager);
+                break;
+            case "cyclic":
+                logger.info("SQLAccess is cyclic.");
+                impl = new CyclicConnectionArbiter(adapterManager);
+                break;
+            case "leased":
+                logger.info("SQLAccess is leased.");
+                impl = new LeasedConnectionArbiter(adapterManager);
+                break;
+            case "pooled":
+                logger.info("SQLAccess is pooled with at most {} adapters per token.", conf.getPoolMaxSize());
+                impl = new PooledConnectionArbiter(adapterManager);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown adapter access mode: " + accessMode);
         }
-        else {
-            logger.info("SQLAccess is cyclic.");
-            impl = new CyclicConnectionArbiter(adapterManager);
+        if(!"pooled".equals(accessMode)) {
+            // Removed adapters are drained, pooled adapters are never removed while borrowed.
+            impl = new AdapterUsageTracker(impl, adapterManager);
         }
         if(conf.isAccessLimited()) {
             logger.info("SQLAccess is limited to {}", conf.getNumAdapterAccessLimit());
             impl = new LimitedAccessConnectionInterceptor(impl);
         }
+        impl = new CircuitBreakerInterceptor(impl);
+        if(replicaRouter.hasReplicas()) {
+            impl = new ReplicaRoutingInterceptor(impl, replicaRouter);
+        }
+        impl = new TokenLoadRecorder(impl, adapterManager);
         impl = new QueryTimeRecorder(impl, runtimeModel);
         if(conf.isLogSlowQueriesEnabled()) {
             logger.info("Added watchdog interceptor with threshold: {}", conf.slowQueryThreshold());
@@ -40,9 +67,43 @@ public class SQLServerConfiguration {
             watchDog.startWatchdog();
             impl = watchDog;
         }
+        impl = new DeadlineInterceptor(impl);
         return impl;
     }
 
+    /**
+     * Runs the requests on virtual threads instead of the thread pool of tomcat, if they are enabled.
+     */
+    @Bean
+    WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadRequests() {
+        IServerConfig conf = ConfigCache.getOrCreate(IServerConfig.class);
+        return factory -> {
+            if(conf.isVirtualThreadsEnabled()) {
+                logger.info("Requests run on virtual threads.");
+                factory.addProtocolHandlerCustomizers(protocolHandler ->
+                        protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("SQL-Request-")));
+            }
+        };
+    }
+
+    /**
+     * Cancels the statements of asynchronous requests that fail or time out, e.g. because the client went away.
+     */
+    @Bean
+    WebMvcConfigurer queryCancellation(QueryCancellations cancellations) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.registerDeferredResultInterceptors(cancellations);
+            }
+        };
+    }
+
+    @Bean(destroyMethod = "close")
+    AdminConnectionPool adminConnectionPool() {
+        return AdminConnectionPool.getInstance();
+    }
+
     @Bean
     ISLAdapterSupplier getSQLAdapter() {
         IServerConfig conf = ConfigCache.getOrCreate(IServerConfig.class);
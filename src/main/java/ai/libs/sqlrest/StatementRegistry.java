@@ -0,0 +1,118 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.model.SQLStatement;
+import org.aeonbits.owner.ConfigCache;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the statements that were prepared by clients by their handle, per token, so that clients send only
+ * the handle and the parameters of a statement they run many times.
+ * The registry only holds the SQL of the statements. They are prepared on the connection that runs them,
+ * when they are run there first, and prepared again if the connection is replaced, see the statement cache
+ * of the connections.
+ */
+@Component
+public class StatementRegistry {
+
+    private static final IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
+
+    private final Map<String, TokenStatements> statementsPerToken = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextHandle = new AtomicLong(1);
+
+    private final int maxStatementsPerToken;
+
+    public StatementRegistry() {
+        this(config.getMaxPreparedStatementsPerToken());
+    }
+
+    // For testing
+    StatementRegistry(int maxStatementsPerToken) {
+        this.maxStatementsPerToken = maxStatementsPerToken;
+    }
+
+    /**
+     * Registers the statement for the token and returns its handle.
+     * Registering the same statement again returns the same handle.
+     * @throws IllegalStateException Thrown, if the token has the maximum number of statements already.
+     */
+    public long register(String token, SQLStatement statement) {
+        TokenStatements statements = statementsPerToken.computeIfAbsent(token, t -> new TokenStatements());
+        synchronized (statements) {
+            String key = statement.getType() + ":" + statement.getQuery();
+            Long handle = statements.handles.get(key);
+            if(handle != null) {
+                return handle;
+            }
+            if(statements.statements.size() >= maxStatementsPerToken) {
+                throw new IllegalStateException("The token has " + maxStatementsPerToken
+                        + " prepared statements already, release some of them first.");
+            }
+            handle = nextHandle.getAndIncrement();
+            statements.handles.put(key, handle);
+            statements.statements.put(handle, new SQLStatement(statement.getType(), statement.getQuery()));
+            return handle;
+        }
+    }
+
+    /**
+     * Returns the statement of the token with the given handle.
+     * @throws IllegalArgumentException Thrown, if the token has no statement with the handle.
+     */
+    public SQLStatement get(String token, long handle) {
+        TokenStatements statements = statementsPerToken.get(token);
+        SQLStatement statement = null;
+        if(statements != null) {
+            synchronized (statements) {
+                statement = statements.statements.get(handle);
+            }
+        }
+        if(statement == null) {
+            throw new IllegalArgumentException("No prepared statement with handle " + handle + " for the token.");
+        }
+        return statement;
+    }
+
+    /**
+     * Removes the statement with the given handle from the token.
+     * @return false if the token had no statement with the handle.
+     */
+    public boolean release(String token, long handle) {
+        TokenStatements statements = statementsPerToken.get(token);
+        if(statements == null) {
+            return false;
+        }
+        synchronized (statements) {
+            SQLStatement statement = statements.statements.remove(handle);
+            if(statement == null) {
+                return false;
+            }
+            statements.handles.remove(statement.getType() + ":" + statement.getQuery());
+            return true;
+        }
+    }
+
+    public int getNumStatements(String token) {
+        TokenStatements statements = statementsPerToken.get(token);
+        if(statements == null) {
+            return 0;
+        }
+        synchronized (statements) {
+            return statements.statements.size();
+        }
+    }
+
+    private static class TokenStatements {
+
+        private final Map<Long, SQLStatement> statements = new HashMap<>();
+
+        private final Map<String, Long> handles = new HashMap<>();
+
+    }
+
+}
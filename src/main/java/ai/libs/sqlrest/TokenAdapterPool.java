@@ -0,0 +1,230 @@
+package ai.libs.sqlrest;
+
+import ai.libs.jaicore.db.IDatabaseAdapter;
+import ai.libs.sqlrest.supplier.CustomDatabaseAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of adapters of a single database user, e.g. of a token.
+ * Each adapter holds its own connection and is borrowed exclusively by one request at a time.
+ */
+class TokenAdapterPool {
+
+    private final static Logger logger = LoggerFactory.getLogger(TokenAdapterPool.class);
+
+    private final Supplier<IDatabaseAdapter> adapterFactory;
+
+    private final int minIdle, maxSize;
+
+    private final long idleTimeout, validationInterval;
+
+    private final int validationTimeout;
+
+    /*
+     * One permit per adapter that may be borrowed at the same time.
+     */
+    private final Semaphore permits;
+
+    /*
+     * Idle adapters, the most recently returned one first.
+     */
+    private final BlockingDeque<IdleAdapter> idleAdapters = new LinkedBlockingDeque<>();
+
+    private final AtomicInteger numAdapters = new AtomicInteger(0);
+
+    private volatile boolean closed = false;
+
+    TokenAdapterPool(Supplier<IDatabaseAdapter> adapterFactory, int minIdle, int maxSize,
+                     long idleTimeout, long validationInterval, int validationTimeout) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Maximum pool size needs to be positive: " + maxSize);
+        }
+        if(minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException(String.format("Minimum number of idle adapters needs to be " +
+                    "between 0 and %d: %d", maxSize, minIdle));
+        }
+        this.adapterFactory = adapterFactory;
+        this.minIdle = minIdle;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.validationInterval = validationInterval;
+        this.validationTimeout = validationTimeout;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    TokenAdapterPool(Supplier<IDatabaseAdapter> adapterFactory, IServerConfig config) {
+        this(adapterFactory, config.getPoolMinIdle(), config.getPoolMaxSize(), config.getPoolIdleTimeout(),
+                config.getPoolValidationInterval(), config.getPoolValidationTimeout());
+    }
+
+    /**
+     * Borrows an adapter exclusively. The adapter has to be handed back using `giveBack`.
+     *
+     * @param timeout Time in milliseconds to wait for an adapter if all adapters are borrowed.
+     * @return An adapter with an open connection.
+     * @throws SQLTransientConnectionException Thrown if no adapter was handed back within the timeout.
+     * @throws SQLException Thrown if a new connection couldn't be established.
+     */
+    IDatabaseAdapter borrow(long timeout) throws SQLException, InterruptedException {
+        if(closed) {
+            throw new IllegalStateException("The adapter pool is closed.");
+        }
+        if(!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            throw new SQLTransientConnectionException(String.format("No adapter was available within %d ms. " +
+                    "All %d adapters are in use.", timeout, maxSize));
+        }
+        try {
+            IdleAdapter idleAdapter;
+            while((idleAdapter = idleAdapters.pollFirst()) != null) {
+                if(isUsable(idleAdapter)) {
+                    return idleAdapter.adapter;
+                }
+                discard(idleAdapter.adapter);
+            }
+            return createAdapter();
+        } catch(SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Hands back an adapter that was borrowed from this pool.
+     */
+    void giveBack(IDatabaseAdapter adapter) {
+        if(closed) {
+            discard(adapter);
+        } else {
+            idleAdapters.offerFirst(new IdleAdapter(adapter));
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes an adapter that was borrowed from this pool instead of handing it back, e.g. because its connection
+     * failed, so that it isn't borrowed again. A new adapter is opened in its place when needed.
+     */
+    void discardBorrowed(IDatabaseAdapter adapter) {
+        try {
+            discard(adapter);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes adapters that have been idle for too long and opens new ones until `minIdle` adapters are idle.
+     * This is invoked periodically by a background thread, so that requests rarely establish connections.
+     */
+    void maintain() {
+        long now = System.currentTimeMillis();
+        IdleAdapter oldest;
+        while(idleAdapters.size() > minIdle
+                && (oldest = idleAdapters.peekLast()) != null
+                && oldest.idleSince + idleTimeout < now) {
+            if(idleAdapters.removeLastOccurrence(oldest)) {
+                logger.debug("Closing adapter that was idle for {} ms.", now - oldest.idleSince);
+                discard(oldest.adapter);
+            }
+        }
+        while(!closed && idleAdapters.size() < minIdle && numAdapters.get() < maxSize) {
+            try {
+                idleAdapters.offerLast(new IdleAdapter(createAdapter()));
+            } catch (SQLException | RuntimeException ex) {
+                logger.warn("Couldn't open an idle adapter for the pool.", ex);
+                break;
+            }
+        }
+    }
+
+    void close() {
+        closed = true;
+        IdleAdapter idleAdapter;
+        while((idleAdapter = idleAdapters.pollFirst()) != null) {
+            discard(idleAdapter.adapter);
+        }
+    }
+
+    int getNumAdapters() {
+        return numAdapters.get();
+    }
+
+    int getNumIdle() {
+        return idleAdapters.size();
+    }
+
+    int getNumBorrowed() {
+        return maxSize - permits.availablePermits();
+    }
+
+    int getNumWaiting() {
+        return permits.getQueueLength();
+    }
+
+    Map<String, Integer> getStats() {
+        Map<String, Integer> stats = new LinkedHashMap<>();
+        stats.put("adapters", getNumAdapters());
+        stats.put("idle", getNumIdle());
+        stats.put("borrowed", getNumBorrowed());
+        stats.put("waiting", getNumWaiting());
+        stats.put("maxSize", maxSize);
+        return stats;
+    }
+
+    private IDatabaseAdapter createAdapter() throws SQLException {
+        IDatabaseAdapter adapter = adapterFactory.get();
+        numAdapters.incrementAndGet();
+        try {
+            adapter.checkConnection(); // opens the connection right away
+        } catch(SQLException | RuntimeException ex) {
+            discard(adapter);
+            throw ex;
+        }
+        return adapter;
+    }
+
+    private boolean isUsable(IdleAdapter idleAdapter) {
+        if(idleAdapter.idleSince + validationInterval >= System.currentTimeMillis()) {
+            return true;
+        }
+        try {
+            if(idleAdapter.adapter instanceof CustomDatabaseAdapter) {
+                return ((CustomDatabaseAdapter) idleAdapter.adapter).isValid(validationTimeout);
+            }
+            idleAdapter.adapter.checkConnection();
+            return true;
+        } catch (SQLException ex) {
+            logger.debug("Validation of an idle adapter failed.", ex);
+            return false;
+        }
+    }
+
+    private void discard(IDatabaseAdapter adapter) {
+        numAdapters.decrementAndGet();
+        adapter.close();
+    }
+
+    private static class IdleAdapter {
+
+        private final IDatabaseAdapter adapter;
+
+        private final long idleSince;
+
+        IdleAdapter(IDatabaseAdapter adapter) {
+            this.adapter = adapter;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+}
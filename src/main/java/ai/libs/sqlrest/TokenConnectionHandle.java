@@ -1,15 +1,18 @@
 package ai.libs.sqlrest;
 
 import ai.libs.jaicore.db.IDatabaseAdapter;
-import ai.libs.jaicore.db.sql.SQLAdapter;
-import ai.libs.sqlrest.model.ExperimentTokenNotFound;
 import org.aeonbits.owner.ConfigCache;
 import org.api4.java.datastructure.kvstore.IKVStore;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 class TokenConnectionHandle {
 
@@ -23,62 +26,264 @@ class TokenConnectionHandle {
 
     private List<IDatabaseAdapter> currentAdapters;
 
+    /*
+     * Adapters of each read replica the token's queries were routed to. They are sized like the primary adapters.
+     */
+    private final Map<String, List<IDatabaseAdapter>> replicaAdapters = new HashMap<>();
+
+    private volatile TokenAdapterPool pool;
+
+    private final Map<String, TokenAdapterPool> replicaPools = new ConcurrentHashMap<>();
+
+    /*
+     * Number of adapters set by the autoscaler. Non-positive while the configured number is used.
+     */
+    private volatile int scaledNumConnections = 0;
+
+    private final TokenLoad load = new TokenLoad();
+
+    /*
+     * Usage of the current adapters and of removed adapters that are still draining.
+     */
+    private final Map<IDatabaseAdapter, AdapterUsage> usages = new ConcurrentHashMap<>();
+
+    /*
+     * Guards the adapter lists. Adapters are created while holding it, so it is a lock rather than a monitor,
+     * which would pin the platform thread of a virtual thread that blocks meanwhile.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
     public TokenConnectionHandle(String token) {
         this.token = token;
         currentAdapters = new ArrayList<IDatabaseAdapter>();
         numConnections = new AtomicInteger(0);
     }
 
-    public void loadDatabaseInfo() throws SQLException {
-        SQLAdapter adminAdapter = config.createAdminAdapter();
-        List<IKVStore> res = adminAdapter.getResultsOfQuery(
-                "SELECT * FROM experiments WHERE experiment_token='" + token + "'");
-        if (res.isEmpty()) {
-            throw new ExperimentTokenNotFound(token);
-        }
-        if (res.size() > 1) {
-            throw new IllegalStateException("Multiple experiments for the same token. A token must be unique!");
-        }
-        IKVStore connectionDescription = res.get(0);
+    /**
+     * Sets the database credentials of the token from its row in the experiments table.
+     */
+    public void setDatabaseInfo(IKVStore connectionDescription) {
         this.user = connectionDescription.getAsString("db_user");
         this.passwd = connectionDescription.getAsString("db_passwd");
         this.dbName = connectionDescription.getAsString("db_name");
-        adminAdapter.close();
     }
 
     public void requireNumConnectionsMatchesConfig(ISLAdapterSupplier provider) {
-        int newNumConnections = config.getNumAdapterInstances();
-        if(newNumConnections < 1) {
-            throw new IllegalArgumentException("Number of connections needs to be positive: " + newNumConnections);
+        lock.lock();
+        try {
+            if(scaledNumConnections > 0) {
+                if(numConnections.getAndSet(scaledNumConnections) != scaledNumConnections) {
+                    readjustNumConnections(provider, scaledNumConnections);
+                }
+                return;
+            }
+            int newNumConnections = config.getNumAdapterInstances();
+            if(newNumConnections < 1) {
+                throw new IllegalArgumentException("Number of connections needs to be positive: " + newNumConnections);
+            }
+            if(newNumConnections > config.getNumAdapterInstancesLimit()) {
+                throw new IllegalArgumentException(String.format("Number of connections cannot " +
+                        "exceed the limit of %d: " + newNumConnections, config.getNumAdapterInstancesLimit()));
+            }
+            int oldVal = this.numConnections.getAndSet(newNumConnections);
+            if(oldVal != newNumConnections) {
+                readjustNumConnections(provider, newNumConnections);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void readjustNumConnections(ISLAdapterSupplier supplier, int newNumConnections) {
+        lock.lock();
+        try {
+            currentAdapters = resize(currentAdapters, supplier, null, newNumConnections);
+            replicaAdapters.replaceAll((host, adapters) -> resize(adapters, supplier, host, newNumConnections));
+        } finally {
+            lock.unlock();
         }
-        if(newNumConnections > config.getNumAdapterInstancesLimit()) {
-            throw new IllegalArgumentException(String.format("Number of connections cannot " +
-                    "exceed the limit of %d: " + newNumConnections, config.getNumAdapterInstancesLimit()));
+    }
+
+    private List<IDatabaseAdapter> resize(List<IDatabaseAdapter> adapters, ISLAdapterSupplier supplier, String host,
+                                          int newNumConnections) {
+        // Copy the list because maybe another thread has returned the original list and it is being used in parallel.
+        List<IDatabaseAdapter> newAdapters = new ArrayList<IDatabaseAdapter>(adapters);
+        while(newNumConnections < newAdapters.size()) {
+            IDatabaseAdapter toBeRemoved = newAdapters.remove(0);
+            retire(toBeRemoved); // The adapter may still be used by requests, so it is closed once they are done.
         }
-        int oldVal = this.numConnections.getAndSet(newNumConnections);
-        if(oldVal != newNumConnections) {
-            readjustNumConnections(provider, newNumConnections);
+        while(newNumConnections > newAdapters.size()) {
+            IDatabaseAdapter adapter = supplier.get(host, user, passwd, dbName);
+            usages.put(adapter, new AdapterUsage(adapter));
+            newAdapters.add(adapter);
         }
+        return newAdapters;
     }
 
-    private void readjustNumConnections(ISLAdapterSupplier supplier, int newNumConnections) {
-        synchronized (this) {
-            currentAdapters = new ArrayList<IDatabaseAdapter>(currentAdapters);
-            // Copy the list because maybe another thread has returned the original list and it is being used in parallel.
-            while(newNumConnections < currentAdapters.size()) {
-                IDatabaseAdapter toBeRemoved = currentAdapters.remove(0);
-                toBeRemoved.close(); // There is a small probability that the adapter is being used.
+    /**
+     * Returns the adapters to the given read replica, creating as many as there are primary adapters on first access.
+     */
+    public List<IDatabaseAdapter> getReplicaAdapters(ISLAdapterSupplier supplier, String host) {
+        lock.lock();
+        try {
+            List<IDatabaseAdapter> adapters = replicaAdapters.get(host);
+            if(adapters == null) {
+                adapters = resize(Collections.emptyList(), supplier, host, Math.max(1, numConnections.get()));
+                replicaAdapters.put(host, adapters);
             }
-            while(newNumConnections > currentAdapters.size()) {
-                IDatabaseAdapter adapter = supplier.get(user, passwd, dbName);
-                currentAdapters.add(adapter);
+            return adapters;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getNumReplicaAdapters() {
+        lock.lock();
+        try {
+            int numAdapters = 0;
+            for (List<IDatabaseAdapter> adapters : replicaAdapters.values()) {
+                numAdapters += adapters.size();
+            }
+            return numAdapters;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the number of adapters of this token, overriding the configured number.
+     * A non-positive number returns to the configured number.
+     */
+    public void scaleNumConnections(ISLAdapterSupplier provider, int newNumConnections) {
+        lock.lock();
+        try {
+            scaledNumConnections = Math.max(0, newNumConnections);
+            requireNumConnectionsMatchesConfig(provider);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getNumConnections() {
+        return numConnections.get();
+    }
+
+    private void retire(IDatabaseAdapter adapter) {
+        AdapterUsage usage = usages.get(adapter);
+        if(usage == null) {
+            adapter.close();
+            return;
+        }
+        usage.retire(System.currentTimeMillis() + config.getAdapterDrainTimeout());
+        removeIfClosed(usage);
+    }
+
+    /**
+     * Marks the given adapter as used by a request until `release` is called.
+     *
+     * @return False if the adapter was removed from this token, in which case the request has to pick another adapter.
+     */
+    public boolean tryUse(IDatabaseAdapter adapter) {
+        AdapterUsage usage = usages.get(adapter);
+        return usage != null && usage.tryUse();
+    }
+
+    public void release(IDatabaseAdapter adapter) {
+        AdapterUsage usage = usages.get(adapter);
+        if(usage != null) {
+            usage.release();
+            removeIfClosed(usage);
+        }
+    }
+
+    /**
+     * Closes removed adapters whose drain deadline has passed.
+     */
+    public void closeOverdueAdapters() {
+        long now = System.currentTimeMillis();
+        for (AdapterUsage usage : usages.values()) {
+            usage.closeIfOverdue(now);
+            removeIfClosed(usage);
+        }
+    }
+
+    /**
+     * Returns the number of removed adapters that are still in use.
+     */
+    public int getNumDraining() {
+        int numDraining = 0;
+        for (AdapterUsage usage : usages.values()) {
+            if(usage.isDraining() && !usage.isClosed()) {
+                numDraining++;
             }
         }
+        return numDraining;
+    }
+
+    private void removeIfClosed(AdapterUsage usage) {
+        if(usage.isClosed()) {
+            usages.remove(usage.getAdapter(), usage);
+        }
+    }
+
+    public TokenLoad getLoad() {
+        return load;
     }
 
     public List<IDatabaseAdapter> getCurrentAdapters() {
-        synchronized (this) {
+        lock.lock();
+        try {
             return currentAdapters;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the adapter pool of this token. The pool is created on first access.
+     */
+    public TokenAdapterPool getPool(ISLAdapterSupplier supplier) {
+        TokenAdapterPool currentPool = pool;
+        if(currentPool == null) {
+            lock.lock();
+            try {
+                if(pool == null) {
+                    pool = new TokenAdapterPool(() -> supplier.get(user, passwd, dbName), config);
+                }
+                currentPool = pool;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return currentPool;
+    }
+
+    /**
+     * Returns the adapter pool of this token for the given read replica, or the primary pool if the host is null.
+     */
+    public TokenAdapterPool getPool(ISLAdapterSupplier supplier, String host) {
+        if(host == null) {
+            return getPool(supplier);
+        }
+        return replicaPools.computeIfAbsent(host,
+                h -> new TokenAdapterPool(() -> supplier.get(h, user, passwd, dbName), config));
+    }
+
+    /**
+     * Returns the adapter pool of this token for the given host or null if it hasn't been created yet.
+     */
+    public TokenAdapterPool getPoolIfPresent(String host) {
+        return host == null ? pool : replicaPools.get(host);
+    }
+
+    /**
+     * Returns the adapter pools of the primary and the replicas that have been created so far.
+     */
+    public List<TokenAdapterPool> getPools() {
+        List<TokenAdapterPool> pools = new ArrayList<>(replicaPools.values());
+        if(pool != null) {
+            pools.add(0, pool);
         }
+        return pools;
     }
 }
@@ -0,0 +1,129 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.model.ExperimentTokenNotFound;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.aeonbits.owner.ConfigCache;
+import org.api4.java.datastructure.kvstore.IKVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the rows of the experiments table, which hold the database credentials of each token.
+ * Unknown tokens are cached as well for a shorter time, so that clients retrying with a bad token don't hit the admin database.
+ * Concurrent lookups of the same token are combined into a single query.
+ */
+@Component
+public class TokenCredentialCache {
+
+    private final static Logger logger = LoggerFactory.getLogger(TokenCredentialCache.class);
+
+    private static final IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
+
+    private final Cache<String, IKVStore> credentials;
+
+    private final Cache<String, Boolean> unknownTokens;
+
+    private final AdminConnectionPool adminPool;
+
+    public TokenCredentialCache(AdminConnectionPool adminPool) {
+        this.adminPool = adminPool;
+        this.credentials = CacheBuilder.newBuilder()
+                .maximumSize(config.getTokenCacheMaxSize())
+                .expireAfterWrite(config.getTokenCacheTtl(), TimeUnit.MILLISECONDS)
+                .build();
+        this.unknownTokens = CacheBuilder.newBuilder()
+                .maximumSize(config.getTokenCacheMaxSize())
+                .expireAfterWrite(config.getTokenCacheNegativeTtl(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @PostConstruct
+    public void preloadIfEnabled() {
+        if(!config.isTokenCachePreloadEnabled()) {
+            return;
+        }
+        try {
+            List<IKVStore> experiments = preload();
+            logger.info("Preloaded the credentials of {} experiments.", experiments.size());
+        } catch (SQLException ex) {
+            logger.warn("Couldn't preload the credentials of the experiments. They are loaded on first request instead.", ex);
+        }
+    }
+
+    /**
+     * Returns the row of the experiments table of the given token.
+     *
+     * @throws ExperimentTokenNotFound if no experiment has the given token.
+     */
+    public IKVStore getCredentials(String token) throws SQLException {
+        if(unknownTokens.getIfPresent(token) != null) {
+            throw new ExperimentTokenNotFound(token);
+        }
+        try {
+            return credentials.get(token, () -> load(token));
+        } catch (ExecutionException ex) {
+            if(ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (UncheckedExecutionException ex) {
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Loads the rows of all experiments with a single query and caches them.
+     *
+     * @return The rows of the experiments table.
+     */
+    public List<IKVStore> preload() throws SQLException {
+        List<IKVStore> experiments = adminPool.execute(sql -> sql.getResultsOfQuery("SELECT * FROM experiments"));
+        for (IKVStore experiment : experiments) {
+            String token = experiment.getAsString("experiment_token");
+            if(token != null) {
+                credentials.put(token, experiment);
+                unknownTokens.invalidate(token);
+            }
+        }
+        return experiments;
+    }
+
+    /**
+     * Removes the cached state of the given token, e.g. because its experiment was just created.
+     */
+    public void invalidate(String token) {
+        credentials.invalidate(token);
+        unknownTokens.invalidate(token);
+    }
+
+    public long size() {
+        return credentials.size();
+    }
+
+    private IKVStore load(String token) throws SQLException {
+        List<IKVStore> res = adminPool.execute(sql -> sql.getResultsOfQuery(
+                "SELECT * FROM experiments WHERE experiment_token = ?", Collections.singletonList(token)));
+        if (res.isEmpty()) {
+            unknownTokens.put(token, Boolean.TRUE);
+            throw new ExperimentTokenNotFound(token);
+        }
+        if (res.size() > 1) {
+            throw new IllegalStateException("Multiple experiments for the same token. A token must be unique!");
+        }
+        return res.get(0);
+    }
+
+}
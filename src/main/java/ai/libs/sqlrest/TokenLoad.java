@@ -0,0 +1,153 @@
+package ai.libs.sqlrest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the load of a single token, i.e. how many requests wait for or use its adapters and how long they take.
+ * The peaks and sums are collected in windows, which are taken and reset by the autoscaler.
+ */
+public class TokenLoad {
+
+    private final AtomicInteger numWaiting = new AtomicInteger(0);
+
+    private final AtomicInteger numInFlight = new AtomicInteger(0);
+
+    private final AtomicInteger peakWaiting = new AtomicInteger(0);
+
+    private final AtomicInteger peakInFlight = new AtomicInteger(0);
+
+    private final AtomicLong numRequests = new AtomicLong(0);
+
+    private final AtomicLong waitNanos = new AtomicLong(0);
+
+    private QueryRuntimeModel queryTimes = new QueryRuntimeModel();
+
+    /**
+     * Called before a request waits for an adapter.
+     */
+    public void waiting() {
+        updatePeak(peakWaiting, numWaiting.incrementAndGet());
+    }
+
+    /**
+     * Called once the request got an adapter or gave up waiting.
+     *
+     * @param waited The time in nano seconds the request waited.
+     * @param acquired True if the request got an adapter and is in flight now.
+     */
+    public void waited(long waited, boolean acquired) {
+        numWaiting.decrementAndGet();
+        numRequests.incrementAndGet();
+        waitNanos.addAndGet(waited);
+        if(acquired) {
+            updatePeak(peakInFlight, numInFlight.incrementAndGet());
+        }
+    }
+
+    /**
+     * Called once the request released its adapter.
+     *
+     * @param queryTime The time in milli seconds the request used the adapter.
+     */
+    public void released(long queryTime) {
+        numInFlight.decrementAndGet();
+        getQueryTimes().recordQueryTime(queryTime);
+    }
+
+    public int getNumWaiting() {
+        return numWaiting.get();
+    }
+
+    public int getNumInFlight() {
+        return numInFlight.get();
+    }
+
+    private synchronized QueryRuntimeModel getQueryTimes() {
+        return queryTimes;
+    }
+
+    private static void updatePeak(AtomicInteger peak, int value) {
+        int current;
+        while((current = peak.get()) < value && !peak.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Returns the load since the last call and starts a new window.
+     * The peaks of the new window start at the current number of waiting and in-flight requests.
+     */
+    public Window nextWindow() {
+        QueryRuntimeModel windowQueryTimes;
+        synchronized (this) {
+            windowQueryTimes = queryTimes;
+            queryTimes = new QueryRuntimeModel();
+        }
+        long requests = numRequests.getAndSet(0);
+        long waited = waitNanos.getAndSet(0);
+        int maxWaiting = peakWaiting.getAndSet(numWaiting.get());
+        int maxInFlight = peakInFlight.getAndSet(numInFlight.get());
+        double p90 = windowQueryTimes.getSampleCount() == 0 ? 0 : windowQueryTimes.getQueryTime(0.9);
+        double avgWait = requests == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(waited) / requests / 1000;
+        return new Window(requests, avgWait, maxWaiting, maxInFlight, p90);
+    }
+
+    /**
+     * The load of a token during one window of the autoscaler.
+     */
+    public static final class Window {
+
+        private final long numRequests;
+
+        private final double avgWaitMillis;
+
+        private final int peakWaiting;
+
+        private final int peakInFlight;
+
+        private final double p90QueryTime;
+
+        Window(long numRequests, double avgWaitMillis, int peakWaiting, int peakInFlight, double p90QueryTime) {
+            this.numRequests = numRequests;
+            this.avgWaitMillis = avgWaitMillis;
+            this.peakWaiting = peakWaiting;
+            this.peakInFlight = peakInFlight;
+            this.p90QueryTime = p90QueryTime;
+        }
+
+        public long getNumRequests() {
+            return numRequests;
+        }
+
+        public double getAvgWaitMillis() {
+            return avgWaitMillis;
+        }
+
+        public int getPeakWaiting() {
+            return peakWaiting;
+        }
+
+        public int getPeakInFlight() {
+            return peakInFlight;
+        }
+
+        public double getP90QueryTime() {
+            return p90QueryTime;
+        }
+
+        public Map<String, Number> toMap() {
+            Map<String, Number> map = new LinkedHashMap<>();
+            map.put("requests", numRequests);
+            map.put("avgWaitMillis", avgWaitMillis);
+            map.put("peakWaiting", peakWaiting);
+            map.put("peakInFlight", peakInFlight);
+            map.put("p90QueryTime", p90QueryTime);
+            return map;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package ai.libs.sqlrest;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads, which are available from Java 21 on.
+ * The project is built for Java 8, so they are created by reflection and the server runs on older JVMs
+ * as long as virtual threads aren't enabled.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns true if the JVM supports virtual threads.
+     */
+    public static boolean isAvailable() {
+        try {
+            newFactory("SQL-Virtual-Probe-");
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns a factory of virtual threads, which are named by the prefix and a counter.
+     * @throws IllegalStateException Thrown, if the JVM doesn't support virtual threads.
+     */
+    public static ThreadFactory newFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException | IllegalAccessException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer, but the JVM is "
+                    + System.getProperty("java.version") + ".", e);
+        } catch (InvocationTargetException e) {
+            // e.g. a preview feature that isn't enabled
+            throw new IllegalStateException("Virtual threads are not available.", e.getCause());
+        }
+    }
+
+    /**
+     * Returns an executor that runs each task on a new virtual thread.
+     * @throws IllegalStateException Thrown, if the JVM doesn't support virtual threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory factory = newFactory(namePrefix);
+        try {
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available.", e);
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package ai.libs.sqlrest.encoding;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads rows in the binary encoding of {@link BinaryResultWriter}, one row at a time while the body is received.
+ * Integers are read as longs, timestamps as {@link Timestamp}s and decimals as {@link BigDecimal}s.
+ */
+public class BinaryResultReader implements RowReader {
+
+    private final DataInputStream data;
+
+    private final List<String> columnNames;
+
+    private final byte[] columnTypes;
+
+    private final byte[] nullBitmap;
+
+    private boolean finished = false;
+
+    public BinaryResultReader(InputStream in) throws IOException {
+        this.data = new DataInputStream(new BufferedInputStream(in, 8192));
+        byte[] magic = new byte[BinaryResultWriter.MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, BinaryResultWriter.MAGIC)) {
+            throw new IOException("Not a binary query result.");
+        }
+        byte version = data.readByte();
+        if (version != BinaryResultWriter.VERSION) {
+            throw new IOException("Unsupported version of the binary query result: " + version);
+        }
+        int numColumns = (int) readVarint();
+        String[] names = new String[numColumns];
+        columnTypes = new byte[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            names[i] = readString();
+            columnTypes[i] = data.readByte();
+        }
+        columnNames = Collections.unmodifiableList(Arrays.asList(names));
+        nullBitmap = new byte[(numColumns + 7) / 8];
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Returns the types of the columns, see the constants of {@link BinaryResultWriter}.
+     */
+    public byte[] getColumnTypes() {
+        return columnTypes.clone();
+    }
+
+    @Override
+    public Object[] nextRow() throws IOException {
+        if (finished || data.readByte() == 0) {
+            finished = true;
+            return null;
+        }
+        data.readFully(nullBitmap);
+        Object[] row = new Object[columnTypes.length];
+        for (int i = 0; i < row.length; i++) {
+            if ((nullBitmap[i / 8] & (1 << (i % 8))) == 0) {
+                row[i] = readValue(columnTypes[i]);
+            }
+        }
+        return row;
+    }
+
+    private Object readValue(byte type) throws IOException {
+        switch (type) {
+            case BinaryResultWriter.TYPE_LONG:
+                return readZigZag();
+            case BinaryResultWriter.TYPE_DOUBLE:
+                return data.readDouble();
+            case BinaryResultWriter.TYPE_TIMESTAMP:
+                return new Timestamp(readZigZag());
+            case BinaryResultWriter.TYPE_BOOLEAN:
+                return data.readByte() != 0;
+            case BinaryResultWriter.TYPE_DECIMAL:
+                return new BigDecimal(readString());
+            case BinaryResultWriter.TYPE_BYTES: {
+                byte[] bytes = new byte[(int) readVarint()];
+                data.readFully(bytes);
+                return bytes;
+            }
+            case BinaryResultWriter.TYPE_STRING:
+                return readString();
+            default:
+                throw new IOException("Unknown column type: " + type);
+        }
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    private long readZigZag() throws IOException {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private String readString() throws IOException {
+        byte[] utf8 = new byte[(int) readVarint()];
+        data.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,258 @@
+package ai.libs.sqlrest.encoding;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * Writes query results in a compact binary format, so that neither side has to format or parse numbers and
+ * timestamps as text. All lengths and counts are unsigned varints (7 bits per byte, least significant group first).
+ *
+ * <pre>
+ * result  := "SQLR" version:byte numColumns:varint column* row* 0x00
+ * column  := name:string type:byte
+ * row     := 0x01 nullBitmap:byte[(numColumns + 7) / 8] value*     (one value per non-null column)
+ * string  := length:varint utf8:byte[length]
+ * </pre>
+ *
+ * Bit {@code i % 8} of byte {@code i / 8} of the null bitmap is set if column {@code i} is null.
+ * The value encoding depends on the type of the column:
+ * <ul>
+ *     <li>{@link #TYPE_LONG}: zig-zag encoded varint,</li>
+ *     <li>{@link #TYPE_DOUBLE}: 8 bytes IEEE 754, big-endian,</li>
+ *     <li>{@link #TYPE_TIMESTAMP}: milliseconds since the epoch as zig-zag encoded varint,</li>
+ *     <li>{@link #TYPE_BOOLEAN}: one byte, 0 or 1,</li>
+ *     <li>{@link #TYPE_DECIMAL} and {@link #TYPE_STRING}: string, decimals in plain notation,</li>
+ *     <li>{@link #TYPE_BYTES}: length as varint followed by the bytes.</li>
+ * </ul>
+ */
+public class BinaryResultWriter implements ResultSetWriter {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.sqlrest.binary";
+
+    public static final byte[] MAGIC = "SQLR".getBytes(StandardCharsets.US_ASCII);
+
+    public static final byte VERSION = 1;
+
+    public static final byte TYPE_LONG = 1;
+    public static final byte TYPE_DOUBLE = 2;
+    public static final byte TYPE_TIMESTAMP = 3;
+    public static final byte TYPE_BOOLEAN = 4;
+    public static final byte TYPE_DECIMAL = 5;
+    public static final byte TYPE_STRING = 6;
+    public static final byte TYPE_BYTES = 7;
+
+    private static final byte ROW = 1;
+    private static final byte END = 0;
+
+    @Override
+    public String getMediaType() {
+        return MEDIA_TYPE_VALUE;
+    }
+
+    @Override
+    public void write(ResultSet resultSet, OutputStream out) throws SQLException, IOException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int numColumns = metaData.getColumnCount();
+        byte[] types = new byte[numColumns];
+        Encoder header = new Encoder(256);
+        header.write(MAGIC, 0, MAGIC.length);
+        header.write(VERSION);
+        header.writeVarint(numColumns);
+        for (int i = 0; i < numColumns; i++) {
+            types[i] = getType(metaData, i + 1);
+            header.writeString(metaData.getColumnLabel(i + 1));
+            header.write(types[i]);
+        }
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 8192);
+        header.writeTo(buffered);
+
+        byte[] nullBitmap = new byte[(numColumns + 7) / 8];
+        Encoder values = new Encoder(1024);
+        while (resultSet.next()) {
+            Arrays.fill(nullBitmap, (byte) 0);
+            values.reset();
+            for (int i = 0; i < numColumns; i++) {
+                if (!writeValue(resultSet, i + 1, types[i], values)) {
+                    nullBitmap[i / 8] |= 1 << (i % 8);
+                }
+            }
+            buffered.write(ROW);
+            buffered.write(nullBitmap);
+            values.writeTo(buffered);
+        }
+        buffered.write(END);
+        buffered.flush();
+    }
+
+    private static byte getType(ResultSetMetaData metaData, int column) throws SQLException {
+        switch (metaData.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return TYPE_LONG;
+            case Types.BIGINT:
+                // Unsigned big integers don't fit into a long.
+                return metaData.isSigned(column) ? TYPE_LONG : TYPE_DECIMAL;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return TYPE_DOUBLE;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return TYPE_DECIMAL;
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                return TYPE_TIMESTAMP;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return TYPE_BOOLEAN;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return TYPE_BYTES;
+            default:
+                return TYPE_STRING;
+        }
+    }
+
+    /*
+     * Returns false if the value is null, in which case nothing is written.
+     */
+    private static boolean writeValue(ResultSet resultSet, int column, byte type, Encoder out) throws SQLException {
+        switch (type) {
+            case TYPE_LONG: {
+                long value = resultSet.getLong(column);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                out.writeZigZag(value);
+                return true;
+            }
+            case TYPE_DOUBLE: {
+                double value = resultSet.getDouble(column);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                out.writeLong(Double.doubleToLongBits(value));
+                return true;
+            }
+            case TYPE_TIMESTAMP: {
+                java.util.Date value = resultSet.getTimestamp(column);
+                if (value == null) {
+                    return false;
+                }
+                out.writeZigZag(value.getTime());
+                return true;
+            }
+            case TYPE_BOOLEAN: {
+                boolean value = resultSet.getBoolean(column);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                out.write(value ? 1 : 0);
+                return true;
+            }
+            case TYPE_DECIMAL: {
+                BigDecimal value = resultSet.getBigDecimal(column);
+                if (value == null) {
+                    return false;
+                }
+                out.writeString(value.toPlainString());
+                return true;
+            }
+            case TYPE_BYTES: {
+                byte[] value = resultSet.getBytes(column);
+                if (value == null) {
+                    return false;
+                }
+                out.writeVarint(value.length);
+                out.write(value, 0, value.length);
+                return true;
+            }
+            default: {
+                String value = resultSet.getString(column);
+                if (value == null) {
+                    return false;
+                }
+                out.writeString(value);
+                return true;
+            }
+        }
+    }
+
+    /*
+     * Growable byte buffer that is reused for all rows.
+     */
+    private static final class Encoder {
+
+        private byte[] buffer;
+
+        private int size = 0;
+
+        private Encoder(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+            }
+        }
+
+        private void reset() {
+            size = 0;
+        }
+
+        private void write(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        private void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        private void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeZigZag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            write(utf8, 0, utf8.length);
+        }
+
+        private void writeTo(OutputStream out) throws IOException {
+            out.write(buffer, 0, size);
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package ai.libs.sqlrest.encoding;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads rows in the encoding of {@link ColumnarJsonWriter}, one row at a time while the body is parsed.
+ * The columns have to precede the rows. They can be given by their names only, types are ignored:
+ *
+ * <pre>
+ * {"columns":["id","name"],"rows":[[1,"a"],[2,"b"]]}
+ * </pre>
+ *
+ * Numbers, strings, booleans and null are read as their JSON type.
+ */
+public class ColumnarJsonReader implements RowReader {
+
+    private final JsonParser parser;
+
+    private final List<String> columnNames = new ArrayList<>();
+
+    private boolean finished = false;
+
+    public ColumnarJsonReader(JsonFactory factory, InputStream in) throws IOException {
+        this.parser = factory.createParser(in);
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+        while (true) {
+            expect(parser.nextToken(), JsonToken.FIELD_NAME);
+            String field = parser.getCurrentName();
+            if ("columns".equals(field)) {
+                readColumns();
+            } else if ("rows".equals(field)) {
+                if (columnNames.isEmpty()) {
+                    throw new JsonParseException(parser, "The columns have to precede the rows.");
+                }
+                expect(parser.nextToken(), JsonToken.START_ARRAY);
+                return;
+            } else {
+                parser.nextToken();
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readColumns() throws IOException {
+        expect(parser.nextToken(), JsonToken.START_ARRAY);
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_STRING) {
+                columnNames.add(parser.getText());
+            } else if (token == JsonToken.START_OBJECT) {
+                String name = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("name".equals(field)) {
+                        name = parser.getValueAsString();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (name == null) {
+                    throw new JsonParseException(parser, "A column has no name.");
+                }
+                columnNames.add(name);
+            } else {
+                throw new JsonParseException(parser, "Expected the name of a column, but got: " + token);
+            }
+        }
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(columnNames);
+    }
+
+    @Override
+    public Object[] nextRow() throws IOException {
+        if (finished) {
+            return null;
+        }
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            // Whatever follows the rows is ignored.
+            finished = true;
+            return null;
+        }
+        expect(token, JsonToken.START_ARRAY);
+        Object[] row = new Object[columnNames.size()];
+        int column = 0;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (column >= row.length) {
+                throw new JsonParseException(parser, "A row has more than " + row.length + " values.");
+            }
+            row[column++] = readValue(token);
+        }
+        if (column < row.length) {
+            throw new JsonParseException(parser, "A row has " + column + " values instead of " + row.length + ".");
+        }
+        return row;
+    }
+
+    private Object readValue(JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_STRING:
+                return parser.getText();
+            default:
+                throw new JsonParseException(parser, "Expected a value, but got: " + token);
+        }
+    }
+
+    private void expect(JsonToken actual, JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + ", but got: " + actual);
+        }
+    }
+
+}
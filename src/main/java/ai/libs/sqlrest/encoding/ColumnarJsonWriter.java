@@ -0,0 +1,62 @@
+package ai.libs.sqlrest.encoding;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Writes the column names and types once, followed by the rows as positional arrays,
+ * so that the column names aren't repeated in every row:
+ *
+ * <pre>
+ * {"columns":[{"name":"id","type":"INT"},{"name":"name","type":"VARCHAR"}],"rows":[[1,"a"],[2,"b"]]}
+ * </pre>
+ *
+ * The values are encoded like in the JSON objects of `/query`. Types are the database specific type names.
+ */
+public class ColumnarJsonWriter implements ResultSetWriter {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.sqlrest.columnar+json";
+
+    private final ObjectMapper objectMapper;
+
+    public ColumnarJsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getMediaType() {
+        return MEDIA_TYPE_VALUE;
+    }
+
+    @Override
+    public void write(ResultSet resultSet, OutputStream out) throws SQLException, IOException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int numColumns = metaData.getColumnCount();
+        ResultSetJsonSerializer serializer = new ResultSetJsonSerializer(objectMapper, metaData);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("columns");
+            for (int i = 1; i <= numColumns; i++) {
+                generator.writeStartObject();
+                generator.writeStringField("name", metaData.getColumnLabel(i));
+                generator.writeStringField("type", metaData.getColumnTypeName(i));
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("rows");
+            while (resultSet.next()) {
+                serializer.writeArray(resultSet, generator);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+}
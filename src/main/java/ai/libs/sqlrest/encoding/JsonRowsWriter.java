@@ -0,0 +1,57 @@
+package ai.libs.sqlrest.encoding;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Writes each row as a JSON object, either as the elements of a JSON array like `/query` does,
+ * or as newline delimited JSON.
+ */
+public class JsonRowsWriter implements ResultSetWriter {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final ObjectMapper objectMapper;
+
+    private final boolean ndjson;
+
+    public JsonRowsWriter(ObjectMapper objectMapper, boolean ndjson) {
+        this.objectMapper = objectMapper;
+        this.ndjson = ndjson;
+    }
+
+    @Override
+    public String getMediaType() {
+        return ndjson ? APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE;
+    }
+
+    @Override
+    public void write(ResultSet resultSet, OutputStream out) throws SQLException, IOException {
+        ResultSetJsonSerializer serializer = new ResultSetJsonSerializer(objectMapper, resultSet.getMetaData());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            if (ndjson) {
+                // The rows are separated by the newlines alone.
+                generator.setRootValueSeparator(null);
+            } else {
+                generator.writeStartArray();
+            }
+            while (resultSet.next()) {
+                serializer.writeObject(resultSet, generator);
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+            }
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+}
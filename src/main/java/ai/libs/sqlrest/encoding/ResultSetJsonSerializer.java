@@ -0,0 +1,177 @@
+package ai.libs.sqlrest.encoding;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Writes the rows of a result set as JSON straight from the getters of the result set, without creating a map
+ * and boxed values for each row. The metadata is read once, and a writer is chosen for each column by its SQL type:
+ * numbers, strings and booleans are read with the primitive getters, all other values are serialized by the
+ * object mapper, so that the JSON is the same as the one of the serialized rows.
+ *
+ * An instance belongs to a single result set and must not be shared between threads.
+ */
+public class ResultSetJsonSerializer {
+
+    private final SerializedString[] names;
+
+    private final ColumnWriter[] writers;
+
+    public ResultSetJsonSerializer(ObjectMapper objectMapper, ResultSetMetaData metaData) throws SQLException {
+        int numColumns = metaData.getColumnCount();
+        this.names = new SerializedString[numColumns];
+        this.writers = new ColumnWriter[numColumns];
+        // A single provider caches the serializers of the values, `writeObject` would create one per value.
+        SerializerProvider provider = objectMapper.getSerializerProviderInstance();
+        for (int i = 0; i < numColumns; i++) {
+            names[i] = new SerializedString(metaData.getColumnLabel(i + 1));
+            writers[i] = createWriter(metaData, i + 1, provider);
+        }
+    }
+
+    private static ColumnWriter createWriter(ResultSetMetaData metaData, int column, SerializerProvider provider)
+            throws SQLException {
+        switch (metaData.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+                return ResultSetJsonSerializer::writeInt;
+            case Types.INTEGER:
+                // Unsigned integers don't fit into an int.
+                return metaData.isSigned(column) ? ResultSetJsonSerializer::writeInt : ResultSetJsonSerializer::writeLong;
+            case Types.BIGINT:
+                // Unsigned big integers don't fit into a long.
+                return metaData.isSigned(column) ? ResultSetJsonSerializer::writeLong : objectWriter(provider);
+            case Types.REAL:
+                return ResultSetJsonSerializer::writeFloat;
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return ResultSetJsonSerializer::writeDouble;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return ResultSetJsonSerializer::writeDecimal;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return ResultSetJsonSerializer::writeString;
+            case Types.BOOLEAN:
+                return ResultSetJsonSerializer::writeBoolean;
+            default:
+                // Dates, timestamps, bits and binary data are encoded as configured in the object mapper.
+                return objectWriter(provider);
+        }
+    }
+
+    /**
+     * Writes the current row of the result set as a JSON object with the column labels as keys.
+     */
+    public void writeObject(ResultSet resultSet, JsonGenerator generator) throws SQLException, IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < writers.length; i++) {
+            generator.writeFieldName(names[i]);
+            writers[i].write(resultSet, i + 1, generator);
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes the current row of the result set as a JSON array of its values.
+     */
+    public void writeArray(ResultSet resultSet, JsonGenerator generator) throws SQLException, IOException {
+        generator.writeStartArray();
+        for (int i = 0; i < writers.length; i++) {
+            writers[i].write(resultSet, i + 1, generator);
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeInt(ResultSet resultSet, int column, JsonGenerator generator) throws SQLException, IOException {
+        int value = resultSet.getInt(column);
+        if (resultSet.wasNull()) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static void writeLong(ResultSet resultSet, int column, JsonGenerator generator) throws SQLException, IOException {
+        long value = resultSet.getLong(column);
+        if (resultSet.wasNull()) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static void writeFloat(ResultSet resultSet, int column, JsonGenerator generator) throws SQLException, IOException {
+        float value = resultSet.getFloat(column);
+        if (resultSet.wasNull()) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static void writeDouble(ResultSet resultSet, int column, JsonGenerator generator) throws SQLException, IOException {
+        double value = resultSet.getDouble(column);
+        if (resultSet.wasNull()) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static void writeDecimal(ResultSet resultSet, int column, JsonGenerator generator) throws SQLException, IOException {
+        BigDecimal value = resultSet.getBigDecimal(column);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static void writeString(ResultSet resultSet, int column, JsonGenerator generator) throws SQLException, IOException {
+        String value = resultSet.getString(column);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+    }
+
+    private static void writeBoolean(ResultSet resultSet, int column, JsonGenerator generator) throws SQLException, IOException {
+        boolean value = resultSet.getBoolean(column);
+        if (resultSet.wasNull()) {
+            generator.writeNull();
+        } else {
+            generator.writeBoolean(value);
+        }
+    }
+
+    private static ColumnWriter objectWriter(SerializerProvider provider) {
+        return (resultSet, column, generator) -> {
+            Object value = resultSet.getObject(column);
+            if (value == null) {
+                generator.writeNull();
+            } else {
+                provider.defaultSerializeValue(value, generator);
+            }
+        };
+    }
+
+    private interface ColumnWriter {
+        void write(ResultSet resultSet, int column, JsonGenerator generator) throws SQLException, IOException;
+    }
+
+}
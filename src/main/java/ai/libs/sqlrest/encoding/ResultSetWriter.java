@@ -0,0 +1,23 @@
+package ai.libs.sqlrest.encoding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Encodes the rows of a result set into a response body while they are fetched from the database.
+ */
+public interface ResultSetWriter {
+
+    /**
+     * Returns the media type of the encoding.
+     */
+    String getMediaType();
+
+    /**
+     * Writes all remaining rows of the result set to the given stream. The stream isn't closed.
+     */
+    void write(ResultSet resultSet, OutputStream out) throws SQLException, IOException;
+
+}
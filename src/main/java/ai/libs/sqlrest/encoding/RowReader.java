@@ -0,0 +1,23 @@
+package ai.libs.sqlrest.encoding;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Decodes rows from a request body while it is received, the counterpart of {@link ResultSetWriter}.
+ */
+public interface RowReader {
+
+    /**
+     * Returns the names of the columns of the rows.
+     */
+    List<String> getColumnNames();
+
+    /**
+     * Reads the values of the next row in the order of the columns.
+     * @return The values, or null if there are no more rows.
+     * @throws IOException Thrown, if the body is malformed or can't be read.
+     */
+    Object[] nextRow() throws IOException;
+
+}
@@ -0,0 +1,46 @@
+package ai.libs.sqlrest.interceptors;
+
+import ai.libs.jaicore.db.IDatabaseAdapter;
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.IQueryInterceptor;
+import ai.libs.sqlrest.SQLAdapterManager;
+import ai.libs.sqlrest.model.SQLQuery;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Tracks which adapters are used by requests, so that adapters removed from a token are drained instead of
+ * being closed while queries run on them. If the arbiter picked an adapter that was just removed,
+ * the request is handed to the arbiter again, which then picks from the new adapters.
+ */
+public class AdapterUsageTracker implements IQueryInterceptor {
+
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final IQueryInterceptor arbiter;
+
+    private final SQLAdapterManager adapterManager;
+
+    public AdapterUsageTracker(IQueryInterceptor arbiter, SQLAdapterManager adapterManager) {
+        this.arbiter = arbiter;
+        this.adapterManager = adapterManager;
+    }
+
+    @Override
+    public ClosableQuery requestConnection(SQLQuery query) throws SQLException, InterruptedException {
+        String token = query.getToken();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            ClosableQuery access = arbiter.requestConnection(query);
+            IDatabaseAdapter adapter = access.getAdapter();
+            if(adapterManager.tryUseAdapter(token, adapter)) {
+                access.addCloseHook(c -> adapterManager.releaseAdapter(token, adapter));
+                return access;
+            }
+            access.close();
+        }
+        throw new SQLTransientConnectionException(String.format("The adapters of the token were replaced " +
+                "while the request tried to get one %d times.", MAX_ATTEMPTS));
+    }
+
+}
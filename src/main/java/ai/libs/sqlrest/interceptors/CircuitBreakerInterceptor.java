@@ -0,0 +1,54 @@
+package ai.libs.sqlrest.interceptors;
+
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.IQueryInterceptor;
+import ai.libs.sqlrest.IServerConfig;
+import ai.libs.sqlrest.model.DatabaseUnavailableException;
+import ai.libs.sqlrest.model.SQLQuery;
+import ai.libs.sqlrest.supplier.CircuitBreaker;
+import org.aeonbits.owner.ConfigCache;
+
+import java.sql.SQLException;
+import java.util.function.Function;
+
+/**
+ * Sheds requests while the circuit breaker of the database host the query is routed to is open.
+ * Requests are rejected before they wait for an adapter, and requests that waited while the breaker opened
+ * are rejected before they run their query, so that requests don't pile up while the database recovers.
+ */
+public class CircuitBreakerInterceptor implements IQueryInterceptor {
+
+    private final IQueryInterceptor prevInterceptor;
+
+    private final Function<SQLQuery, CircuitBreaker> breaker;
+
+    public CircuitBreakerInterceptor(IQueryInterceptor prevInterceptor) {
+        this(prevInterceptor, query -> CircuitBreaker.forHost(query.getHost() != null ? query.getHost()
+                : ConfigCache.getOrCreate(IServerConfig.class).getDBHost()));
+    }
+
+    // For testing
+    CircuitBreakerInterceptor(IQueryInterceptor prevInterceptor, Function<SQLQuery, CircuitBreaker> breaker) {
+        this.prevInterceptor = prevInterceptor;
+        this.breaker = breaker;
+    }
+
+    @Override
+    public ClosableQuery requestConnection(SQLQuery query) throws SQLException, InterruptedException {
+        assertAvailable(breaker.apply(query));
+        ClosableQuery access = prevInterceptor.requestConnection(query);
+        CircuitBreaker currentBreaker = breaker.apply(query);
+        if(!currentBreaker.isAvailable()) {
+            access.close();
+            throw new DatabaseUnavailableException(currentBreaker.getHost(), currentBreaker.getRemainingOpenTime());
+        }
+        return access;
+    }
+
+    private static void assertAvailable(CircuitBreaker breaker) throws DatabaseUnavailableException {
+        if(!breaker.isAvailable()) {
+            throw new DatabaseUnavailableException(breaker.getHost(), breaker.getRemainingOpenTime());
+        }
+    }
+
+}
@@ -17,25 +17,25 @@ public class CyclicConnectionArbiter implements IQueryInterceptor {
 
     private final Map<String, AtomicInteger> tokenSQLAdapterIndexMap = new ConcurrentHashMap<>();
 
-    private final Function<String, List<IDatabaseAdapter>> adapterManager;
+    private final Function<SQLQuery, List<IDatabaseAdapter>> adapterManager;
 
     public CyclicConnectionArbiter(SQLAdapterManager adapterManager) {
         this.adapterManager = adapterManager::getAdaptersFor;
     }
 
     // For testing
-    CyclicConnectionArbiter(Function<String, List<IDatabaseAdapter>> adapterManager) {
+    CyclicConnectionArbiter(Function<SQLQuery, List<IDatabaseAdapter>> adapterManager) {
         this.adapterManager = adapterManager;
     }
 
     @Override
     public ClosableQuery requestConnection(SQLQuery query) throws SQLException {
-        String token = query.getToken();
+        // Queries of a token routed to different hosts cycle through different adapters.
         AtomicInteger atomicIndex
-                = tokenSQLAdapterIndexMap.computeIfAbsent(token, t -> new AtomicInteger(0));
+                = tokenSQLAdapterIndexMap.computeIfAbsent(query.getRoutingKey(), t -> new AtomicInteger(0));
         int currentIndex = atomicIndex.getAndIncrement();
         int readIndex = currentIndex;
-        List<IDatabaseAdapter> adapters = adapterManager.apply(token);
+        List<IDatabaseAdapter> adapters = adapterManager.apply(query);
         int numAdapters = adapters.size();
         if(currentIndex < 0) {
             throw new IllegalStateException("The current index is negative: " + currentIndex);
@@ -0,0 +1,37 @@
+package ai.libs.sqlrest.interceptors;
+
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.IQueryInterceptor;
+import ai.libs.sqlrest.model.DeadlineExceededException;
+import ai.libs.sqlrest.model.SQLQuery;
+
+import java.sql.SQLException;
+
+/**
+ * Drops requests whose deadline passed, so that the server doesn't spend connections on responses
+ * the client doesn't wait for anymore: before they request a connection, e.g. because they waited too long
+ * for a thread, and once they got one, in case they waited for it until the deadline.
+ * Requests without a deadline pass unchanged.
+ */
+public class DeadlineInterceptor implements IQueryInterceptor {
+
+    private final IQueryInterceptor prevInterceptor;
+
+    public DeadlineInterceptor(IQueryInterceptor prevInterceptor) {
+        this.prevInterceptor = prevInterceptor;
+    }
+
+    @Override
+    public ClosableQuery requestConnection(SQLQuery query) throws SQLException, InterruptedException {
+        if(query.isExpired()) {
+            throw new DeadlineExceededException(query.getToken(), "before it requested a connection");
+        }
+        ClosableQuery connection = prevInterceptor.requestConnection(query);
+        if(query.isExpired()) {
+            connection.close();
+            throw new DeadlineExceededException(query.getToken(), "while it waited for a connection");
+        }
+        return connection;
+    }
+
+}
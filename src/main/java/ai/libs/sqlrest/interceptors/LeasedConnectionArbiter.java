@@ -0,0 +1,285 @@
+package ai.libs.sqlrest.interceptors;
+
+import ai.libs.jaicore.db.IDatabaseAdapter;
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.IQueryInterceptor;
+import ai.libs.sqlrest.IServerConfig;
+import ai.libs.sqlrest.SQLAdapterManager;
+import ai.libs.sqlrest.model.SQLQuery;
+import org.aeonbits.owner.ConfigCache;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Leases the adapters of a token exclusively, so that a request never shares its adapter with another request.
+ * Idle adapters are kept on a lock-free stack. If all adapters are leased, requests queue up in FIFO order
+ * and a released adapter is handed directly to the longest waiting request.
+ */
+public class LeasedConnectionArbiter implements IQueryInterceptor {
+
+    private final Map<String, TokenLeases> tokenLeasesMap = new ConcurrentHashMap<>();
+
+    private final Function<SQLQuery, List<IDatabaseAdapter>> adapterManager;
+
+    private final long leaseTimeout;
+
+    private final int maxWaiting;
+
+    public LeasedConnectionArbiter(SQLAdapterManager adapterManager) {
+        this(adapterManager::getAdaptersFor,
+                ConfigCache.getOrCreate(IServerConfig.class).getAdapterLeaseTimeout(),
+                ConfigCache.getOrCreate(IServerConfig.class).getAdapterLeaseMaxWaiting());
+    }
+
+    // For testing
+    LeasedConnectionArbiter(Function<SQLQuery, List<IDatabaseAdapter>> adapterManager, long leaseTimeout, int maxWaiting) {
+        this.adapterManager = adapterManager;
+        this.leaseTimeout = leaseTimeout;
+        this.maxWaiting = maxWaiting;
+    }
+
+    @Override
+    public ClosableQuery requestConnection(SQLQuery query) throws SQLException, InterruptedException {
+        List<IDatabaseAdapter> adapters = adapterManager.apply(query);
+        // The adapters of each host the token's queries are routed to are leased separately.
+        TokenLeases leases = tokenLeasesMap.computeIfAbsent(query.getRoutingKey(), t -> new TokenLeases());
+        leases.refresh(adapters);
+        // A request doesn't wait beyond its deadline.
+        Lease lease = leases.acquire(Math.min(leaseTimeout, query.getRemainingMillis()), maxWaiting);
+        ClosableQuery access = new ClosableQuery(lease.adapter, query);
+        access.addCloseHook(c -> leases.release(lease));
+        return access;
+    }
+
+    /**
+     * Returns the number of requests that wait for an adapter of the given token on the primary.
+     */
+    public int getNumWaiting(String token) {
+        TokenLeases leases = tokenLeasesMap.get(token);
+        return leases == null ? 0 : leases.numWaiting.get();
+    }
+
+    private static final class Lease {
+
+        private final IDatabaseAdapter adapter;
+
+        private final AtomicBoolean leased = new AtomicBoolean(false);
+
+        private volatile boolean retired = false;
+
+        private Lease(IDatabaseAdapter adapter) {
+            this.adapter = adapter;
+        }
+    }
+
+    private static final class Node {
+
+        private final Lease lease;
+
+        private final Node next;
+
+        private Node(Lease lease, Node next) {
+            this.lease = lease;
+            this.next = next;
+        }
+    }
+
+    private static final class Waiter {
+
+        private static final Object CANCELLED = new Object();
+
+        private final Thread thread = Thread.currentThread();
+
+        /*
+         * null while waiting, then either the handed over lease or CANCELLED.
+         */
+        private final AtomicReference<Object> slot = new AtomicReference<>();
+
+        private boolean handOver(Lease lease) {
+            if(slot.compareAndSet(null, lease)) {
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+
+        private boolean cancel() {
+            return slot.compareAndSet(null, CANCELLED);
+        }
+
+        private Lease getLease() {
+            Object value = slot.get();
+            return value instanceof Lease ? (Lease) value : null;
+        }
+    }
+
+    private static final class TokenLeases {
+
+        private final AtomicReference<Node> idleTop = new AtomicReference<>();
+
+        private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger numWaiting = new AtomicInteger(0);
+
+        private volatile List<IDatabaseAdapter> source;
+
+        private List<Lease> leases = new ArrayList<>();
+
+        /*
+         * Creates leases for adapters that were added to the token and retires the ones of removed adapters.
+         */
+        private void refresh(List<IDatabaseAdapter> adapters) {
+            if(adapters == source) {
+                return;
+            }
+            synchronized (this) {
+                if(adapters == source) {
+                    return;
+                }
+                List<Lease> newLeases = new ArrayList<>(adapters.size());
+                List<Lease> addedLeases = new ArrayList<>();
+                for (IDatabaseAdapter adapter : adapters) {
+                    Lease lease = null;
+                    for (Lease oldLease : leases) {
+                        if(oldLease.adapter == adapter) {
+                            lease = oldLease;
+                            break;
+                        }
+                    }
+                    if(lease == null) {
+                        lease = new Lease(adapter);
+                        addedLeases.add(lease);
+                    }
+                    newLeases.add(lease);
+                }
+                for (Lease oldLease : leases) {
+                    if(!newLeases.contains(oldLease)) {
+                        oldLease.retired = true;
+                    }
+                }
+                leases = newLeases;
+                source = adapters;
+                addedLeases.forEach(this::push);
+            }
+            dispatch();
+        }
+
+        private Lease acquire(long timeout, int maxWaiting) throws SQLException, InterruptedException {
+            Lease lease = tryPop();
+            if(lease != null) {
+                return lease;
+            }
+            if(numWaiting.incrementAndGet() > maxWaiting) {
+                numWaiting.decrementAndGet();
+                throw new SQLTransientConnectionException(String.format("All adapters are leased " +
+                        "and %d requests are already waiting.", maxWaiting));
+            }
+            Waiter waiter = new Waiter();
+            waiters.add(waiter);
+            try {
+                // An adapter may have been released before this waiter was enqueued.
+                dispatch();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+                while(true) {
+                    lease = waiter.getLease();
+                    if(lease != null) {
+                        return lease;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if(remaining <= 0) {
+                        if(waiter.cancel()) {
+                            throw new SQLTransientConnectionException(String.format("No adapter was " +
+                                    "released within %d ms.", timeout));
+                        }
+                        return waiter.getLease();
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                    if(Thread.interrupted()) {
+                        if(!waiter.cancel()) {
+                            release(waiter.getLease());
+                        }
+                        throw new InterruptedException("Interrupted while waiting for an adapter.");
+                    }
+                }
+            } finally {
+                numWaiting.decrementAndGet();
+                waiters.remove(waiter);
+            }
+        }
+
+        private void release(Lease lease) {
+            if(lease.retired) {
+                lease.leased.set(false);
+                return;
+            }
+            Waiter waiter;
+            while((waiter = waiters.poll()) != null) {
+                if(waiter.handOver(lease)) {
+                    return;
+                }
+            }
+            lease.leased.set(false);
+            push(lease);
+            // A request may have started waiting after the queue was polled.
+            dispatch();
+        }
+
+        /*
+         * Hands idle adapters to waiting requests.
+         */
+        private void dispatch() {
+            while(!waiters.isEmpty()) {
+                Lease lease = tryPop();
+                if(lease == null) {
+                    return;
+                }
+                boolean handedOver = false;
+                Waiter waiter;
+                while(!handedOver && (waiter = waiters.poll()) != null) {
+                    handedOver = waiter.handOver(lease);
+                }
+                if(!handedOver) {
+                    lease.leased.set(false);
+                    push(lease);
+                }
+            }
+        }
+
+        private Lease tryPop() {
+            while(true) {
+                Node top = idleTop.get();
+                if(top == null) {
+                    return null;
+                }
+                if(!idleTop.compareAndSet(top, top.next)) {
+                    continue;
+                }
+                Lease lease = top.lease;
+                if(!lease.retired && lease.leased.compareAndSet(false, true)) {
+                    return lease;
+                }
+                // Skip retired adapters and stale entries of adapters that are leased already.
+            }
+        }
+
+        private void push(Lease lease) {
+            Node top;
+            do {
+                top = idleTop.get();
+            } while(!idleTop.compareAndSet(top, new Node(lease, top)));
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package ai.libs.sqlrest.interceptors;
 import ai.libs.sqlrest.ClosableQuery;
 import ai.libs.sqlrest.IQueryInterceptor;
 import ai.libs.sqlrest.IServerConfig;
+import ai.libs.sqlrest.model.DeadlineExceededException;
 import ai.libs.sqlrest.model.SQLQuery;
 import org.aeonbits.owner.ConfigCache;
 
@@ -10,6 +11,7 @@ import java.sql.SQLException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public class LimitedAccessConnectionInterceptor implements IQueryInterceptor {
 
@@ -35,8 +37,18 @@ public class LimitedAccessConnectionInterceptor implements IQueryInterceptor {
         String token = query.getToken();
         Semaphore permits = tokenPermitsMap.computeIfAbsent(token,
                 t -> new Semaphore(numAccessLimit));
-        permits.acquire();
-        ClosableQuery access = arbiter.requestConnection(query);
+        if(!query.hasDeadline()) {
+            permits.acquire();
+        } else if(!permits.tryAcquire(query.getRemainingMillis(), TimeUnit.MILLISECONDS)) {
+            throw new DeadlineExceededException(token, "while it waited for access");
+        }
+        ClosableQuery access;
+        try {
+            access = arbiter.requestConnection(query);
+        } catch (SQLException | InterruptedException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
         access.addCloseHook(this::release);
         return access;
     }
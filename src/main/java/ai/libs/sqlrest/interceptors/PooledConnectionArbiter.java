@@ -0,0 +1,31 @@
+package ai.libs.sqlrest.interceptors;
+
+import ai.libs.jaicore.db.IDatabaseAdapter;
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.IQueryInterceptor;
+import ai.libs.sqlrest.SQLAdapterManager;
+import ai.libs.sqlrest.model.SQLQuery;
+
+import java.sql.SQLException;
+
+/**
+ * Hands out adapters of the token's pool exclusively.
+ * The adapter is returned to the pool when the query is closed.
+ */
+public class PooledConnectionArbiter implements IQueryInterceptor {
+
+    private final SQLAdapterManager adapterManager;
+
+    public PooledConnectionArbiter(SQLAdapterManager adapterManager) {
+        this.adapterManager = adapterManager;
+    }
+
+    @Override
+    public ClosableQuery requestConnection(SQLQuery query) throws SQLException, InterruptedException {
+        IDatabaseAdapter adapter = adapterManager.borrowAdapter(query);
+        ClosableQuery access = new ClosableQuery(adapter, query);
+        access.addCloseHook(c -> adapterManager.returnAdapter(query, adapter));
+        return access;
+    }
+
+}
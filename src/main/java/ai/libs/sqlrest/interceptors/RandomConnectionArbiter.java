@@ -12,7 +12,7 @@ import java.util.function.Function;
 
 public class RandomConnectionArbiter implements IQueryInterceptor {
 
-    private final Function<String, List<IDatabaseAdapter>> adapterManager;
+    private final Function<SQLQuery, List<IDatabaseAdapter>> adapterManager;
 
     private final Function<Integer, Integer> indexPicker;
 
@@ -22,7 +22,7 @@ public class RandomConnectionArbiter implements IQueryInterceptor {
     }
 
     // For testing
-    RandomConnectionArbiter(Function<String, List<IDatabaseAdapter>> adapterManager,
+    RandomConnectionArbiter(Function<SQLQuery, List<IDatabaseAdapter>> adapterManager,
                                    Function<Integer, Integer> indexPicker) {
         this.adapterManager = adapterManager;
         this.indexPicker = indexPicker;
@@ -30,8 +30,7 @@ public class RandomConnectionArbiter implements IQueryInterceptor {
 
     @Override
     public ClosableQuery requestConnection(SQLQuery query) throws SQLException {
-        String token = query.getToken();
-        List<IDatabaseAdapter> adapters = adapterManager.apply(token);
+        List<IDatabaseAdapter> adapters = adapterManager.apply(query);
         int size = adapters.size();
         int randomIndex = indexPicker.apply(size);
         IDatabaseAdapter adapter = adapters.get(randomIndex);
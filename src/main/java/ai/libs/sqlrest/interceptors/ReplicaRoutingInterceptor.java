@@ -0,0 +1,43 @@
+package ai.libs.sqlrest.interceptors;
+
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.IQueryInterceptor;
+import ai.libs.sqlrest.ReplicaRouter;
+import ai.libs.sqlrest.model.SQLQuery;
+
+import java.sql.SQLException;
+
+/**
+ * Routes read-only queries to a read replica picked by the router. All other queries run on the primary.
+ */
+public class ReplicaRoutingInterceptor implements IQueryInterceptor {
+
+    private final IQueryInterceptor prevInterceptor;
+
+    private final ReplicaRouter router;
+
+    public ReplicaRoutingInterceptor(IQueryInterceptor prevInterceptor, ReplicaRouter router) {
+        this.prevInterceptor = prevInterceptor;
+        this.router = router;
+    }
+
+    @Override
+    public ClosableQuery requestConnection(SQLQuery query) throws SQLException, InterruptedException {
+        String host = query.isReadOnly() ? router.route() : null;
+        if(host == null) {
+            return prevInterceptor.requestConnection(query);
+        }
+        query.setHost(host);
+        ClosableQuery access = null;
+        try {
+            access = prevInterceptor.requestConnection(query);
+        } finally {
+            if(access == null) {
+                router.release(host);
+            }
+        }
+        access.addCloseHook(c -> router.release(host));
+        return access;
+    }
+
+}
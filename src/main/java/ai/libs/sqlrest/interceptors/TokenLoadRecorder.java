@@ -0,0 +1,50 @@
+package ai.libs.sqlrest.interceptors;
+
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.IQueryInterceptor;
+import ai.libs.sqlrest.SQLAdapterManager;
+import ai.libs.sqlrest.TokenLoad;
+import ai.libs.sqlrest.model.SQLQuery;
+
+import java.sql.SQLException;
+import java.util.function.Function;
+
+/**
+ * Records how long requests wait for an adapter of their token and how many are in flight.
+ * The autoscaler sizes the adapters of each token based on this load.
+ */
+public class TokenLoadRecorder implements IQueryInterceptor {
+
+    private final IQueryInterceptor prevInterceptor;
+
+    private final Function<String, TokenLoad> loads;
+
+    public TokenLoadRecorder(IQueryInterceptor prevInterceptor, SQLAdapterManager adapterManager) {
+        this(prevInterceptor, adapterManager::getLoad);
+    }
+
+    // For testing
+    TokenLoadRecorder(IQueryInterceptor prevInterceptor, Function<String, TokenLoad> loads) {
+        this.prevInterceptor = prevInterceptor;
+        this.loads = loads;
+    }
+
+    @Override
+    public ClosableQuery requestConnection(SQLQuery query) throws SQLException, InterruptedException {
+        TokenLoad load = loads.apply(query.getToken());
+        load.waiting();
+        long waitStart = System.nanoTime();
+        ClosableQuery closableQuery;
+        try {
+            closableQuery = prevInterceptor.requestConnection(query);
+        } catch (SQLException | InterruptedException | RuntimeException ex) {
+            load.waited(System.nanoTime() - waitStart, false);
+            throw ex;
+        }
+        load.waited(System.nanoTime() - waitStart, true);
+        final long timeWhenAcquired = System.currentTimeMillis();
+        closableQuery.addCloseHook(c -> load.released(System.currentTimeMillis() - timeWhenAcquired));
+        return closableQuery;
+    }
+
+}
@@ -0,0 +1,19 @@
+package ai.libs.sqlrest.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.sql.SQLTransientConnectionException;
+
+@ResponseStatus(value= HttpStatus.SERVICE_UNAVAILABLE, reason="Database unavailable")
+public class DatabaseUnavailableException extends SQLTransientConnectionException {
+
+    public DatabaseUnavailableException(String host, long retryAfter) {
+        super(String.format("The database host %s is unavailable. Connections are attempted again in %d ms.", host, retryAfter));
+    }
+
+    public DatabaseUnavailableException(String host, Throwable cause) {
+        super(String.format("The database host %s is unavailable.", host), cause);
+    }
+
+}
@@ -0,0 +1,15 @@
+package ai.libs.sqlrest.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.sql.SQLTimeoutException;
+
+@ResponseStatus(value= HttpStatus.GATEWAY_TIMEOUT, reason="The deadline of the request passed")
+public class DeadlineExceededException extends SQLTimeoutException {
+
+    public DeadlineExceededException(String token, String stage) {
+        super(String.format("The deadline of a request of the token %s passed %s.", token, stage));
+    }
+
+}
@@ -0,0 +1,13 @@
+package ai.libs.sqlrest.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.BAD_REQUEST, reason="The request timeout is no positive number of milli seconds")
+public class InvalidRequestTimeoutException extends IllegalArgumentException {
+
+    public InvalidRequestTimeoutException(String timeout) {
+        super(String.format("The %s header is no positive number of milli seconds: %s", SQLQuery.TIMEOUT_HEADER, timeout));
+    }
+
+}
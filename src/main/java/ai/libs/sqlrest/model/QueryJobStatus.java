@@ -0,0 +1,29 @@
+package ai.libs.sqlrest.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Data;
+
+/**
+ * The state of an asynchronous query, and the error if it failed.
+ * The rows of a finished query are sent on their own, like the ones of `/query`.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryJobStatus {
+
+	public enum State {
+		QUEUED, RUNNING, DONE, FAILED, CANCELLED
+	}
+
+	private final String id;
+	private final State state;
+	private final String error;
+
+	public QueryJobStatus(final String id, final State state, final String error) {
+		this.id = id;
+		this.state = state;
+		this.error = error;
+	}
+
+}
@@ -0,0 +1,15 @@
+package ai.libs.sqlrest.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.concurrent.RejectedExecutionException;
+
+@ResponseStatus(value= HttpStatus.SERVICE_UNAVAILABLE, reason="Too many requests of the token")
+public class RequestQueueFullException extends RejectedExecutionException {
+
+    public RequestQueueFullException(String token, int queueSize) {
+        super(String.format("The %d requests of the token %s that may wait for a thread are waiting already.", queueSize, token));
+    }
+
+}
@@ -0,0 +1,31 @@
+package ai.libs.sqlrest.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * An ordered list of statements of one token, which are run one after another on the same connection.
+ */
+@Data
+public class SQLBatch {
+
+	private String token;
+	private List<SQLStatement> statements = new ArrayList<>();
+
+	/*
+	 * If set, the statements after the first failed one are skipped.
+	 */
+	private boolean stopOnError;
+
+	public SQLBatch() {
+
+	}
+
+	public SQLBatch(final String token, final List<SQLStatement> statements) {
+		this.token = token;
+		this.statements = statements;
+	}
+
+}
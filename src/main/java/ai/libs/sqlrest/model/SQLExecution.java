@@ -0,0 +1,32 @@
+package ai.libs.sqlrest.model;
+
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Runs a prepared statement of a token by its handle, with the values of its placeholders.
+ */
+@Data
+public class SQLExecution {
+
+	private String token;
+	private long handle;
+	private List<Object> parameters;
+
+	public SQLExecution() {
+
+	}
+
+	public SQLExecution(final String token, final long handle, final List<Object> parameters) {
+		this.token = token;
+		this.handle = handle;
+		this.parameters = parameters;
+	}
+
+	public List<Object> getParameters() {
+		return this.parameters == null ? Collections.emptyList() : this.parameters;
+	}
+
+}
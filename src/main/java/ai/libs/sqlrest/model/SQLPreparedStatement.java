@@ -0,0 +1,25 @@
+package ai.libs.sqlrest.model;
+
+import lombok.Data;
+
+/**
+ * A statement a token prepares to run it many times by its handle, see {@link SQLExecution}.
+ */
+@Data
+public class SQLPreparedStatement {
+
+	private String token;
+	private SQLStatement.Type type = SQLStatement.Type.QUERY;
+	private String query;
+
+	public SQLPreparedStatement() {
+
+	}
+
+	public SQLPreparedStatement(final String token, final SQLStatement.Type type, final String query) {
+		this.token = token;
+		this.type = type;
+		this.query = query;
+	}
+
+}
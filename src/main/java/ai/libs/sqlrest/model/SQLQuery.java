@@ -1,8 +1,14 @@
 package ai.libs.sqlrest.model;
 
+import java.util.Collections;
+import java.util.List;
+
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Transient;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import lombok.Data;
 
@@ -10,10 +16,32 @@ import lombok.Data;
 @Entity
 public class SQLQuery {
 
+	/**
+	 * The header of a request with the milli seconds the client waits for its response, which sets the deadline of its query.
+	 */
+	public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
 	private @Id @GeneratedValue Long id;
 	private String token;
 	private String query;
 
+	/*
+	 * The values of the placeholders (?) of the query, in their order. Numbers, strings, booleans and null
+	 * are bound with the setter of their JSON type.
+	 */
+	private @Transient List<Object> parameters;
+
+	/*
+	 * Set by the server: if the query only reads and may run on a replica, and the host it is routed to.
+	 */
+	private @Transient @JsonIgnore boolean readOnly;
+	private @Transient @JsonIgnore String host;
+
+	/*
+	 * Set by the server: the time in milli seconds at which the client stops waiting for the response, 0 if there is none.
+	 */
+	private @Transient @JsonIgnore long deadline;
+
 	public SQLQuery() {
 
 	}
@@ -23,6 +51,12 @@ public class SQLQuery {
 		this.query = query;
 	}
 
+	public SQLQuery(final String token, final String query, final List<Object> parameters) {
+		this.token = token;
+		this.query = query;
+		this.parameters = parameters;
+	}
+
 	public String getToken() {
 		return this.token;
 	}
@@ -31,4 +65,66 @@ public class SQLQuery {
 		return this.query;
 	}
 
+	/**
+	 * Returns the values of the placeholders of the query, which is empty if it has none.
+	 */
+	public List<Object> getParameters() {
+		return this.parameters == null ? Collections.emptyList() : this.parameters;
+	}
+
+	/**
+	 * Sets the deadline to the given milli seconds from now.
+	 */
+	@JsonIgnore
+	public void setTimeout(final long timeoutMillis) {
+		this.deadline = System.currentTimeMillis() + timeoutMillis;
+	}
+
+	/**
+	 * Sets the deadline from the value of the X-Request-Timeout header, if the request has one.
+	 * @throws InvalidRequestTimeoutException Thrown, if the value is no positive number of milli seconds.
+	 */
+	@JsonIgnore
+	public void setTimeoutFromHeader(final String timeout) {
+		if (timeout == null) {
+			return;
+		}
+		long timeoutMillis;
+		try {
+			timeoutMillis = Long.parseLong(timeout.trim());
+		} catch (NumberFormatException e) {
+			throw new InvalidRequestTimeoutException(timeout);
+		}
+		if (timeoutMillis <= 0) {
+			throw new InvalidRequestTimeoutException(timeout);
+		}
+		this.setTimeout(timeoutMillis);
+	}
+
+	@JsonIgnore
+	public boolean hasDeadline() {
+		return this.deadline > 0;
+	}
+
+	/**
+	 * Returns the milli seconds left until the deadline, which are negative once it passed, or Long.MAX_VALUE if there is none.
+	 */
+	@JsonIgnore
+	public long getRemainingMillis() {
+		return this.hasDeadline() ? this.deadline - System.currentTimeMillis() : Long.MAX_VALUE;
+	}
+
+	@JsonIgnore
+	public boolean isExpired() {
+		return this.getRemainingMillis() <= 0;
+	}
+
+	/**
+	 * Returns the key of the adapters the query runs on, which differs from the token if it is routed to a replica.
+	 */
+	@JsonIgnore
+	public String getRoutingKey() {
+		return this.host == null ? this.token : this.token + "@" + this.host;
+	}
+
 }
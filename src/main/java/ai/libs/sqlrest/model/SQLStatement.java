@@ -0,0 +1,43 @@
+package ai.libs.sqlrest.model;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Data;
+
+/**
+ * A statement of a {@link SQLBatch}. Its type determines how it is run, like the endpoint of the same name.
+ */
+@Data
+public class SQLStatement {
+
+	public enum Type {
+		@JsonProperty("query") QUERY,
+		@JsonProperty("update") UPDATE,
+		@JsonProperty("insert") INSERT
+	}
+
+	private Type type = Type.QUERY;
+	private String query;
+
+	/*
+	 * The values of the placeholders of the query, like the ones of a SQLQuery.
+	 */
+	private List<Object> parameters;
+
+	public SQLStatement() {
+
+	}
+
+	public SQLStatement(final Type type, final String query) {
+		this.type = type;
+		this.query = query;
+	}
+
+	public List<Object> getParameters() {
+		return this.parameters == null ? Collections.emptyList() : this.parameters;
+	}
+
+}
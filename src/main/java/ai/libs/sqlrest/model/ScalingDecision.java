@@ -0,0 +1,22 @@
+package ai.libs.sqlrest.model;
+
+import lombok.Data;
+
+@Data
+public class ScalingDecision {
+
+	private final long timestamp;
+	private final String token;
+	private final int oldNumAdapters;
+	private final int newNumAdapters;
+	private final String reason;
+
+	public ScalingDecision(final long timestamp, final String token, final int oldNumAdapters, final int newNumAdapters, final String reason) {
+		this.timestamp = timestamp;
+		this.token = token;
+		this.oldNumAdapters = oldNumAdapters;
+		this.newNumAdapters = newNumAdapters;
+		this.reason = reason;
+	}
+
+}
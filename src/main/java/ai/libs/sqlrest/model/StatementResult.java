@@ -0,0 +1,52 @@
+package ai.libs.sqlrest.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import lombok.Data;
+
+/**
+ * The result of a statement of a {@link SQLBatch}: the rows of a query, the number of rows changed by an update,
+ * the generated keys of an insert, or the error of a failed statement.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StatementResult {
+
+	/*
+	 * The rows as JSON array, written as they are.
+	 */
+	@JsonRawValue
+	private final String rows;
+	private final Integer updateCount;
+	private final int[] generatedKeys;
+	private final String error;
+
+	private StatementResult(final String rows, final Integer updateCount, final int[] generatedKeys, final String error) {
+		this.rows = rows;
+		this.updateCount = updateCount;
+		this.generatedKeys = generatedKeys;
+		this.error = error;
+	}
+
+	public static StatementResult ofRows(final String rows) {
+		return new StatementResult(rows, null, null, null);
+	}
+
+	public static StatementResult ofUpdateCount(final int updateCount) {
+		return new StatementResult(null, updateCount, null, null);
+	}
+
+	public static StatementResult ofGeneratedKeys(final int[] generatedKeys) {
+		return new StatementResult(null, null, generatedKeys, null);
+	}
+
+	public static StatementResult ofInsertedRows(final int numRows, final int[] generatedKeys) {
+		return new StatementResult(null, numRows, generatedKeys, null);
+	}
+
+	public static StatementResult ofError(final String error) {
+		return new StatementResult(null, null, null, error);
+	}
+
+}
@@ -0,0 +1,13 @@
+package ai.libs.sqlrest.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.TOO_MANY_REQUESTS, reason="Too many asynchronous queries of the token")
+public class TooManyQueryJobsException extends IllegalStateException {
+
+    public TooManyQueryJobsException(String token, int maxJobsPerToken) {
+        super(String.format("The token %s has %d asynchronous queries queued or running already.", token, maxJobsPerToken));
+    }
+
+}
@@ -0,0 +1,22 @@
+package ai.libs.sqlrest.model;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * The outcome of a transaction: if it was committed, and the results of its statements.
+ * A rolled back transaction has the results up to the failed statement, whose result is the error.
+ */
+@Data
+public class TransactionResult {
+
+	private final boolean committed;
+	private final List<StatementResult> results;
+
+	public TransactionResult(final boolean committed, final List<StatementResult> results) {
+		this.committed = committed;
+		this.results = results;
+	}
+
+}
@@ -0,0 +1,178 @@
+package ai.libs.sqlrest.reactive;
+
+import ai.libs.jaicore.db.IDatabaseAdapter;
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.IQueryInterceptor;
+import ai.libs.sqlrest.IServerConfig;
+import ai.libs.sqlrest.QueryCancellations;
+import ai.libs.sqlrest.QueryExecutors;
+import ai.libs.sqlrest.QueryRuntimeModel;
+import ai.libs.sqlrest.encoding.JsonRowsWriter;
+import ai.libs.sqlrest.model.SQLQuery;
+import ai.libs.sqlrest.supplier.CustomDatabaseAdapter;
+import ai.libs.sqlrest.supplier.QueryCancellation;
+import ai.libs.sqlrest.supplier.QueryCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.aeonbits.owner.ConfigCache;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Handles queries, updates and inserts in the reactive server, see {@link ReactiveServerConfiguration}.
+ * The requests pass the same interceptors as the ones of the query controller, and their statements run
+ * on the threads of their token, so that the event loop of the server never waits for the database.
+ *
+ * The rows of a query are read from the open result set in chunks as the client consumes them, so a slow
+ * client doesn't make the server buffer the result, and the driver fetches the rows from the database
+ * in batches of the stream fetch size meanwhile.
+ * If the client goes away, the statements of its request are cancelled, see {@link QueryCancellations}.
+ */
+@Component
+@Profile("reactive")
+public class ReactiveQueryHandler {
+
+    private static final IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(JsonRowsWriter.APPLICATION_NDJSON_VALUE);
+
+    private final IQueryInterceptor interceptor;
+
+    private final QueryExecutors executors;
+
+    private final ObjectMapper objectMapper;
+
+    private final QueryRuntimeModel runtimeModel;
+
+    private final QueryCancellations cancellations;
+
+    public ReactiveQueryHandler(@Qualifier("interceptorConf") IQueryInterceptor interceptor, QueryExecutors executors,
+                                ObjectMapper objectMapper, QueryRuntimeModel runtimeModel, QueryCancellations cancellations) {
+        this.interceptor = interceptor;
+        this.executors = executors;
+        this.objectMapper = objectMapper;
+        this.runtimeModel = runtimeModel;
+        this.cancellations = cancellations;
+    }
+
+    /**
+     * Runs a read query like `/query` of the query controller. The rows are a JSON array,
+     * or newline delimited JSON objects if application/x-ndjson is accepted.
+     */
+    public Mono<ServerResponse> query(ServerRequest request) {
+        boolean readPrimary = Boolean.parseBoolean(request.headers().asHttpHeaders().getFirst("X-Read-Primary"));
+        boolean ndjson = request.headers().accept().stream().anyMatch(APPLICATION_NDJSON::isCompatibleWith)
+                && !request.headers().accept().contains(MediaType.APPLICATION_JSON);
+        DataBufferFactory buffers = request.exchange().getResponse().bufferFactory();
+        return request.bodyToMono(SQLQuery.class).flatMap(query -> {
+            assertLegalQuery(query.getQuery());
+            query.setReadOnly(!readPrimary);
+            setDeadline(request, query);
+            QueryCancellation cancellation = cancellations.open(query);
+            // The statement stays registered with the cancellation until the rows are closed.
+            Flux<DataBuffer> rows = Flux.using(() -> cancellation.run(() -> openRows(query, ndjson)),
+                    stream -> Flux.<DataBuffer>generate(sink -> {
+                        try {
+                            byte[] chunk = stream.nextChunk();
+                            if(chunk == null) {
+                                sink.complete();
+                            } else {
+                                sink.next(buffers.wrap(chunk));
+                            }
+                        } catch (Exception e) {
+                            sink.error(e);
+                        }
+                    }), RowStream::close)
+                    // Each demand of the client is served by a thread of the token, one after another.
+                    .subscribeOn(Schedulers.fromExecutor(executors.asExecutor(query.getToken()), true))
+                    .doOnCancel(() -> cancellations.cancel(query.getToken(), cancellation, "the client went away"));
+            return ServerResponse.ok()
+                    .contentType(ndjson ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                    .body(BodyInserters.fromDataBuffers(rows));
+        });
+    }
+
+    private RowStream openRows(SQLQuery query, boolean ndjson) throws Exception {
+        ClosableQuery connection = interceptor.requestConnection(query);
+        try {
+            IDatabaseAdapter adapter = connection.getAdapter();
+            if(!(adapter instanceof CustomDatabaseAdapter)) {
+                throw new UnsupportedOperationException("Streaming query results requires the adapters of this server, "
+                        + "but got: " + adapter.getClass().getName());
+            }
+            QueryCursor cursor = ((CustomDatabaseAdapter) adapter).openCursor(query.getQuery(), query.getParameters(),
+                    config.getStreamFetchSize());
+            try {
+                return new RowStream(connection, cursor, objectMapper, ndjson);
+            } catch (Exception e) {
+                cursor.close();
+                throw e;
+            }
+        } catch (Exception e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    public Mono<ServerResponse> update(ServerRequest request) {
+        return request.bodyToMono(SQLQuery.class)
+                .flatMap(query -> {
+                    assertLegalQuery(query.getQuery());
+                    setDeadline(request, query);
+                    return submit(query, () -> {
+                        try (ClosableQuery connection = interceptor.requestConnection(query)) {
+                            return connection.getAdapter().update(query.getQuery(), query.getParameters());
+                        }
+                    });
+                })
+                .flatMap(updateCount -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(updateCount));
+    }
+
+    public Mono<ServerResponse> insert(ServerRequest request) {
+        return request.bodyToMono(SQLQuery.class)
+                .flatMap(query -> {
+                    assertLegalQuery(query.getQuery());
+                    setDeadline(request, query);
+                    return submit(query, () -> {
+                        try (ClosableQuery connection = interceptor.requestConnection(query)) {
+                            return connection.getAdapter().insert(query.getQuery(), query.getParameters());
+                        }
+                    });
+                })
+                .flatMap(keys -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(keys));
+    }
+
+    /*
+     * Runs the call on a thread of the token. Its statements are cancelled if the client goes away before it is done,
+     * and time out at the deadline of the request.
+     */
+    private <T> Mono<T> submit(SQLQuery query, QueryExecutors.Call<T> call) {
+        QueryCancellation cancellation = cancellations.open(query);
+        return Mono.fromFuture(executors.submit(query.getToken(), () -> cancellation.run(call::call)))
+                .doOnCancel(() -> cancellations.cancel(query.getToken(), cancellation, "the client went away"));
+    }
+
+    public Mono<ServerResponse> runtime(ServerRequest request) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(runtimeModel.getQueryTimes());
+    }
+
+    private static void setDeadline(ServerRequest request, SQLQuery query) {
+        query.setTimeoutFromHeader(request.headers().asHttpHeaders().getFirst(SQLQuery.TIMEOUT_HEADER));
+    }
+
+    private static void assertLegalQuery(String query) {
+        if(query == null || query.contains(";")) {
+            throw new IllegalArgumentException("Query is not allowed, it is missing or contains semicolons (;).");
+        }
+    }
+
+}
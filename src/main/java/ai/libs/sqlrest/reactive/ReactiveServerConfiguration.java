@@ -0,0 +1,40 @@
+package ai.libs.sqlrest.reactive;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+
+/**
+ * The reactive server, which is started with the profile `reactive` instead of the servlet server.
+ * It runs on netty and serves `/query`, `/update` and `/insert` with the handlers of {@link ReactiveQueryHandler}.
+ * The administration endpoints are served by their controllers in both servers, the other endpoints
+ * of the query controller only by the servlet server.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveServerConfiguration {
+
+    /*
+     * Tomcat is on the class path for the servlet server, which the reactive server would use otherwise.
+     */
+    @Bean
+    NettyReactiveWebServerFactory reactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    RouterFunction<ServerResponse> reactiveQueryRoutes(ReactiveQueryHandler handler) {
+        return RouterFunctions.route(POST("/query"), handler::query)
+                .andRoute(POST("/update"), handler::update)
+                .andRoute(POST("/insert"), handler::insert)
+                .andRoute(GET("/runtime"), handler::runtime);
+    }
+
+}
@@ -0,0 +1,154 @@
+package ai.libs.sqlrest.reactive;
+
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.encoding.ResultSetJsonSerializer;
+import ai.libs.sqlrest.supplier.QueryCursor;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the rows of an open query in chunks of JSON, one chunk each time the client is ready for more,
+ * either as a JSON array or as newline delimited JSON objects.
+ *
+ * The stream may be closed while a chunk is read, e.g. when the client goes away. The query is closed
+ * once the chunk is read then, so that the result set isn't closed under the thread that reads it.
+ */
+class RowStream implements AutoCloseable {
+
+    private final static Logger logger = LoggerFactory.getLogger(RowStream.class);
+
+    /*
+     * The size in bytes after which a chunk is sent.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    private final ClosableQuery connection;
+
+    private final ResultSet resultSet;
+
+    /*
+     * Closes the result set and its statement, see {@link QueryCursor}.
+     */
+    private final AutoCloseable cursor;
+
+    private final ResultSetJsonSerializer serializer;
+
+    private final boolean ndjson;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(CHUNK_SIZE * 2);
+
+    private final JsonGenerator generator;
+
+    private boolean started = false;
+
+    private boolean finished = false;
+
+    private boolean reading = false;
+
+    private boolean closed = false;
+
+    RowStream(ClosableQuery connection, QueryCursor cursor, ObjectMapper objectMapper, boolean ndjson)
+            throws SQLException, IOException {
+        this(connection, cursor.getResultSet(), cursor, objectMapper, ndjson);
+    }
+
+    // For testing
+    RowStream(ClosableQuery connection, ResultSet resultSet, AutoCloseable cursor, ObjectMapper objectMapper, boolean ndjson)
+            throws SQLException, IOException {
+        this.connection = connection;
+        this.resultSet = resultSet;
+        this.cursor = cursor;
+        this.ndjson = ndjson;
+        this.serializer = new ResultSetJsonSerializer(objectMapper, resultSet.getMetaData());
+        this.generator = objectMapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8);
+        if(ndjson) {
+            generator.setRootValueSeparator(null);
+        }
+    }
+
+    /**
+     * Returns the next rows as JSON, or null once all rows were returned or the stream is closed.
+     */
+    byte[] nextChunk() throws SQLException, IOException {
+        synchronized (this) {
+            if(closed || finished) {
+                return null;
+            }
+            reading = true;
+        }
+        try {
+            if(!started) {
+                started = true;
+                if(!ndjson) {
+                    generator.writeStartArray();
+                }
+            }
+            while(buffer.size() < CHUNK_SIZE) {
+                if(!resultSet.next()) {
+                    finished = true;
+                    if(!ndjson) {
+                        generator.writeEndArray();
+                    }
+                    break;
+                }
+                serializer.writeObject(resultSet, generator);
+                if(ndjson) {
+                    generator.writeRaw('\n');
+                }
+                generator.flush();
+            }
+            generator.flush();
+            byte[] chunk = buffer.toByteArray();
+            buffer.reset();
+            return chunk;
+        } finally {
+            boolean closeNow;
+            synchronized (this) {
+                reading = false;
+                closeNow = closed;
+            }
+            if(closeNow) {
+                closeQuery();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        boolean closeNow;
+        synchronized (this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            closeNow = !reading;
+        }
+        if(closeNow) {
+            closeQuery();
+        }
+    }
+
+    private void closeQuery() {
+        try {
+            cursor.close();
+            generator.close();
+        } catch (Exception e) {
+            logger.warn("Error while closing a streamed query: {}", e.getMessage());
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warn("Error while releasing the connection of a streamed query: {}", e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package ai.libs.sqlrest.reactive;
+
+import ai.libs.sqlrest.supplier.QueryCancellation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebExceptionHandler;
+import reactor.core.publisher.Mono;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+/**
+ * Answers the requests of the reactive server whose statements timed out with 504, like the query controller does.
+ * These are the requests whose deadline passed, the statements that reached the query timeout of the driver
+ * and the ones the database interrupted, e.g. at its max execution time.
+ * It runs before the error handler of Spring Boot, which answers other errors.
+ */
+@Component
+@Profile("reactive")
+@Order(-2)
+public class StatementTimeoutHandler implements WebExceptionHandler {
+
+    private final static Logger logger = LoggerFactory.getLogger(StatementTimeoutHandler.class);
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        if(!isTimeout(ex) || exchange.getResponse().isCommitted()) {
+            return Mono.error(ex);
+        }
+        logger.info("A statement timed out: {}", ex.getMessage());
+        exchange.getResponse().setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+        return exchange.getResponse().setComplete();
+    }
+
+    /*
+     * Errors of statements may reach the server wrapped, e.g. by the future of their thread.
+     */
+    static boolean isTimeout(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if(cause instanceof SQLTimeoutException) {
+                return true;
+            } else if(cause instanceof SQLException
+                    && QueryCancellation.CANCELLED_SQL_STATE.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -1,10 +1,19 @@
 package ai.libs.sqlrest.supplier;
 
-import ai.libs.jaicore.db.sql.SQLAdapter;
+import ai.libs.sqlrest.IServerConfig;
+import ai.libs.sqlrest.model.DeadlineExceededException;
+import org.aeonbits.owner.ConfigCache;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 class BaseConnectionHandler {
 
@@ -12,50 +21,433 @@ class BaseConnectionHandler {
 
     private DefaultConnectionSupplier supplier;
 
-    private String user, passwd, databaseName;
+    private String host, user, passwd, databaseName;
 
     private long timestampOfLastAction = Long.MIN_VALUE;
 
-    private long connectionTimeout = TimeUnit.MINUTES.toMillis(5);
+    /*
+     * Number of operations that are currently using the connection.
+     */
+    private int numUsers = 0;
+
+    /*
+     * True while a single operation holds the connection exclusively, e.g. to run a transaction.
+     * Other operations wait until it is released.
+     */
+    private boolean exclusive = false;
+
+    /*
+     * Number of operations that wait to hold the connection exclusively. New operations wait for them first,
+     * so that they aren't starved by a steady stream of shared users.
+     */
+    private int numExclusiveWaiting = 0;
+
+    /*
+     * False once the connection was closed on purpose. The maintainer doesn't open it again in that case.
+     */
+    private boolean maintained = true;
+
+    private final ConnectionMaintainer maintainer;
+
+    /*
+     * Prepared statements of the connection that are currently not in use, by their SQL, least recently used first.
+     * A statement is removed while it is in use, as statements can't be used by several operations at once.
+     */
+    private final Map<String, PreparedStatement> statementCache = new LinkedHashMap<>();
+
+    private final int statementCacheSize = ConfigCache.getOrCreate(IServerConfig.class).getStatementCacheSize();
+
+    /*
+     * Guards the state of the handler. The connection is opened while holding it, which is why it
+     * isn't a monitor: virtual threads that block in a synchronized block pin the platform thread they run on.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /*
+     * Signalled when an operation releases the connection or stops waiting for exclusive use.
+     */
+    private final Condition released = lock.newCondition();
 
     public BaseConnectionHandler(DefaultConnectionSupplier supplier, String user1, String passwd1, String databaseName1) {
+        this(supplier, null, user1, passwd1, databaseName1);
+    }
+
+    /**
+     * @param host1 The host to connect to or null for the primary host.
+     */
+    public BaseConnectionHandler(DefaultConnectionSupplier supplier, String host1, String user1, String passwd1, String databaseName1) {
+        this(supplier, host1, user1, passwd1, databaseName1, ConnectionMaintainer.getInstance());
+    }
+
+    BaseConnectionHandler(DefaultConnectionSupplier supplier, String host1, String user1, String passwd1, String databaseName1,
+                          ConnectionMaintainer maintainer) {
         this.supplier = supplier;
+        this.host = host1;
         this.user = user1;
         this.passwd = passwd1;
         this.databaseName = databaseName1;
+        this.maintainer = maintainer;
+        maintainer.register(this);
     }
 
-    public synchronized Connection getConnection() throws SQLException {
-        /*
-         * Close connection if the last access to the connection was 5 minutes ago  or earlier.
-         */
-        long currentTime = System.currentTimeMillis();
-        if(timestampOfLastAction + connectionTimeout < currentTime) {
-            closeConnection();
+    public Connection getConnection() throws SQLException {
+        lock.lock();
+        try {
+            /*
+             * Create a connection when first accessed or if it was closed.
+             * Idle connections are kept alive and replaced by the maintainer in the background,
+             * so that this only happens if the maintainer didn't get to open the connection yet.
+             */
+            if(connection == null || connection.isClosed()) {
+                createConnection();
+            }
+
+            timestampOfLastAction = System.currentTimeMillis();
+            return connection;
+        } finally {
+            lock.unlock();
         }
+    }
 
-        /*
-         * Create a connection when first accessed or in case of a timeout.
-         */
-        if(connection == null) {
-            createConnection();
+    /**
+     * Returns the connection and marks it as being used until `release` is called.
+     * The maintainer doesn't validate or replace connections that are in use.
+     * While an operation holds or waits for the connection exclusively, it waits up to the deadline
+     * of the request, if it has one, see {@link QueryCancellation}.
+     * @throws DeadlineExceededException Thrown, if the deadline passed while it waited.
+     */
+    Connection acquire() throws SQLException {
+        QueryCancellation cancellation = QueryCancellation.current();
+        long deadline = cancellation == null ? 0 : cancellation.getDeadline();
+        lock.lock();
+        try {
+            while(exclusive || numExclusiveWaiting > 0) {
+                if(deadline > 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if(remaining <= 0) {
+                        throw new DeadlineExceededException(cancellation.getToken(), "while it waited for the connection");
+                    }
+                    awaitRelease(remaining);
+                } else {
+                    awaitRelease(0);
+                }
+            }
+            Connection acquired = getConnection();
+            numUsers++;
+            return acquired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the connection once no other operation uses it, and keeps other operations from using it
+     * until `release` is called. Used for transactions, which change the state of the connection.
+     * @param timeoutMillis The time to wait for the other operations to release the connection.
+     * @throws SQLException Thrown, if the connection wasn't released in time or it couldn't be opened.
+     */
+    Connection acquireExclusive(long timeoutMillis) throws SQLException {
+        lock.lock();
+        try {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            numExclusiveWaiting++;
+            try {
+                while(exclusive || numUsers > 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if(remaining <= 0) {
+                        throw new SQLException("Timed out waiting for exclusive use of the connection to " + getDatabaseKey());
+                    }
+                    awaitRelease(remaining);
+                }
+            } finally {
+                numExclusiveWaiting--;
+                released.signalAll();
+            }
+            Connection acquired = getConnection();
+            exclusive = true;
+            numUsers++;
+            return acquired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Called while holding the lock. Waits without a timeout if it is 0.
+     */
+    private void awaitRelease(long timeoutMillis) throws SQLException {
+        try {
+            if(timeoutMillis > 0) {
+                released.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            } else {
+                released.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the connection to " + getDatabaseKey(), e);
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            numUsers--;
+            if(numUsers == 0) {
+                exclusive = false;
+            }
+            timestampOfLastAction = System.currentTimeMillis();
+            released.signalAll();
+        } finally {
+            lock.unlock();
         }
+    }
+
+    /**
+     * Returns a prepared statement of the connection for the given SQL, which has to be acquired.
+     * If it is to be reused, a statement that was prepared for the same SQL before is taken from the cache,
+     * unless another operation uses it, and it is put back into the cache when the lease is closed.
+     * Otherwise the statement is closed with the lease.
+     * The statement is registered with the cancellation of the request that runs on the thread, if any.
+     * @param returnGeneratedKeys If the keys generated by the statement are to be returned.
+     * @param reuse If the statement is to be cached, which pays off for statements that are run many times.
+     */
+    StatementLease prepare(String sql, boolean returnGeneratedKeys, boolean reuse) throws SQLException {
+        Connection current;
+        lock.lock();
+        try {
+            if(reuse) {
+                PreparedStatement cached = statementCache.remove(cacheKey(sql, returnGeneratedKeys));
+                if(cached != null) {
+                    return new StatementLease(this, sql, returnGeneratedKeys, true, cached).register();
+                }
+            }
+            current = connection;
+        } finally {
+            lock.unlock();
+        }
+        if(current == null) {
+            throw new SQLException("No connection present.");
+        }
+        PreparedStatement statement = returnGeneratedKeys ?
+                current.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : current.prepareStatement(sql);
+        return new StatementLease(this, sql, returnGeneratedKeys, reuse, statement).register();
+    }
 
-        timestampOfLastAction = currentTime;
-        return connection;
+    /**
+     * Puts the statement of a closed lease into the cache. The least recently used statement
+     * is closed if the cache is full. Statements of a replaced connection are closed.
+     */
+    void checkin(String sql, boolean returnGeneratedKeys, PreparedStatement statement) {
+        PreparedStatement toBeClosed = statement;
+        try {
+            // Rows of a batch that weren't sent, e.g. because the batch failed, are discarded as well.
+            statement.clearBatch();
+            statement.clearParameters();
+            lock.lock();
+            try {
+                String key = cacheKey(sql, returnGeneratedKeys);
+                if(statementCacheSize > 0 && connection != null && statement.getConnection() == connection
+                        && !statementCache.containsKey(key)) {
+                    statementCache.put(key, statement);
+                    toBeClosed = null;
+                    if(statementCache.size() > statementCacheSize) {
+                        Iterator<PreparedStatement> leastRecentlyUsed = statementCache.values().iterator();
+                        toBeClosed = leastRecentlyUsed.next();
+                        leastRecentlyUsed.remove();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (SQLException e) {
+            // the statement isn't usable anymore and is closed
+        }
+        if(toBeClosed != null) {
+            closeQuietly(toBeClosed);
+        }
+    }
+
+    private static String cacheKey(String sql, boolean returnGeneratedKeys) {
+        return returnGeneratedKeys ? "keys:" + sql : sql;
+    }
+
+    /*
+     * Empties the statement cache when the connection is replaced or closed, which closes its statements.
+     */
+    private void clearStatementCache() {
+        statementCache.clear();
+    }
+
+    int getNumCachedStatements() {
+        lock.lock();
+        try {
+            return statementCache.size();
+        } finally {
+            lock.unlock();
+        }
     }
 
     private void createConnection() throws SQLException {
-        connection = supplier.get(user, passwd, databaseName);
+        // Statements of the previous connection are closed with it.
+        clearStatementCache();
+        connection = supplier.get(host, user, passwd, databaseName);
         if(connection == null) {
             throw new SQLException("Connection supplier returned null.");
         }
+        if(!maintained) {
+            maintained = true;
+            maintainer.register(this);
+        }
+    }
+
+    public boolean isValid(int timeoutSeconds) throws SQLException {
+        Connection current;
+        lock.lock();
+        try {
+            current = connection;
+        } finally {
+            lock.unlock();
+        }
+        return current != null && maintainer.validate(current, timeoutSeconds);
     }
 
     public void closeConnection() throws SQLException {
-        if(connection != null) {
-            connection.close();
+        maintainer.unregister(this);
+        Connection toBeClosed;
+        lock.lock();
+        try {
+            maintained = false;
+            toBeClosed = connection;
+            connection = null;
+            clearStatementCache();
+        } finally {
+            lock.unlock();
+        }
+        if(toBeClosed != null) {
+            toBeClosed.close();
+        }
+    }
+
+    /*
+     * Methods used by the maintainer:
+     */
+
+    String getDatabaseKey() {
+        return user + "@" + (host == null ? "" : host + "/") + databaseName;
+    }
+
+    long getTimestampOfLastAction() {
+        lock.lock();
+        try {
+            return timestampOfLastAction;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isOpen() {
+        lock.lock();
+        try {
+            return connection != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Validates the connection if it is idle. The validation runs outside of the lock, so that requests don't wait
+     * for it. A broken connection is closed, unless it was replaced or a request started to use it in the meantime.
+     * Returns false if the connection was found broken and closed.
+     */
+    boolean validateIfIdle(int timeoutSeconds) {
+        Connection validated;
+        lock.lock();
+        try {
+            if(connection == null || numUsers > 0) {
+                return true;
+            }
+            validated = connection;
+        } finally {
+            lock.unlock();
+        }
+        if(maintainer.validate(validated, timeoutSeconds)) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if(connection != validated || numUsers > 0) {
+                return true;
+            }
             connection = null;
+            clearStatementCache();
+        } finally {
+            lock.unlock();
+        }
+        closeQuietly(validated);
+        return false;
+    }
+
+    /**
+     * Opens a new connection outside of the lock and swaps it in, closing the previous one if present.
+     * The new connection is discarded if a request used the handler in the meantime or it was closed.
+     */
+    void renewConnection() throws SQLException {
+        long lastAction = getTimestampOfLastAction();
+        Connection newConnection = supplier.get(host, user, passwd, databaseName);
+        if(newConnection == null) {
+            throw new SQLException("Connection supplier returned null.");
+        }
+        Connection oldConnection;
+        lock.lock();
+        try {
+            if(!maintained || numUsers > 0 || lastAction != timestampOfLastAction) {
+                oldConnection = newConnection;
+            } else {
+                oldConnection = connection;
+                connection = newConnection;
+                clearStatementCache();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if(oldConnection != null) {
+            closeQuietly(oldConnection);
+        }
+    }
+
+    /**
+     * Closes the connection if it isn't in use. The handler stays registered, so it may be opened again.
+     */
+    void closeIfIdle() {
+        Connection toBeClosed = null;
+        lock.lock();
+        try {
+            if(numUsers == 0) {
+                toBeClosed = connection;
+                connection = null;
+                clearStatementCache();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if(toBeClosed != null) {
+            closeQuietly(toBeClosed);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // the connection is abandoned either way
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // the statement is abandoned either way
         }
     }
 
@@ -0,0 +1,149 @@
+package ai.libs.sqlrest.supplier;
+
+import ai.libs.sqlrest.IServerConfig;
+import org.aeonbits.owner.ConfigCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of the connections to a single database host.
+ *
+ * The breaker is closed while connections can be established. After a number of consecutive failures it opens,
+ * and connection attempts fail immediately instead of waiting for the host. Once the open duration has passed,
+ * it is half-open and lets a single attempt through: if it succeeds the breaker closes again,
+ * otherwise it opens again for twice the previous duration, up to a maximum.
+ */
+public class CircuitBreaker {
+
+    private final static Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String host;
+
+    private final int failureThreshold;
+
+    private final long openDuration, maxOpenDuration;
+
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+
+    private int numFailures = 0;
+
+    private int numOpened = 0;
+
+    private long openUntil = 0;
+
+    CircuitBreaker(String host, int failureThreshold, long openDuration, long maxOpenDuration, LongSupplier clock) {
+        this.host = host;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+        this.maxOpenDuration = Math.max(openDuration, maxOpenDuration);
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the breaker of the given host, which is shared by all connections to it.
+     */
+    public static CircuitBreaker forHost(String host) {
+        return BREAKERS.computeIfAbsent(host, h -> {
+            IServerConfig config = ConfigCache.getOrCreate(IServerConfig.class);
+            return new CircuitBreaker(h, config.getBreakerFailureThreshold(), config.getBreakerOpenDuration(),
+                    config.getBreakerMaxOpenDuration(), System::currentTimeMillis);
+        });
+    }
+
+    /**
+     * Returns the state of the breakers of all hosts that were connected to.
+     */
+    public static Map<String, Map<String, Object>> getStates() {
+        Map<String, Map<String, Object>> states = new TreeMap<>();
+        BREAKERS.forEach((host, breaker) -> states.put(host, breaker.getStats()));
+        return states;
+    }
+
+    /**
+     * Returns true if a connection attempt may be made. In the half-open state, only the first caller is allowed.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if(clock.getAsLong() >= openUntil) {
+                    state = State.HALF_OPEN;
+                    logger.info("Circuit breaker of {} is half-open, probing the host.", host);
+                    return true;
+                }
+                return false;
+            default:
+                // A probe is already running.
+                return false;
+        }
+    }
+
+    /**
+     * Returns false if requests to the host should be shed, because the breaker is open.
+     * Unlike `tryAcquire`, this doesn't change the state.
+     */
+    public synchronized boolean isAvailable() {
+        return state != State.OPEN || clock.getAsLong() >= openUntil;
+    }
+
+    public synchronized void recordSuccess() {
+        if(state != State.CLOSED) {
+            logger.info("Circuit breaker of {} is closed, the host is reachable again.", host);
+        }
+        state = State.CLOSED;
+        numFailures = 0;
+        numOpened = 0;
+    }
+
+    public synchronized void recordFailure() {
+        numFailures++;
+        if(state == State.HALF_OPEN || (state == State.CLOSED && numFailures >= failureThreshold)) {
+            long duration = openDuration << Math.min(numOpened, 30);
+            duration = Math.min(maxOpenDuration, duration > 0 ? duration : maxOpenDuration);
+            numOpened++;
+            state = State.OPEN;
+            openUntil = clock.getAsLong() + duration;
+            logger.warn("Circuit breaker of {} is open for {} ms after {} failed connection attempts.",
+                    host, duration, numFailures);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the time in milliseconds until the breaker lets the next attempt through, 0 if it isn't open.
+     */
+    public synchronized long getRemainingOpenTime() {
+        return state == State.OPEN ? Math.max(0, openUntil - clock.getAsLong()) : 0;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    private synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state);
+        stats.put("failures", numFailures);
+        stats.put("remainingOpenMillis", getRemainingOpenTime());
+        return stats;
+    }
+
+}
@@ -0,0 +1,140 @@
+package ai.libs.sqlrest.supplier;
+
+import ai.libs.sqlrest.IServerConfig;
+import org.aeonbits.owner.ConfigCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the connections of all adapters alive in the background.
+ * Idle connections are validated periodically and broken ones are replaced,
+ * so that request threads don't have to establish connections themselves.
+ * Connections of databases that haven't been used for the idle timeout are closed,
+ * except for a number of connections per database that are kept warm.
+ */
+class ConnectionMaintainer {
+
+    private final static Logger logger = LoggerFactory.getLogger(ConnectionMaintainer.class);
+
+    private static ConnectionMaintainer instance;
+
+    private final Set<BaseConnectionHandler> handlers = ConcurrentHashMap.newKeySet();
+
+    private final IServerConfig config;
+
+    private ScheduledExecutorService scheduler;
+
+    ConnectionMaintainer(IServerConfig config) {
+        this.config = config;
+    }
+
+    static synchronized ConnectionMaintainer getInstance() {
+        if(instance == null) {
+            instance = new ConnectionMaintainer(ConfigCache.getOrCreate(IServerConfig.class));
+        }
+        return instance;
+    }
+
+    void register(BaseConnectionHandler handler) {
+        handlers.add(handler);
+        startIfNecessary();
+    }
+
+    void unregister(BaseConnectionHandler handler) {
+        handlers.remove(handler);
+    }
+
+    private synchronized void startIfNecessary() {
+        if(scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SQL-Connection-Maintainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, config.getConnectionPingInterval() / 2);
+        scheduler.scheduleWithFixedDelay(this::maintainSafely, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("Started connection maintenance. Idle connections are validated every {} ms.",
+                config.getConnectionPingInterval());
+    }
+
+    private void maintainSafely() {
+        try {
+            maintain();
+        } catch(Exception ex) {
+            logger.error("Error while maintaining connections.", ex);
+        }
+    }
+
+    void maintain() {
+        long now = System.currentTimeMillis();
+        long pingInterval = config.getConnectionPingInterval();
+        long idleTimeout = config.getConnectionIdleTimeout();
+        int minWarm = config.getConnectionMinWarm();
+        int validationTimeout = config.getConnectionValidationTimeout();
+
+        Map<String, List<BaseConnectionHandler>> handlersPerDatabase = new HashMap<>();
+        for (BaseConnectionHandler handler : handlers) {
+            handlersPerDatabase.computeIfAbsent(handler.getDatabaseKey(), k -> new ArrayList<>()).add(handler);
+        }
+        for (List<BaseConnectionHandler> databaseHandlers : handlersPerDatabase.values()) {
+            // The most recently used connections are the ones kept warm.
+            Map<BaseConnectionHandler, Long> lastActions = new HashMap<>();
+            databaseHandlers.forEach(h -> lastActions.put(h, h.getTimestampOfLastAction()));
+            databaseHandlers.sort(Comparator.comparing(lastActions::get).reversed());
+            boolean databaseActive = idleTimeout <= 0 || lastActions.get(databaseHandlers.get(0)) + idleTimeout >= now;
+            for (int i = 0; i < databaseHandlers.size(); i++) {
+                BaseConnectionHandler handler = databaseHandlers.get(i);
+                long lastAction = lastActions.get(handler);
+                if(!databaseActive && i >= minWarm) {
+                    handler.closeIfIdle();
+                } else if(!handler.isOpen()) {
+                    renew(handler, "Opening");
+                } else if(lastAction + pingInterval < now && !handler.validateIfIdle(validationTimeout)) {
+                    renew(handler, "Replacing broken");
+                }
+            }
+        }
+    }
+
+    private void renew(BaseConnectionHandler handler, String action) {
+        logger.debug("{} connection to {} in the background.", action, handler.getDatabaseKey());
+        try {
+            handler.renewConnection();
+        } catch(SQLException | RuntimeException ex) {
+            logger.warn("{} connection to {} failed.", action, handler.getDatabaseKey(), ex);
+        }
+    }
+
+    /**
+     * Checks if the connection is usable using the configured validation query.
+     * If no validation query is configured, the driver pings the server instead.
+     */
+    boolean validate(Connection connection, int timeoutSeconds) {
+        String validationQuery = config.getConnectionValidationQuery();
+        try {
+            if(validationQuery == null || validationQuery.trim().isEmpty()) {
+                return connection.isValid(timeoutSeconds);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(timeoutSeconds);
+                statement.execute(validationQuery);
+                return true;
+            }
+        } catch (SQLException ex) {
+            logger.debug("Validation of connection failed.", ex);
+            return false;
+        }
+    }
+
+}
@@ -5,7 +5,7 @@ import ai.libs.sqlrest.ISLAdapterSupplier;
 
 public class CustomAdapterSupplier implements ISLAdapterSupplier {
     @Override
-    public IDatabaseAdapter get(String user, String password, String database) {
-        return new CustomDatabaseAdapter(user, password, database);
+    public IDatabaseAdapter get(String host, String user, String password, String database) {
+        return new CustomDatabaseAdapter(host, user, password, database);
     }
 }
@@ -5,15 +5,21 @@ import ai.libs.jaicore.db.IDatabaseAdapter;
 import ai.libs.jaicore.db.sql.ISQLQueryBuilder;
 import ai.libs.jaicore.db.sql.MySQLQueryBuilder;
 import ai.libs.jaicore.db.sql.ResultSetToKVStoreSerializer;
+import ai.libs.sqlrest.IServerConfig;
+import org.aeonbits.owner.ConfigCache;
 import org.api4.java.datastructure.kvstore.IKVStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.*;
 
 public class CustomDatabaseAdapter implements IDatabaseAdapter {
@@ -21,6 +27,8 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
     // A static field to speed up creation of instances.
     private static Logger logger = LoggerFactory.getLogger(CustomDatabaseAdapter.class);
 
+    private static final IServerConfig SERVER_CONFIG = ConfigCache.getOrCreate(IServerConfig.class);
+
     private static final ResultSetToKVStoreSerializer SERIALIZER = new ResultSetToKVStoreSerializer();
 
     private static final String KEY_EQUALS_VALUE_TO_BE_SET = " = (?)";
@@ -33,7 +41,22 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
     private final ISQLQueryBuilder queryBuilder = new MySQLQueryBuilder();
 
     public CustomDatabaseAdapter(String user, String password, String databaseName) {
-        connect = new BaseConnectionHandler(new DefaultConnectionSupplier(), user, password, databaseName);
+        this(null, user, password, databaseName);
+    }
+
+    /**
+     * @param host The host of the database, null for the primary host.
+     */
+    public CustomDatabaseAdapter(String host, String user, String password, String databaseName) {
+        this(new DefaultConnectionSupplier(), host, user, password, databaseName);
+    }
+
+    /**
+     * @param supplier Establishes the connections of the adapter.
+     * @param host The host of the database, null for the primary host.
+     */
+    public CustomDatabaseAdapter(DefaultConnectionSupplier supplier, String host, String user, String password, String databaseName) {
+        connect = new BaseConnectionHandler(supplier, host, user, password, databaseName);
     }
 
     @Override
@@ -43,6 +66,16 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
         }
     }
 
+    /**
+     * Checks if the connection of this adapter is open and still usable by sending a ping to the server.
+     * @param timeoutSeconds The time in seconds to wait for the server to respond.
+     * @return true if the connection is open and the server responded in time.
+     * @throws SQLException Thrown, if the timeout is negative.
+     */
+    public boolean isValid(int timeoutSeconds) throws SQLException {
+        return connect.isValid(timeoutSeconds);
+    }
+
     @Override
     public void close() {
         try {
@@ -140,27 +173,109 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
     public List<IKVStore> getResultsOfQuery(final String query, final List<String> values) throws SQLException {
         this.checkConnection();
         logger.info("Conducting query {} with values {}", query, values);
-        try (PreparedStatement statement = this.connect.getConnection().prepareStatement(query)) {
-            for (int i = 1; i <= values.size(); i++) {
-                statement.setString(i, values.get(i - 1));
+        this.connect.acquire();
+        try (StatementLease statement = this.prepare(query, values, false);
+             ResultSet resultSet = statement.getStatement().executeQuery()) {
+            return SERIALIZER.serialize(resultSet);
+        } finally {
+            this.connect.release();
+        }
+    }
+
+    public ResultIterator getResultIteratorOfQuery(final String query, final List<String> values) throws SQLException {
+        return this.getResultIteratorOfQuery(query, values, 100);
+    }
+
+    /**
+     * Runs the given query and returns an iterator over its rows, which are fetched from the database
+     * in chunks of the given size while the iterator is consumed.
+     * The iterator must be closed once the rows are consumed, as it holds the statement open.
+     * @param query The SQL query which is to be executed (with placeholders).
+     * @param values A list of placeholder values that need to be filled in.
+     * @param fetchSize The number of rows fetched from the database at once.
+     * @return An iterator over the rows of the result.
+     * @throws SQLException Thrown, if there was an issue with the query format or the connection to the database.
+     */
+    public ResultIterator getResultIteratorOfQuery(final String query, final List<?> values, final int fetchSize) throws SQLException {
+        QueryCursor cursor = this.openCursor(query, values, fetchSize);
+        try {
+            return new ResultIterator(SERIALIZER.getSerializationIterator(cursor.getResultSet()), cursor);
+        } catch (SQLException | RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the given query and returns its open result set, whose rows are fetched from the database
+     * in chunks of the given size while it is read.
+     * The cursor must be closed once the rows are consumed, as it holds the statement open.
+     * @param query The SQL query which is to be executed (with placeholders).
+     * @param values A list of placeholder values that need to be filled in, see {@link #setValue}.
+     * @param fetchSize The number of rows fetched from the database at once, 0 to fetch all rows at once.
+     * @return The cursor of the result.
+     * @throws SQLException Thrown, if there was an issue with the query format or the connection to the database,
+     * or if the statement doesn't return a result set, e.g. an update.
+     */
+    public QueryCursor openCursor(final String query, final List<?> values, final int fetchSize) throws SQLException {
+        this.checkConnection();
+        this.connect.acquire();
+        StatementLease statement = null;
+        try {
+            logger.info("Conducting query {} with values {}", query, values);
+            statement = this.prepare(query, values, false);
+            // With cursor fetch enabled this avoids that the whole result table is read.
+            // Unlike streaming result sets, the cursor lets other statements use the connection meanwhile,
+            // so the autocommit mode of the shared connection doesn't need to be changed.
+            statement.setFetchSize(fetchSize);
+            ResultSet resultSet = statement.getStatement().executeQuery();
+            return new QueryCursor(statement, resultSet, this.connect);
+        } catch (SQLException | RuntimeException e) {
+            try {
+                if (statement != null) {
+                    statement.close();
+                }
+            } finally {
+                this.connect.release();
             }
-            return SERIALIZER.serialize(statement.executeQuery());
+            throw e;
         }
     }
 
-    public Iterator<IKVStore> getResultIteratorOfQuery(final String query, final List<String> values) throws SQLException {
+    /**
+     * Prepares the statement on the connection of this adapter and keeps it for reuse by the statements
+     * with the same SQL, if it has placeholders.
+     * @param sql The statement with placeholders to be prepared.
+     * @param returnGeneratedKeys If the statement is an insert that returns the keys it generated.
+     * @throws SQLException Thrown, if the statement is malformed or the connection to the database failed.
+     */
+    public void prepare(final String sql, final boolean returnGeneratedKeys) throws SQLException {
         this.checkConnection();
-        boolean autoCommit = this.connect.getConnection().getAutoCommit();
-        this.connect.getConnection().setAutoCommit(false); // deactivate autocommit for this request
-        logger.info("Conducting query {} with values {}", query, values);
-        PreparedStatement statement = this.connect.getConnection().prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-        statement.setFetchSize(100); // this avoids that the whole result table is read
-        for (int i = 1; i <= values.size(); i++) {
-            statement.setString(i, values.get(i - 1));
+        this.connect.acquire();
+        try {
+            // Only statements with placeholders are reused, see `prepare(String, List, boolean)`.
+            this.connect.prepare(sql, returnGeneratedKeys, sql.indexOf('?') >= 0).close();
+        } finally {
+            this.connect.release();
         }
-        Iterator<IKVStore> iterator = SERIALIZER.getSerializationIterator(statement.executeQuery());
-        this.connect.getConnection().setAutoCommit(autoCommit);
-        return iterator;
+    }
+
+    /*
+     * Prepares the statement on the acquired connection and binds the values to its placeholders.
+     * Statements with placeholders are reused from the cache of the connection, as they are likely to be run again.
+     * The values of the others are part of their SQL, so that they hardly repeat.
+     */
+    private StatementLease prepare(final String sql, final List<?> values, final boolean returnGeneratedKeys) throws SQLException {
+        StatementLease statement = this.connect.prepare(sql, returnGeneratedKeys, !values.isEmpty());
+        try {
+            for (int i = 1; i <= values.size(); i++) {
+                setValue(statement.getStatement(), i, values.get(i - 1));
+            }
+        } catch (SQLException | RuntimeException e) {
+            statement.close();
+            throw e;
+        }
+        return statement;
     }
 
     /**
@@ -185,10 +300,9 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
     @Override
     public int[] insert(final String sql, final List<? extends Object> values) throws SQLException {
         this.checkConnection();
-        try (PreparedStatement stmt = this.connect.getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            for (int i = 1; i <= values.size(); i++) {
-                this.setValue(stmt, i, values.get(i - 1));
-            }
+        this.connect.acquire();
+        try (StatementLease statement = this.prepare(sql, values, true)) {
+            PreparedStatement stmt = statement.getStatement();
             stmt.executeUpdate();
             List<Integer> generatedKeys = new LinkedList<>();
             try (ResultSet rs = stmt.getGeneratedKeys()) {
@@ -197,6 +311,8 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
                 }
             }
             return generatedKeys.stream().mapToInt(x -> x).toArray();
+        } finally {
+            this.connect.release();
         }
     }
 
@@ -239,7 +355,8 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
     public int[] insertMultiple(final String table, final List<String> keys, final List<List<? extends Object>> datarows, final int chunkSize) throws SQLException {
         int n = datarows.size();
         List<Integer> ids = new ArrayList<>(n);
-        try (Statement stmt = this.connect.getConnection().createStatement()) {
+        Connection connection = this.connect.acquire();
+        try (Statement stmt = connection.createStatement()) {
             for (int i = 0; i < Math.ceil(n * 1.0 / chunkSize); i++) {
                 int startIndex = i * chunkSize;
                 int endIndex = Math.min((i + 1) * chunkSize, n);
@@ -257,9 +374,100 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
                 }
             }
             return ids.stream().mapToInt(x -> x).toArray();
+        } finally {
+            this.connect.release();
         }
     }
 
+    /**
+     * Supplies the rows of a bulk insert while they are received.
+     */
+    public interface RowSource {
+        /**
+         * Returns the values of the next row in the order of the columns, or null if there are no more rows.
+         */
+        Object[] next() throws IOException;
+    }
+
+    /**
+     * Inserts the rows into the table with one prepared statement, in batches of the given number of rows,
+     * so that neither the rows nor the SQL of all of them are held in memory.
+     * With `rewriteBatchedStatements` the driver sends each batch as a multi-row insert.
+     * The rows are committed batch by batch, so the ones of earlier batches remain if a batch fails.
+     * @param table The table to which the rows are to be added.
+     * @param columns The columns for which values are set.
+     * @param rows The rows with one value per column.
+     * @param chunkSize The number of rows that are sent to the database at once, which needs to be positive.
+     * @return The row ids of the inserted rows, if the table generates them.
+     * @throws SQLException Thrown, if the rows could not be inserted or the connection to the database failed.
+     * @throws IOException Thrown, if the rows could not be read.
+     */
+    public int[] insertRows(final String table, final List<String> columns, final RowSource rows, final int chunkSize)
+            throws SQLException, IOException {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("No columns to insert given.");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The number of rows sent at once needs to be positive: " + chunkSize);
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(quoteIdentifier(table)).append(" (");
+        StringBuilder placeholders = new StringBuilder();
+        for (String column : columns) {
+            if (placeholders.length() > 0) {
+                sql.append(", ");
+                placeholders.append(", ");
+            }
+            sql.append(quoteIdentifier(column));
+            placeholders.append('?');
+        }
+        sql.append(") VALUES (").append(placeholders).append(')');
+
+        this.checkConnection();
+        this.connect.acquire();
+        try (StatementLease statement = this.connect.prepare(sql.toString(), true, true)) {
+            PreparedStatement stmt = statement.getStatement();
+            List<Integer> ids = new ArrayList<>();
+            int numBatched = 0;
+            Object[] row;
+            while ((row = rows.next()) != null) {
+                if (row.length != columns.size()) {
+                    throw new IllegalArgumentException("A row has " + row.length + " values for " + columns.size() + " columns.");
+                }
+                for (int i = 0; i < row.length; i++) {
+                    setValue(stmt, i + 1, row[i]);
+                }
+                stmt.addBatch();
+                if (++numBatched == chunkSize) {
+                    this.executeBatch(stmt, ids);
+                    numBatched = 0;
+                }
+            }
+            if (numBatched > 0) {
+                this.executeBatch(stmt, ids);
+            }
+            return ids.stream().mapToInt(x -> x).toArray();
+        } finally {
+            this.connect.release();
+        }
+    }
+
+    private void executeBatch(final PreparedStatement stmt, final List<Integer> ids) throws SQLException {
+        logger.debug("Inserting a batch of rows.");
+        stmt.executeBatch();
+        try (ResultSet rs = stmt.getGeneratedKeys()) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+    }
+
+    private static String quoteIdentifier(final String identifier) {
+        if (identifier == null || identifier.isEmpty() || identifier.indexOf('`') >= 0 || identifier.indexOf(';') >= 0) {
+            throw new IllegalArgumentException("Illegal table or column name: " + identifier);
+        }
+        return "`" + identifier + "`";
+    }
+
     /**
      * Execute the given sql statement as an update.
      * @param sql The sql statement to be executed.
@@ -293,11 +501,11 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
     @Override
     public int update(final String sql, final List<? extends Object> values) throws SQLException {
         this.checkConnection();
-        try (PreparedStatement stmt = this.connect.getConnection().prepareStatement(sql)) {
-            for (int i = 1; i <= values.size(); i++) {
-                stmt.setString(i, values.get(i - 1).toString());
-            }
-            return stmt.executeUpdate();
+        this.connect.acquire();
+        try (StatementLease statement = this.prepare(sql, values, false)) {
+            return statement.getStatement().executeUpdate();
+        } finally {
+            this.connect.release();
         }
     }
 
@@ -348,17 +556,29 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
         sqlBuilder.append(STR_SPACE_WHERE);
         sqlBuilder.append(conditionSB.toString());
 
-        try (PreparedStatement stmt = this.connect.getConnection().prepareStatement(sqlBuilder.toString())) {
-            for (int i = 1; i <= values.size(); i++) {
-                this.setValue(stmt, i, values.get(i - 1));
-            }
-            return stmt.executeUpdate();
+        this.connect.acquire();
+        try (StatementLease statement = this.prepare(sqlBuilder.toString(), values, false)) {
+            return statement.getStatement().executeUpdate();
+        } finally {
+            this.connect.release();
         }
     }
 
     /**
-     * Executes the given statements atomically. Only works if no other statements are sent through this adapter in parallel! Only use for single-threaded applications, otherwise side effects may happen as this changes the auto commit
-     * settings of the connection temporarily.
+     * Starts a transaction on the connection of this adapter. Other operations of the adapter wait until
+     * the transaction is closed, so it should be short.
+     * @param timeoutMillis The time to wait for the operations that currently use the connection.
+     * @return The transaction, which has to be closed.
+     * @throws SQLException Thrown, if the connection couldn't be held exclusively in time or it failed.
+     */
+    public Transaction beginTransaction(final long timeoutMillis) throws SQLException {
+        this.checkConnection();
+        return new Transaction(this.connect, timeoutMillis);
+    }
+
+    /**
+     * Executes the given statements atomically. The connection is held exclusively meanwhile,
+     * as this changes the auto commit settings of the connection temporarily.
      *
      * @param queries
      *            The queries to execute atomically
@@ -368,51 +588,72 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
     @Override
     public void executeQueriesAtomically(final List<PreparedStatement> queries) throws SQLException {
         this.checkConnection();
-        this.connect.getConnection().setAutoCommit(false);
-
+        Connection connection = this.connect.acquireExclusive(SERVER_CONFIG.getTransactionLockTimeout());
         try {
-            for (PreparedStatement query : queries) {
-                query.execute();
-            }
-            this.connect.getConnection().commit();
-        } catch (SQLException e) {
-            logger.error("Transaction is being rolled back.", e);
+            connection.setAutoCommit(false);
+
             try {
-                this.connect.getConnection().rollback();
-            } catch (SQLException e1) {
-                logger.error("Could not rollback the connection", e1);
-            }
-        } finally {
-            for (PreparedStatement query : queries) {
-                if (query != null) {
-                    query.close();
+                for (PreparedStatement query : queries) {
+                    query.execute();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                logger.error("Transaction is being rolled back.", e);
+                try {
+                    connection.rollback();
+                } catch (SQLException e1) {
+                    logger.error("Could not rollback the connection", e1);
+                }
+            } finally {
+                for (PreparedStatement query : queries) {
+                    if (query != null) {
+                        query.close();
+                    }
                 }
-            }
 
-            this.connect.getConnection().setAutoCommit(true);
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            this.connect.release();
         }
     }
 
     @Override
     public List<IKVStore> query(final String sqlStatement) throws SQLException, IOException {
         this.checkConnection();
-        try (PreparedStatement ps = this.connect.getConnection().prepareStatement(sqlStatement)) {
+        Connection connection = this.connect.acquire();
+        try (PreparedStatement ps = connection.prepareStatement(sqlStatement)) {
             boolean success = ps.execute();
             if (success) {
                 return SERIALIZER.serialize(ps.getResultSet());
             } else {
                 return new LinkedList<>();
             }
+        } finally {
+            this.connect.release();
         }
     }
 
-    private void setValue(final PreparedStatement stmt, final int index, final Object val) throws SQLException {
-        if (val instanceof Integer) {
+    /**
+     * Binds a value to a placeholder of a statement with the setter of its type.
+     * Integers, longs, decimals, other numbers as doubles, booleans, strings and null are supported,
+     * other values are passed to the driver as they are.
+     */
+    static void setValue(final PreparedStatement stmt, final int index, final Object val) throws SQLException {
+        if (val == null) {
+            stmt.setNull(index, Types.NULL);
+        } else if (val instanceof Integer) {
             stmt.setInt(index, (Integer) val);
         } else if (val instanceof Long) {
             stmt.setLong(index, (Long) val);
+        } else if (val instanceof BigDecimal) {
+            stmt.setBigDecimal(index, (BigDecimal) val);
+        } else if (val instanceof BigInteger) {
+            stmt.setBigDecimal(index, new BigDecimal((BigInteger) val));
         } else if (val instanceof Number) {
-            stmt.setDouble(index, (Double) val);
+            stmt.setDouble(index, ((Number) val).doubleValue());
+        } else if (val instanceof Boolean) {
+            stmt.setBoolean(index, (Boolean) val);
         } else if (val instanceof String) {
             stmt.setString(index, (String) val);
         } else {
@@ -437,8 +678,11 @@ public class CustomDatabaseAdapter implements IDatabaseAdapter {
         sqlMainTable.append(") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin");
 
         /* prepare statement */
-        try (Statement stmt = this.connect.getConnection().createStatement()) {
+        Connection connection = this.connect.acquire();
+        try (Statement stmt = connection.createStatement()) {
             stmt.execute(sqlMainTable.toString());
+        } finally {
+            this.connect.release();
         }
     }
 }
@@ -11,9 +11,8 @@ public class DefaultAdapterSupplier implements ISLAdapterSupplier {
     public static final IServerConfig SERVER_CONFIG = ConfigCache.getOrCreate(IServerConfig.class);
 
     @Override
-    public IDatabaseAdapter get(String user, String password, String database) {
-        SQLAdapter adapter = new SQLAdapter(SERVER_CONFIG.getDBHost(), user, password, database,
+    public IDatabaseAdapter get(String host, String user, String password, String database) {
+        return new SQLAdapter(host == null ? SERVER_CONFIG.getDBHost() : host, user, password, database,
                 SERVER_CONFIG.getDBPropUseSsl());
-        return adapter;
     }
 }
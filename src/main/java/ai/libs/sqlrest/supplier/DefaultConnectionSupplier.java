@@ -1,6 +1,7 @@
 package ai.libs.sqlrest.supplier;
 
 import ai.libs.sqlrest.IServerConfig;
+import ai.libs.sqlrest.model.DatabaseUnavailableException;
 import com.mysql.cj.jdbc.MysqlDataSource;
 import org.aeonbits.owner.ConfigCache;
 import org.slf4j.Logger;
@@ -9,8 +10,10 @@ import org.slf4j.LoggerFactory;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DefaultConnectionSupplier {
 
@@ -18,14 +21,31 @@ public class DefaultConnectionSupplier {
 
     public static final IServerConfig SERVER_CONFIG = ConfigCache.getOrCreate(IServerConfig.class);
 
+    /*
+     * Threads that establish connections. Bounds the number of connections that are established at once.
+     */
+    private static final ExecutorService CONNECTOR = createConnector();
+
     private Map<String,MysqlDataSource> dataSourceMap = new ConcurrentHashMap<>();
 
     public DefaultConnectionSupplier() {
     }
 
-    private DataSource getDataSource(final String user, final String password, final String database) {
-        return dataSourceMap.computeIfAbsent(database, d -> {
-            String host = SERVER_CONFIG.getDBHost();
+    private static ExecutorService createConnector() {
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        int numThreads = Math.max(1, SERVER_CONFIG.getConnectThreads());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "SQL-Connector-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    DataSource getDataSource(final String host, final String user, final String password, final String database) {
+        return dataSourceMap.computeIfAbsent(host + "/" + database, d -> {
             boolean ssl = SERVER_CONFIG.getDBPropUseSsl();
             String url = "jdbc:mysql://" +
                     host + "/" + database +
@@ -46,6 +66,8 @@ public class DefaultConnectionSupplier {
                 ds.setCacheServerConfiguration(SERVER_CONFIG.getDBPropCacheServerConf());
                 ds.setUseReadAheadInput(SERVER_CONFIG.getDBPropReadAheadInput());
                 ds.setUseUnbufferedInput(SERVER_CONFIG.getDPPropUseUnbufferedInput());
+                ds.setUseCursorFetch(SERVER_CONFIG.getDBPropUseCursorFetch());
+                ds.setRewriteBatchedStatements(SERVER_CONFIG.getDBPropRewriteBatchedStatements());
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -53,34 +75,96 @@ public class DefaultConnectionSupplier {
         });
     }
 
+    /**
+     * Establishes a connection on the connector threads, so that retries don't block the calling thread longer
+     * than the connect timeout. Fails immediately if the circuit breaker of the host is open.
+     *
+     * @throws DatabaseUnavailableException Thrown if the host is unreachable.
+     */
     public Connection get(String user, String password, String database) throws SQLException {
-        int tries = 0;
-        while(tries < 3) {
+        return get(null, user, password, database);
+    }
+
+    /**
+     * Establishes a connection to the given host, or to the primary host if it is null.
+     */
+    public Connection get(String host, String user, String password, String database) throws SQLException {
+        if(host == null) {
+            host = SERVER_CONFIG.getDBHost();
+        }
+        return get(CircuitBreaker.forHost(host), host, user, password, database);
+    }
+
+    // For testing
+    Connection get(CircuitBreaker breaker, String host, String user, String password, String database) throws SQLException {
+        if(!breaker.tryAcquire()) {
+            throw new DatabaseUnavailableException(host, breaker.getRemainingOpenTime());
+        }
+        CompletableFuture<Connection> connecting;
+        try {
+            DataSource dataSource = getDataSource(host, user, password, database);
+            connecting = CompletableFuture.supplyAsync(() -> connectWithBackoff(dataSource, breaker), CONNECTOR);
+        } catch (RuntimeException e) {
+            // The attempt failed before it started, a half-open breaker would otherwise wait for its probe forever.
+            breaker.recordFailure();
+            throw e;
+        }
+        try {
+            return connecting.get(SERVER_CONFIG.getConnectTimeout(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if(cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException(cause);
+        } catch (TimeoutException e) {
+            closeWhenConnected(connecting);
+            throw new SQLTransientConnectionException(String.format("No connection to %s could be established " +
+                    "within %d ms.", breaker.getHost(), SERVER_CONFIG.getConnectTimeout()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeWhenConnected(connecting);
+            throw new SQLException("Interrupted while waiting for a connection to be established.", e);
+        }
+    }
+
+    private static Connection connectWithBackoff(DataSource dataSource, CircuitBreaker breaker) {
+        int attempts = Math.max(1, SERVER_CONFIG.getConnectAttempts());
+        long backoff = SERVER_CONFIG.getConnectBackoff();
+        for (int attempt = 1; ; attempt++) {
             try {
-                DataSource dataSource = getDataSource(user, password, database);
-                Connection connect = dataSource.getConnection();
-                return connect;
-            } catch (Exception e) {
-                tries++;
-                if(tries < 3)
-                    logger.error("Connection to server {} failed with JDBC driver {} " +
-                            "(attempt {} of 3)," +
-                            " waiting 3 seconds before trying again.", SERVER_CONFIG.getDBHost(), "mysql", tries, e);
-                else
-                    throw new SQLException(e);
-                try {
-                    Thread.sleep(2000);
-                } catch (InterruptedException e1) {
-                    Thread.currentThread().interrupt();
-                    logger.error(
-                            "SQLAdapter got interrupted while trying to establish a connection to the database.", e1);
-                    break;
+                Connection connection = dataSource.getConnection();
+                breaker.recordSuccess();
+                return connection;
+            } catch (SQLException e) {
+                breaker.recordFailure();
+                if(attempt >= attempts || breaker.getState() == CircuitBreaker.State.OPEN) {
+                    throw new CompletionException(new DatabaseUnavailableException(breaker.getHost(), e));
                 }
+                logger.warn("Connection to server {} failed (attempt {} of {}), trying again in {} ms.",
+                        breaker.getHost(), attempt, attempts, backoff, e);
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(new SQLException("Interrupted while establishing a connection.", e));
             }
+            backoff *= 2;
         }
-        logger.error("Quitting execution as no database connection could be established");
-        return null;
     }
 
+    /*
+     * The caller gave up waiting, so a connection that is established later would be leaked.
+     */
+    private static void closeWhenConnected(CompletableFuture<Connection> connecting) {
+        connecting.thenAccept(connection -> {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.debug("Couldn't close abandoned connection.", e);
+            }
+        });
+    }
 
 }
@@ -0,0 +1,199 @@
+package ai.libs.sqlrest.supplier;
+
+import ai.libs.sqlrest.model.DeadlineExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cancels the statements of a single request, e.g. once its client went away.
+ * The request runs its work with `run`, which binds the cancellation to the thread, and the statements that are
+ * prepared meanwhile are registered with it until their lease is closed, see {@link StatementLease}.
+ *
+ * Cancelling stops the statements that run at the moment with `Statement.cancel`, which the MySQL driver
+ * implements as `KILL QUERY` on a separate connection, so that the database stops working on them.
+ * The request fails then and releases its adapter as usual. Work that starts after the cancellation
+ * fails at once, without touching the database.
+ *
+ * If the request has a deadline, its statements time out once it passes, and statements that would start
+ * after it fail instead.
+ */
+public class QueryCancellation {
+
+    private final static Logger logger = LoggerFactory.getLogger(QueryCancellation.class);
+
+    /**
+     * The SQL state of the errors of cancelled statements, which is the one of MySQL for interrupted queries.
+     */
+    public static final String CANCELLED_SQL_STATE = "70100";
+
+    private static final ThreadLocal<QueryCancellation> current = new ThreadLocal<>();
+
+    /**
+     * The work of a request that can be cancelled.
+     */
+    public interface Work<T> {
+        T run() throws Exception;
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Set<Statement> statements = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private boolean started = false;
+
+    private int numRunning = 0;
+
+    private volatile boolean cancelled = false;
+
+    private final String token;
+
+    /*
+     * The time in milli seconds at which the statements of the request time out, 0 if they don't.
+     */
+    private final long deadline;
+
+    public QueryCancellation() {
+        this(null, 0);
+    }
+
+    /**
+     * @param token The token of the request, for the errors of statements after the deadline.
+     * @param deadline The time in milli seconds at which the statements of the request time out, 0 if they don't.
+     */
+    public QueryCancellation(String token, long deadline) {
+        this.token = token;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Runs the work with the cancellation bound to the thread.
+     * @throws SQLException Thrown, if the request was cancelled before.
+     */
+    public <T> T run(Work<T> work) throws Exception {
+        lock.lock();
+        try {
+            assertNotCancelled();
+            started = true;
+            numRunning++;
+        } finally {
+            lock.unlock();
+        }
+        QueryCancellation outer = current.get();
+        current.set(this);
+        try {
+            return work.run();
+        } finally {
+            if(outer == null) {
+                current.remove();
+            } else {
+                current.set(outer);
+            }
+            lock.lock();
+            try {
+                numRunning--;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Cancels the request: the statements that run at the moment are cancelled and further work fails.
+     * @return True if the request was still running or hadn't started yet, false if it was done or cancelled before.
+     */
+    public boolean cancel() {
+        List<Statement> running;
+        boolean pending;
+        lock.lock();
+        try {
+            if(cancelled) {
+                return false;
+            }
+            cancelled = true;
+            pending = !started || numRunning > 0 || !statements.isEmpty();
+            running = new ArrayList<>(statements);
+        } finally {
+            lock.unlock();
+        }
+        for (Statement statement : running) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                logger.warn("Couldn't cancel a statement: {}", e.getMessage());
+            }
+        }
+        return pending;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    /*
+     * Returns the time in milli seconds at which the statements of the request time out, 0 if they don't.
+     */
+    long getDeadline() {
+        return deadline;
+    }
+
+    /*
+     * Returns the cancellation that is bound to the current thread, or null.
+     */
+    static QueryCancellation current() {
+        return current.get();
+    }
+
+    /*
+     * Registers a statement of the request that is about to run, and sets its query timeout to the time
+     * left until the deadline, in whole seconds as JDBC has it.
+     * @return True if the timeout of the statement was set.
+     */
+    boolean register(Statement statement) throws SQLException {
+        lock.lock();
+        try {
+            assertNotCancelled();
+            boolean timeoutSet = false;
+            if(deadline > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if(remaining <= 0) {
+                    throw new DeadlineExceededException(token, "before its statement ran");
+                }
+                statement.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000));
+                timeoutSet = true;
+            }
+            statements.add(statement);
+            return timeoutSet;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void unregister(Statement statement) {
+        lock.lock();
+        try {
+            statements.remove(statement);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void assertNotCancelled() throws SQLException {
+        if(cancelled) {
+            throw new SQLException("The query was cancelled.", CANCELLED_SQL_STATE);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package ai.libs.sqlrest.supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The open result of a query whose rows are fetched from the database while the result set is read.
+ * The statement stays open and the connection is marked as used until the cursor is closed,
+ * so it has to be closed once the rows are consumed, even if not all of them were.
+ */
+public class QueryCursor implements AutoCloseable {
+
+    private final static Logger logger = LoggerFactory.getLogger(QueryCursor.class);
+
+    private final StatementLease statement;
+
+    private final ResultSet resultSet;
+
+    private final BaseConnectionHandler connect;
+
+    private boolean closed = false;
+
+    QueryCursor(StatementLease statement, ResultSet resultSet, BaseConnectionHandler connect) {
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.connect = connect;
+    }
+
+    /**
+     * Returns the result set of the query.
+     */
+    public ResultSet getResultSet() {
+        return resultSet;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if(resultSet != null) {
+                // A reused statement stays open, so its result set is closed here.
+                resultSet.close();
+            }
+            statement.close();
+        } catch (SQLException e) {
+            logger.warn("An error occurred trying to close the statement of a query cursor.", e);
+        } finally {
+            connect.release();
+        }
+    }
+
+}
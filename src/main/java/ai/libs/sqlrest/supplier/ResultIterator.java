@@ -0,0 +1,40 @@
+package ai.libs.sqlrest.supplier;
+
+import org.api4.java.datastructure.kvstore.IKVStore;
+
+import java.util.Iterator;
+
+/**
+ * Iterates over the rows of a query result while they are fetched from the database.
+ * Like its cursor, the iterator has to be closed once the rows are consumed, even if not all of them were.
+ */
+public class ResultIterator implements Iterator<IKVStore>, AutoCloseable {
+
+    private final Iterator<IKVStore> rows;
+
+    private final QueryCursor cursor;
+
+    ResultIterator(Iterator<IKVStore> rows, QueryCursor cursor) {
+        this.rows = rows;
+        this.cursor = cursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !cursor.isClosed() && rows.hasNext();
+    }
+
+    @Override
+    public IKVStore next() {
+        if(cursor.isClosed()) {
+            throw new IllegalStateException("The result iterator is closed.");
+        }
+        return rows.next();
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+
+}
@@ -0,0 +1,98 @@
+package ai.libs.sqlrest.supplier;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A prepared statement of a connection handler that is used by a single operation until the lease is closed.
+ * Closing the lease hands a reused statement back to the cache of the connection instead of closing it.
+ * While leased, the statement can be cancelled by the {@link QueryCancellation} of the request that prepared it.
+ */
+class StatementLease implements AutoCloseable {
+
+    private final BaseConnectionHandler connect;
+
+    private final String sql;
+
+    private final boolean returnGeneratedKeys;
+
+    private final boolean reuse;
+
+    private final PreparedStatement statement;
+
+    private final QueryCancellation cancellation = QueryCancellation.current();
+
+    private boolean timeoutSet = false;
+
+    /*
+     * The fetch size of the statement before the lease changed it, -1 if it didn't.
+     */
+    private int previousFetchSize = -1;
+
+    StatementLease(BaseConnectionHandler connect, String sql, boolean returnGeneratedKeys, boolean reuse,
+                   PreparedStatement statement) {
+        this.connect = connect;
+        this.sql = sql;
+        this.returnGeneratedKeys = returnGeneratedKeys;
+        this.reuse = reuse;
+        this.statement = statement;
+    }
+
+    PreparedStatement getStatement() {
+        return statement;
+    }
+
+    /*
+     * Sets the fetch size of the statement for this lease, it is restored once the lease is closed.
+     */
+    void setFetchSize(int fetchSize) throws SQLException {
+        if(previousFetchSize < 0) {
+            previousFetchSize = statement.getFetchSize();
+        }
+        statement.setFetchSize(fetchSize);
+    }
+
+    /*
+     * Registers the statement with the cancellation of the request, if any.
+     * The lease is closed if the request was cancelled already.
+     */
+    StatementLease register() throws SQLException {
+        if(cancellation != null) {
+            try {
+                timeoutSet = cancellation.register(statement);
+            } catch (SQLException e) {
+                close();
+                throw e;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if(cancellation != null) {
+            cancellation.unregister(statement);
+        }
+        if(reuse && (timeoutSet || previousFetchSize >= 0)) {
+            // Neither the timeout of the request nor the fetch size of the lease apply to the next user of the statement.
+            try {
+                if(timeoutSet) {
+                    statement.setQueryTimeout(0);
+                }
+                if(previousFetchSize >= 0) {
+                    statement.setFetchSize(previousFetchSize);
+                }
+            } catch (SQLException e) {
+                statement.close();
+                return;
+            }
+        }
+        // A cancelled statement isn't reused, as the cancellation might still hit it.
+        if(reuse && (cancellation == null || !cancellation.isCancelled())) {
+            connect.checkin(sql, returnGeneratedKeys, statement);
+        } else {
+            statement.close();
+        }
+    }
+
+}
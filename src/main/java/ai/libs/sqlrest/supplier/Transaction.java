@@ -0,0 +1,148 @@
+package ai.libs.sqlrest.supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A transaction on the connection of an adapter, which is held exclusively until the transaction is closed,
+ * so that statements of other requests don't become part of it.
+ * The statements are committed by `commit`. Closing an uncommitted transaction rolls it back.
+ */
+public class Transaction implements AutoCloseable {
+
+    private final static Logger logger = LoggerFactory.getLogger(Transaction.class);
+
+    private final Connection connection;
+
+    private final BaseConnectionHandler connect;
+
+    private boolean committed = false;
+
+    private boolean closed = false;
+
+    Transaction(BaseConnectionHandler connect, long timeoutMillis) throws SQLException {
+        this.connect = connect;
+        this.connection = connect.acquireExclusive(timeoutMillis);
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException | RuntimeException e) {
+            connect.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Handles the result set of a query of the transaction, before the statement is closed.
+     */
+    public interface ResultSetHandler {
+        void handle(ResultSet resultSet) throws SQLException, IOException;
+    }
+
+    /**
+     * Runs the given statement and passes its result set to the handler.
+     * @param values The values of the placeholders of the statement, see {@link CustomDatabaseAdapter#setValue}.
+     * @return false if the statement has no result set, in which case the handler isn't called.
+     */
+    public boolean query(String sql, List<?> values, ResultSetHandler handler) throws SQLException, IOException {
+        assertOpen();
+        try (StatementLease statement = prepare(sql, values, false)) {
+            if(!statement.getStatement().execute()) {
+                return false;
+            }
+            try (ResultSet resultSet = statement.getStatement().getResultSet()) {
+                handler.handle(resultSet);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Runs the given statement as an update and returns the number of affected rows.
+     */
+    public int update(String sql, List<?> values) throws SQLException {
+        assertOpen();
+        try (StatementLease statement = prepare(sql, values, false)) {
+            return statement.getStatement().executeUpdate();
+        }
+    }
+
+    /**
+     * Runs the given insert statement and returns the row ids of the created entries.
+     */
+    public int[] insert(String sql, List<?> values) throws SQLException {
+        assertOpen();
+        try (StatementLease statement = prepare(sql, values, true)) {
+            statement.getStatement().executeUpdate();
+            List<Integer> generatedKeys = new ArrayList<>();
+            try (ResultSet rs = statement.getStatement().getGeneratedKeys()) {
+                while (rs.next()) {
+                    generatedKeys.add(rs.getInt(1));
+                }
+            }
+            return generatedKeys.stream().mapToInt(x -> x).toArray();
+        }
+    }
+
+    /*
+     * Statements with placeholders are reused, like the ones of the adapter.
+     */
+    private StatementLease prepare(String sql, List<?> values, boolean returnGeneratedKeys) throws SQLException {
+        StatementLease statement = connect.prepare(sql, returnGeneratedKeys, !values.isEmpty());
+        try {
+            for (int i = 1; i <= values.size(); i++) {
+                CustomDatabaseAdapter.setValue(statement.getStatement(), i, values.get(i - 1));
+            }
+        } catch (SQLException | RuntimeException e) {
+            statement.close();
+            throw e;
+        }
+        return statement;
+    }
+
+    public void commit() throws SQLException {
+        assertOpen();
+        connection.commit();
+        committed = true;
+    }
+
+    private void assertOpen() {
+        if(closed || committed) {
+            throw new IllegalStateException("The transaction is already " + (committed ? "committed." : "closed."));
+        }
+    }
+
+    /**
+     * Rolls back the transaction unless it was committed, and hands the connection back to the other users.
+     */
+    @Override
+    public void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if(!committed) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            // The state of the connection is unknown, so it is closed and opened again when it is used next.
+            logger.warn("Could not end a transaction, closing its connection.", e);
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // the connection is abandoned either way
+            }
+        } finally {
+            connect.release();
+        }
+    }
+
+}
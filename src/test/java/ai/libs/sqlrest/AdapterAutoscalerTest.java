@@ -0,0 +1,57 @@
+package ai.libs.sqlrest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdapterAutoscalerTest {
+
+    private static final TokenLoad.Window BUSY = new TokenLoad.Window(100, 200.0, 10, 6, 20.0);
+
+    private static final TokenLoad.Window IDLE = new TokenLoad.Window(10, 0.0, 1, 1, 5.0);
+
+    private static final TokenLoad.Window SATURATED = new TokenLoad.Window(100, 0.0, 1, 2, 5.0);
+
+    private static int decide(AdapterAutoscaler.TokenState state, int numAdapters, TokenLoad.Window window) {
+        return state.decide(numAdapters, window, 10.0, 1, 8, 50, 2, 3);
+    }
+
+    @Test
+    public void testScaleUpAfterConsecutiveBusyIntervals() {
+        AdapterAutoscaler.TokenState state = new AdapterAutoscaler.TokenState();
+        assertEquals(2, decide(state, 2, BUSY));
+        assertEquals(6, decide(state, 2, BUSY));
+    }
+
+    @Test
+    public void testScaleDownNeedsMoreIntervalsThanScaleUp() {
+        AdapterAutoscaler.TokenState state = new AdapterAutoscaler.TokenState();
+        assertEquals(4, decide(state, 4, IDLE));
+        assertEquals(4, decide(state, 4, IDLE));
+        assertEquals(3, decide(state, 4, IDLE));
+        assertEquals(3, decide(state, 3, IDLE));
+    }
+
+    @Test
+    public void testAlternatingLoadDoesNotFlap() {
+        AdapterAutoscaler.TokenState state = new AdapterAutoscaler.TokenState();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2, decide(state, 2, i % 2 == 0 ? BUSY : IDLE));
+        }
+        // All adapters busy with slower queries than the rest of the server counts as high load:
+        TokenLoad.Window slow = new TokenLoad.Window(100, 0.0, 1, 2, 50.0);
+        assertEquals(2, decide(state, 2, SATURATED));
+        assertEquals(2, decide(state, 2, slow));
+        assertEquals(3, decide(state, 2, slow));
+    }
+
+    @Test
+    public void testBoundsAreApplied() {
+        AdapterAutoscaler.TokenState state = new AdapterAutoscaler.TokenState();
+        assertEquals(8, decide(state, 12, SATURATED));
+        assertEquals(8, decide(state, 8, BUSY));
+        assertEquals(8, decide(state, 8, BUSY));
+        assertEquals(1, state.decide(1, IDLE, 10.0, 1, 8, 50, 2, 1));
+    }
+
+}
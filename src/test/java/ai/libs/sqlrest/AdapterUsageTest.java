@@ -0,0 +1,76 @@
+package ai.libs.sqlrest;
+
+import ai.libs.jaicore.db.IDatabaseAdapter;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class AdapterUsageTest {
+
+    private final Set<IDatabaseAdapter> closed = ConcurrentHashMap.newKeySet();
+
+    private IDatabaseAdapter createAdapter() {
+        return Fakes.adapter(adapter -> assertTrue("Adapter was closed twice.", closed.add(adapter)));
+    }
+
+    @Test
+    public void testRetiredAdapterIsClosedByLastRequest() {
+        IDatabaseAdapter adapter = createAdapter();
+        AdapterUsage usage = new AdapterUsage(adapter);
+        assertTrue(usage.tryUse());
+        assertTrue(usage.tryUse());
+        usage.retire(Long.MAX_VALUE);
+        assertFalse("A draining adapter must not accept requests.", usage.tryUse());
+        usage.release();
+        assertFalse(closed.contains(adapter));
+        usage.release();
+        assertTrue(closed.contains(adapter));
+    }
+
+    @Test
+    public void testUnusedAdapterIsClosedOnRetirement() {
+        IDatabaseAdapter adapter = createAdapter();
+        AdapterUsage usage = new AdapterUsage(adapter);
+        usage.retire(Long.MAX_VALUE);
+        assertTrue(closed.contains(adapter));
+    }
+
+    @Test
+    public void testOverdueAdapterIsClosed() {
+        IDatabaseAdapter adapter = createAdapter();
+        AdapterUsage usage = new AdapterUsage(adapter);
+        assertTrue(usage.tryUse());
+        usage.retire(1000);
+        usage.closeIfOverdue(999);
+        assertFalse(closed.contains(adapter));
+        usage.closeIfOverdue(1000);
+        assertTrue(closed.contains(adapter));
+        usage.release();
+    }
+
+    @Test
+    public void testShrinkingDrainsAdaptersInUse() {
+        TokenConnectionHandle handle = new TokenConnectionHandle("token");
+        ISLAdapterSupplier supplier = (host, user, password, database) -> createAdapter();
+        handle.scaleNumConnections(supplier, 2);
+        List<IDatabaseAdapter> adapters = handle.getCurrentAdapters();
+        IDatabaseAdapter inUse = adapters.get(0);
+        assertTrue(handle.tryUse(inUse));
+
+        handle.scaleNumConnections(supplier, 1);
+        assertFalse(handle.getCurrentAdapters().contains(inUse));
+        assertFalse(closed.contains(inUse));
+        assertEquals(1, handle.getNumDraining());
+        assertFalse(handle.tryUse(inUse));
+
+        handle.release(inUse);
+        assertTrue(closed.contains(inUse));
+        assertEquals(0, handle.getNumDraining());
+        assertTrue(handle.tryUse(handle.getCurrentAdapters().get(0)));
+    }
+
+}
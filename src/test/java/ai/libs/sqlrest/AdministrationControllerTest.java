@@ -0,0 +1,18 @@
+package ai.libs.sqlrest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdministrationControllerTest {
+
+    @Test
+    public void testPasswordOfNewUserIsRedacted() {
+        assertEquals("CREATE USER 'sqlrest_a'@'%' IDENTIFIED WITH caching_sha2_password BY '***'",
+                AdministrationController.redactPassword(
+                        "CREATE USER 'sqlrest_a'@'%' IDENTIFIED WITH caching_sha2_password BY 'f00ba4'"));
+        String grant = "GRANT USAGE ON *.* TO 'sqlrest_a'@'%'";
+        assertEquals(grant, AdministrationController.redactPassword(grant));
+    }
+
+}
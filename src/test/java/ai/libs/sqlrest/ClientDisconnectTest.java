@@ -0,0 +1,181 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.encoding.FakeResultSet;
+import ai.libs.sqlrest.supplier.CustomDatabaseAdapter;
+import ai.libs.sqlrest.supplier.QueryCancellation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.servlet.context.AnnotationConfigServletWebServerApplicationContext;
+import org.springframework.boot.web.servlet.server.ServletWebServerFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Closes the connections of clients to an embedded tomcat while the statements of their requests run, which read
+ * from fake result sets, and checks that the statements are cancelled.
+ */
+public class ClientDisconnectTest {
+
+    private static final String QUERY = "{\"token\":\"token\",\"query\":\"SELECT id, name FROM t\"}";
+
+    private final CountDownLatch executing = new CountDownLatch(1);
+
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    /*
+     * Whether the statements return endless rows instead of blocking until they are cancelled.
+     */
+    private volatile boolean endless = false;
+
+    private final QueryExecutors executors = TestQueryExecutors.create(2);
+
+    private final QueryJobs queryJobs = new QueryJobs(Executors.newSingleThreadExecutor(), 10, 60000,
+            1 << 20, System::currentTimeMillis);
+
+    private final QueryCancellations cancellations = new QueryCancellations();
+
+    private final CustomDatabaseAdapter adapter = new CustomDatabaseAdapter(Fakes.connections(this::createConnection),
+            null, "user", "passwd", "db");
+
+    private final AnnotationConfigServletWebServerApplicationContext context =
+            new AnnotationConfigServletWebServerApplicationContext();
+
+    @Configuration
+    @EnableWebMvc
+    static class WebConfiguration {
+    }
+
+    @Before
+    public void start() {
+        context.register(WebConfiguration.class);
+        context.registerBean(ServletWebServerFactory.class, () -> new TomcatServletWebServerFactory(0));
+        context.registerBean(DispatcherServlet.class);
+        context.registerBean(WebMvcConfigurer.class, () -> new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.registerDeferredResultInterceptors(cancellations);
+            }
+        });
+        context.registerBean(QueryController.class, () -> new QueryController(query -> new ClosableQuery(adapter, query),
+                new QueryRuntimeModel(), new ObjectMapper(), new StatementRegistry(), queryJobs, executors, cancellations));
+        context.refresh();
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        context.close();
+        executors.shutdown();
+        queryJobs.shutdown();
+        adapter.close();
+    }
+
+    private Connection createConnection() {
+        return Fakes.create(Connection.class, (connection, method, args) ->
+                method.getName().equals("prepareStatement") ? createStatement((Connection) connection) : null);
+    }
+
+    private PreparedStatement createStatement(Connection connection) {
+        return Fakes.create(PreparedStatement.class, (statement, method, args) -> {
+            switch (method.getName()) {
+                case "executeQuery":
+                    executing.countDown();
+                    if (endless) {
+                        return endlessRows();
+                    }
+                    cancelled.await(30, TimeUnit.SECONDS);
+                    throw new SQLException("Query execution was interrupted", QueryCancellation.CANCELLED_SQL_STATE);
+                case "cancel":
+                    cancelled.countDown();
+                    return null;
+                case "getConnection":
+                    return connection;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private ResultSet endlessRows() throws SQLException {
+        ResultSet row = FakeResultSet.create(new String[]{"id", "name"}, new int[]{Types.INTEGER, Types.VARCHAR},
+                new String[]{"INT", "VARCHAR"}, new Object[][]{{1, String.join("", Collections.nCopies(100, "a"))}});
+        row.next();
+        return Fakes.create(ResultSet.class, (resultSet, method, args) -> {
+            if (method.getName().equals("next")) {
+                if (cancelled.getCount() == 0) {
+                    throw new SQLException("Query execution was interrupted", QueryCancellation.CANCELLED_SQL_STATE);
+                }
+                return true;
+            }
+            try {
+                return method.invoke(row, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    /*
+     * Sends the query and closes the connection once its statement runs.
+     */
+    private void sendAndDisconnect(String path, String headers) throws Exception {
+        byte[] body = QUERY.getBytes(StandardCharsets.UTF_8);
+        try (Socket socket = new Socket("localhost", context.getWebServer().getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST " + path + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n" + headers
+                    + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+            assertTrue(executing.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /*
+     * Waits for the cancelled request to be counted, which happens after its statements were cancelled.
+     */
+    private Map<String, Long> awaitCancelledRequests() throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (cancellations.getStats().isEmpty() && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        return cancellations.getStats();
+    }
+
+    @Test
+    public void testQueryIsCancelledAtItsDeadline() throws Exception {
+        sendAndDisconnect("/query", "X-Request-Timeout: 1000\r\n");
+        assertTrue("The statement is cancelled.", cancelled.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonMap("token", 1L), awaitCancelledRequests());
+    }
+
+    @Test
+    public void testStreamedQueryIsCancelledOnceWritingFails() throws Exception {
+        endless = true;
+        sendAndDisconnect("/query/stream", "");
+        assertTrue("The statement is cancelled.", cancelled.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonMap("token", 1L), awaitCancelledRequests());
+    }
+
+}
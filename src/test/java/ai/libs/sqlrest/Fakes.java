@@ -0,0 +1,89 @@
+package ai.libs.sqlrest;
+
+import ai.libs.jaicore.db.IDatabaseAdapter;
+import ai.libs.sqlrest.supplier.DefaultConnectionSupplier;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Creates fakes of the adapter and JDBC interfaces for the tests. The fakes are proxies that are only equal to
+ * themselves. The handler answers all other methods, and its null results are turned into zero or false
+ * for methods with primitive results.
+ */
+public final class Fakes {
+
+    private Fakes() {
+    }
+
+    public static <T> T create(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(Fakes.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+                        return proxy == args[0];
+                    } else if (method.getName().equals("hashCode") && method.getParameterCount() == 0) {
+                        return System.identityHashCode(proxy);
+                    } else if (method.getName().equals("toString") && method.getParameterCount() == 0) {
+                        return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                    }
+                    Object result = handler.invoke(proxy, method, args);
+                    return result == null ? defaultValue(method.getReturnType()) : result;
+                }));
+    }
+
+    /**
+     * Returns the value of a field of the given type that wasn't assigned.
+     */
+    public static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == char.class) {
+            return '\0';
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns an adapter that does nothing but pass itself to the given consumer when it is closed.
+     */
+    public static IDatabaseAdapter adapter(Consumer<IDatabaseAdapter> onClose) {
+        return create(IDatabaseAdapter.class, (proxy, method, args) -> {
+            if (method.getName().equals("close")) {
+                onClose.accept((IDatabaseAdapter) proxy);
+            }
+            return null;
+        });
+    }
+
+    public static IDatabaseAdapter adapter() {
+        return adapter(adapter -> { });
+    }
+
+    /**
+     * Returns a supplier that hands out the given connections for any host and database.
+     */
+    public static DefaultConnectionSupplier connections(Supplier<Connection> connections) {
+        return new DefaultConnectionSupplier() {
+            @Override
+            public Connection get(String host, String user, String password, String database) {
+                return connections.get();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,210 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.encoding.FakeResultSet;
+import ai.libs.sqlrest.encoding.JsonRowsWriter;
+import ai.libs.sqlrest.model.QueryJobStatus;
+import ai.libs.sqlrest.model.SQLQuery;
+import ai.libs.sqlrest.supplier.CustomDatabaseAdapter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Sends queries to the {@link QueryController}, whose adapter reads the rows from fake result sets.
+ */
+public class QueryControllerTest {
+
+    private static final String QUERY = "{\"token\":\"token\",\"query\":\"SELECT id, name FROM t\"}";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicInteger numConnectionsClosed = new AtomicInteger(0);
+
+    /*
+     * The SQL of the queries that requested a connection.
+     */
+    private final List<String> requested = Collections.synchronizedList(new ArrayList<>());
+
+    /*
+     * The query timeouts of the statements in seconds, in the order they were set, but not their resets to 0.
+     */
+    private final List<Integer> queryTimeouts = Collections.synchronizedList(new ArrayList<>());
+
+    private final QueryExecutors executors = TestQueryExecutors.create(2);
+
+    private final QueryJobs queryJobs = new QueryJobs(Executors.newSingleThreadExecutor(), 10, 60000,
+            1 << 20, System::currentTimeMillis);
+
+    private final CustomDatabaseAdapter adapter = new CustomDatabaseAdapter(Fakes.connections(this::createConnection),
+            null, "user", "passwd", "db");
+
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(new QueryController(query -> {
+                requested.add(query.getQuery());
+                ClosableQuery access = new ClosableQuery(adapter, query);
+                access.addCloseHook(c -> numConnectionsClosed.incrementAndGet());
+                return access;
+            }, new QueryRuntimeModel(), mapper, new StatementRegistry(), queryJobs, executors, new QueryCancellations()))
+            .build();
+
+    @After
+    public void shutdown() throws Exception {
+        executors.shutdown();
+        queryJobs.shutdown();
+        adapter.close();
+    }
+
+    private Connection createConnection() {
+        return Fakes.create(Connection.class, (connection, method, args) -> method.getName().equals("prepareStatement")
+                ? createStatement((Connection) connection, (String) args[0]) : null);
+    }
+
+    /*
+     * Statements on the table missing fail.
+     */
+    private PreparedStatement createStatement(Connection connection, String sql) {
+        return Fakes.create(PreparedStatement.class, (statement, method, args) -> {
+            if (sql.contains("missing") && method.getName().startsWith("execute")) {
+                throw new SQLException("Table 'db.missing' doesn't exist", "42S02");
+            }
+            switch (method.getName()) {
+                case "executeUpdate":
+                    return 1;
+                case "executeQuery":
+                    return FakeResultSet.create(new String[]{"id", "name"}, new int[]{Types.INTEGER, Types.VARCHAR},
+                            new String[]{"INT", "VARCHAR"}, new Object[][]{{1, "a"}, {2, "b"}});
+                case "getGeneratedKeys":
+                    return FakeResultSet.create(new String[]{"id"}, new int[]{Types.INTEGER}, new String[]{"INT"},
+                            new Object[][]{{1}, {2}});
+                case "setQueryTimeout":
+                    if ((Integer) args[0] > 0) {
+                        queryTimeouts.add((Integer) args[0]);
+                    }
+                    return null;
+                case "getConnection":
+                    return connection;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private String send(String path, MediaType accept) throws Exception {
+        MvcResult result = mvc.perform(post(path).contentType(MediaType.APPLICATION_JSON).accept(accept).content(QUERY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(accept))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Test
+    public void testRowsOfQueryAreAJsonArray() throws Exception {
+        assertEquals("[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]", send("/query", MediaType.APPLICATION_JSON));
+        assertEquals("The connection is released once the rows are written.", 1, numConnectionsClosed.get());
+    }
+
+    @Test
+    public void testStreamedRowsAreAJsonArray() throws Exception {
+        assertEquals("[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]",
+                send("/query/stream", MediaType.APPLICATION_JSON));
+        assertEquals("The connection is released once the rows are streamed.", 1, numConnectionsClosed.get());
+    }
+
+    @Test
+    public void testStreamedRowsAreNewlineDelimitedJsonIfAccepted() throws Exception {
+        assertEquals("{\"id\":1,\"name\":\"a\"}\n{\"id\":2,\"name\":\"b\"}\n",
+                send("/query", MediaType.parseMediaType(JsonRowsWriter.APPLICATION_NDJSON_VALUE)));
+        assertEquals(1, numConnectionsClosed.get());
+    }
+
+    @Test
+    public void testBulkInsertAndAsynchronousQueryTimeOutAtTheirDeadline() throws Exception {
+        mvc.perform(post("/insert/bulk").param("token", "token").param("table", "t")
+                .contentType(MediaType.APPLICATION_JSON).header(SQLQuery.TIMEOUT_HEADER, "60000")
+                .content("{\"columns\":[\"id\",\"name\"],\"rows\":[[1,\"a\"],[2,\"b\"]]}"))
+                .andExpect(status().isOk());
+        assertEquals("The statement times out at the deadline.", Collections.singletonList(60), queryTimeouts);
+        assertEquals(Collections.singletonList("INSERT INTO t (id, name)"), requested);
+        assertEquals(1, numConnectionsClosed.get());
+
+        String status = mvc.perform(post("/query/async").contentType(MediaType.APPLICATION_JSON)
+                .header(SQLQuery.TIMEOUT_HEADER, "30000").content(QUERY))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        QueryJobs.Job job = queryJobs.get(mapper.readTree(status).get("id").asText());
+        assertEquals(QueryJobStatus.State.DONE, job.getCompletion().get(5, TimeUnit.SECONDS).getState());
+        assertEquals(Arrays.asList(60, 30), queryTimeouts);
+    }
+
+    @Test
+    public void testInvalidRequestTimeoutOfBulkInsertIsRejected() throws Exception {
+        mvc.perform(post("/insert/bulk").param("token", "token").param("table", "t")
+                .contentType(MediaType.APPLICATION_JSON).header(SQLQuery.TIMEOUT_HEADER, "soon")
+                .content("{\"columns\":[\"id\"],\"rows\":[[1]]}"))
+                .andExpect(status().isBadRequest());
+        assertEquals("The rows aren't inserted.", 0, numConnectionsClosed.get());
+    }
+
+    private static String batch(boolean stopOnError) {
+        return "{\"token\":\"token\",\"stopOnError\":" + stopOnError + ",\"statements\":["
+                + "{\"type\":\"update\",\"query\":\"UPDATE t SET name = 'x'\"},"
+                + "{\"type\":\"update\",\"query\":\"UPDATE missing SET name = 'x'\"},"
+                + "{\"type\":\"query\",\"query\":\"SELECT id, name FROM t\"}]}";
+    }
+
+    private JsonNode sendBatch(String batch) throws Exception {
+        MvcResult result = mvc.perform(post("/batch").contentType(MediaType.APPLICATION_JSON).content(batch))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mapper.readTree(mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    @Test
+    public void testFailedStatementOfBatchHasAnErrorResult() throws Exception {
+        JsonNode results = sendBatch(batch(false));
+        assertEquals(3, results.size());
+        assertEquals(mapper.readTree("{\"updateCount\":1}"), results.get(0));
+        assertEquals(mapper.readTree("{\"error\":\"Table 'db.missing' doesn't exist\"}"), results.get(1));
+        assertEquals("The statements after the failed one run.",
+                mapper.readTree("{\"rows\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]}"), results.get(2));
+        assertEquals("The batch uses one connection.", 1, numConnectionsClosed.get());
+    }
+
+    @Test
+    public void testBatchStopsAfterTheFirstFailureIfRequested() throws Exception {
+        JsonNode results = sendBatch(batch(true));
+        assertEquals(3, results.size());
+        assertEquals(1, results.get(0).get("updateCount").asInt());
+        assertEquals("Table 'db.missing' doesn't exist", results.get(1).get("error").asText());
+        assertEquals("Skipped after a previous statement failed.", results.get(2).get("error").asText());
+        assertFalse(results.get(2).has("rows"));
+    }
+
+}
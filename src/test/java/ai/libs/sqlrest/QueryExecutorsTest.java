@@ -0,0 +1,120 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.model.RequestQueueFullException;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class QueryExecutorsTest {
+
+    private QueryExecutors executors;
+
+    @After
+    public void shutdown() {
+        if(executors != null) {
+            executors.shutdown();
+        }
+    }
+
+    @Test
+    public void testRequestsBeyondTheQueueAreRejected() throws Exception {
+        executors = new QueryExecutors(1, 1, "abort", false);
+        assertRequestsBeyondTheQueueAreRejected();
+    }
+
+    @Test
+    public void testVirtualThreadsAreLimitedLikeTheExecutors() throws Exception {
+        Assume.assumeTrue("Virtual threads require Java 21.", VirtualThreads.isAvailable());
+        executors = new QueryExecutors(1, 1, "abort", true);
+        assertRequestsBeyondTheQueueAreRejected();
+    }
+
+    private void assertRequestsBeyondTheQueueAreRejected() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<String> first = executors.submit("a", () -> {
+            running.countDown();
+            blocked.await();
+            return "first";
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = executors.submit("a", () -> "queued");
+        try {
+            executors.submit("a", () -> "rejected");
+            fail("The queue of the token is full.");
+        } catch (RequestQueueFullException expected) {
+            // rejected
+        }
+        assertEquals("Other tokens have their own threads.", "b",
+                executors.submit("b", () -> "b").get(5, TimeUnit.SECONDS));
+        assertEquals(2, executors.getNumPending("a"));
+
+        blocked.countDown();
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRequestsBeyondTheQueueRunOnTheCallerIfConfigured() throws Exception {
+        executors = new QueryExecutors(1, 1, "callerRuns", false);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        executors.submit("a", () -> {
+            running.countDown();
+            blocked.await();
+            return null;
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        executors.submit("a", () -> null);
+        Thread caller = Thread.currentThread();
+        CompletableFuture<Thread> overflow = executors.submit("a", Thread::currentThread);
+        assertSame(caller, overflow.getNow(null));
+        blocked.countDown();
+
+        CompletableFuture<Object> failed = executors.submit("a", () -> {
+            throw new SQLException("failed");
+        });
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail("The call failed.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+    }
+
+    @Test
+    public void testExecutorsOfIdleTokensAreRemoved() throws Exception {
+        executors = new QueryExecutors(1, 1, "abort", false, 10);
+        assertIdleTokensAreRemoved();
+    }
+
+    @Test
+    public void testGatesOfIdleTokensAreRemoved() throws Exception {
+        Assume.assumeTrue("Virtual threads require Java 21.", VirtualThreads.isAvailable());
+        executors = new QueryExecutors(1, 1, "abort", true, 10);
+        assertIdleTokensAreRemoved();
+    }
+
+    private void assertIdleTokensAreRemoved() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            String token = "token-" + i;
+            assertEquals(token, executors.submit(token, () -> token).get(5, TimeUnit.SECONDS));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while(executors.getNumTokens() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("The tokens without requests have no executors anymore.", 0, executors.getNumTokens());
+        assertEquals("A removed token gets a new executor.", "again",
+                executors.submit("token-0", () -> "again").get(5, TimeUnit.SECONDS));
+    }
+
+}
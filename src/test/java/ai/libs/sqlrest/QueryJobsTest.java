@@ -0,0 +1,153 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.model.QueryJobStatus;
+import ai.libs.sqlrest.model.TooManyQueryJobsException;
+import ai.libs.sqlrest.supplier.QueryCancellation;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class QueryJobsTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static byte[] rows(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testNumberOfJobsPerTokenIsLimited() throws Exception {
+        QueryJobs jobs = new QueryJobs(executor, 2, 1000, 1000, now::get);
+        CountDownLatch blocked = new CountDownLatch(1);
+        QueryJobs.Job first = jobs.submit("a", new QueryCancellation(), () -> {
+            blocked.await();
+            return rows("[]");
+        });
+        jobs.submit("a", new QueryCancellation(), () -> {
+            blocked.await();
+            return rows("[]");
+        });
+        try {
+            jobs.submit("a", new QueryCancellation(), () -> rows("[]"));
+            fail("The token has the maximum number of jobs running.");
+        } catch (TooManyQueryJobsException expected) {
+            // limit reached
+        }
+        QueryJobs.Job other = jobs.submit("b", new QueryCancellation(), () -> rows("[{\"x\":1}]"));
+        assertArrayEquals(rows("[{\"x\":1}]"), other.getCompletion().get(5, TimeUnit.SECONDS).getResult());
+
+        blocked.countDown();
+        assertEquals(QueryJobStatus.State.DONE, first.getCompletion().get(5, TimeUnit.SECONDS).getState());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, jobs.getNumActiveJobs("a"));
+    }
+
+    @Test
+    public void testResultsAreDroppedAfterTheirTtlOrIfTheyExceedTheLimit() throws Exception {
+        QueryJobs jobs = new QueryJobs(executor, 10, 1000, 10, now::get);
+        QueryJobs.Job first = jobs.submit("a", new QueryCancellation(), () -> rows("[1,2]"));
+        first.getCompletion().get(5, TimeUnit.SECONDS);
+        now.set(500);
+        QueryJobs.Job second = jobs.submit("a", new QueryCancellation(), () -> rows("[3,4]"));
+        second.getCompletion().get(5, TimeUnit.SECONDS);
+        assertSame(first, jobs.get(first.getId()));
+
+        now.set(1000);
+        assertNull("The ttl of the first result is over.", jobs.get(first.getId()));
+        jobs.evictExpired();
+        assertSame(second, jobs.get(second.getId()));
+
+        QueryJobs.Job third = jobs.submit("a", new QueryCancellation(), () -> rows("[5,6,7]"));
+        third.getCompletion().get(5, TimeUnit.SECONDS);
+        assertNull("The oldest result is dropped to stay within the limit.", jobs.get(second.getId()));
+        assertArrayEquals(rows("[5,6,7]"), jobs.get(third.getId()).getResult());
+
+        QueryJobs.Job tooLarge = jobs.submit("a", new QueryCancellation(), () -> rows("[1,2,3,4,5,6]"));
+        assertEquals(QueryJobStatus.State.FAILED, tooLarge.getCompletion().get(5, TimeUnit.SECONDS).getState());
+        assertTrue(jobs.remove(third.getId()));
+        assertNull(jobs.get(third.getId()));
+    }
+
+    @Test
+    public void testRunningJobIsCancelledIfRemoved() throws Exception {
+        QueryJobs jobs = new QueryJobs(executor, 1, 1000, 1000, now::get);
+        QueryCancellation cancellation = new QueryCancellation();
+        CountDownLatch running = new CountDownLatch(1);
+        QueryJobs.Job job = jobs.submit("a", cancellation, () -> {
+            running.countDown();
+            // Like a statement, the query doesn't stop if its thread is interrupted.
+            while (!cancellation.isCancelled()) {
+                Thread.yield();
+            }
+            throw new SQLException("The query was cancelled.", QueryCancellation.CANCELLED_SQL_STATE);
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertTrue(jobs.remove(job.getId()));
+        assertTrue(cancellation.isCancelled());
+        assertEquals(QueryJobStatus.State.CANCELLED, job.getState());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, jobs.getNumActiveJobs("a"));
+    }
+
+    @Test
+    public void testJobRemovedWhileItStartsIsReleasedOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch removed = new CountDownLatch(1);
+        // Holds the task after it started, but before the job is run, so that it is removed in between.
+        ExecutorService starting = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+                return super.newTaskFor(() -> {
+                    started.countDown();
+                    try {
+                        removed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    runnable.run();
+                }, value);
+            }
+        };
+        try {
+            QueryJobs jobs = new QueryJobs(starting, 1, 1000, 1000, now::get);
+            AtomicBoolean ran = new AtomicBoolean(false);
+            QueryJobs.Job job = jobs.submit("a", new QueryCancellation(), () -> {
+                ran.set(true);
+                return rows("[]");
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(jobs.remove(job.getId()));
+            assertEquals(QueryJobStatus.State.CANCELLED, job.getState());
+            removed.countDown();
+            starting.shutdown();
+            assertTrue(starting.awaitTermination(5, TimeUnit.SECONDS));
+            assertFalse("A removed job doesn't run.", ran.get());
+            assertEquals(0, jobs.getNumActiveJobs("a"));
+        } finally {
+            starting.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package ai.libs.sqlrest;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ReplicaRouterTest {
+
+    private final Map<String, Long> lags = new HashMap<>();
+
+    private final Set<String> unreachable = new HashSet<>();
+
+    private ReplicaRouter createRouter(String routing) {
+        return new ReplicaRouter(Arrays.asList("r1", "r2", "r3"), routing, 10, host -> {
+            if(!lags.containsKey(host)) {
+                throw new SQLException("Connection refused");
+            }
+            return lags.get(host);
+        }, host -> !unreachable.contains(host));
+    }
+
+    @Test
+    public void testRoundRobinSkipsLaggingReplicas() {
+        lags.put("r1", 0L);
+        lags.put("r2", 11L);
+        lags.put("r3", 10L);
+        ReplicaRouter router = createRouter("roundRobin");
+        router.checkLag();
+        assertEquals("r1", router.route());
+        assertEquals("r3", router.route());
+        assertEquals("r1", router.route());
+
+        lags.put("r2", 0L);
+        router.checkLag();
+        Set<String> routed = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            routed.add(router.route());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("r1", "r2", "r3")), routed);
+    }
+
+    @Test
+    public void testLeastLoadedPicksReplicaWithFewestQueries() {
+        lags.put("r1", 0L);
+        lags.put("r2", 0L);
+        lags.put("r3", 0L);
+        ReplicaRouter router = createRouter("leastLoaded");
+        router.checkLag();
+        assertEquals("r1", router.route());
+        assertEquals("r2", router.route());
+        assertEquals("r3", router.route());
+        router.release("r2");
+        assertEquals("r2", router.route());
+        unreachable.add("r1");
+        router.release("r1");
+        assertNotEquals("Replicas with an open breaker are skipped.", "r1", router.route());
+    }
+
+    @Test
+    public void testFallsBackToPrimary() {
+        lags.put("r1", 100L);
+        lags.put("r2", null);
+        ReplicaRouter router = createRouter("roundRobin");
+        router.checkLag();
+        assertNull(router.route());
+        assertEquals(true, router.getState().get("r3").get("excluded"));
+    }
+
+}
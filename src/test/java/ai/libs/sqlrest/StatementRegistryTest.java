@@ -0,0 +1,44 @@
+package ai.libs.sqlrest;
+
+import ai.libs.sqlrest.model.SQLStatement;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StatementRegistryTest {
+
+    private final StatementRegistry registry = new StatementRegistry(2);
+
+    @Test
+    public void testStatementsAreRegisteredPerToken() {
+        long select = registry.register("a", new SQLStatement(SQLStatement.Type.QUERY, "SELECT * FROM t WHERE id = ?"));
+        long update = registry.register("a", new SQLStatement(SQLStatement.Type.UPDATE, "UPDATE t SET x = ? WHERE id = ?"));
+        assertNotEquals(select, update);
+        assertEquals("The same statement has the same handle.", select,
+                registry.register("a", new SQLStatement(SQLStatement.Type.QUERY, "SELECT * FROM t WHERE id = ?")));
+        assertEquals(SQLStatement.Type.UPDATE, registry.get("a", update).getType());
+        try {
+            registry.get("b", select);
+            fail("Handles belong to their token.");
+        } catch (IllegalArgumentException expected) {
+            // the statement of another token
+        }
+    }
+
+    @Test
+    public void testNumberOfStatementsIsLimited() {
+        registry.register("a", new SQLStatement(SQLStatement.Type.QUERY, "SELECT 1"));
+        long second = registry.register("a", new SQLStatement(SQLStatement.Type.QUERY, "SELECT 2"));
+        try {
+            registry.register("a", new SQLStatement(SQLStatement.Type.QUERY, "SELECT 3"));
+            fail("The token has the maximum number of statements.");
+        } catch (IllegalStateException expected) {
+            // limit reached
+        }
+        assertTrue(registry.release("a", second));
+        assertFalse(registry.release("a", second));
+        registry.register("a", new SQLStatement(SQLStatement.Type.QUERY, "SELECT 3"));
+        assertEquals(2, registry.getNumStatements("a"));
+    }
+
+}
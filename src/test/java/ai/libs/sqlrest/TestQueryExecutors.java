@@ -0,0 +1,12 @@
+package ai.libs.sqlrest;
+
+/**
+ * Creates query executors for the tests of other packages, which don't depend on the server configuration.
+ */
+public class TestQueryExecutors {
+
+    public static QueryExecutors create(int numThreads) {
+        return new QueryExecutors(numThreads, 100, "abort", false);
+    }
+
+}
@@ -0,0 +1,79 @@
+package ai.libs.sqlrest;
+
+import ai.libs.jaicore.db.IDatabaseAdapter;
+import org.junit.Test;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TokenAdapterPoolTest {
+
+    private final AtomicInteger created = new AtomicInteger(0);
+
+    private final AtomicInteger closed = new AtomicInteger(0);
+
+    private IDatabaseAdapter createAdapter() {
+        created.incrementAndGet();
+        return Fakes.adapter(adapter -> closed.incrementAndGet());
+    }
+
+    @Test
+    public void testBorrowIsBoundedByMaxSize() throws Exception {
+        TokenAdapterPool pool = new TokenAdapterPool(this::createAdapter, 0, 2, 60000, 60000, 1);
+        IDatabaseAdapter first = pool.borrow(10);
+        IDatabaseAdapter second = pool.borrow(10);
+        assertNotSame(first, second);
+        assertEquals(2, pool.getNumBorrowed());
+        try {
+            pool.borrow(10);
+            fail("Borrowing from an exhausted pool should time out.");
+        } catch (SQLTransientConnectionException expected) {
+            // the pool is exhausted
+        }
+        pool.giveBack(first);
+        assertSame(first, pool.borrow(10));
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testDiscardedAdapterIsClosedAndReplaced() throws Exception {
+        TokenAdapterPool pool = new TokenAdapterPool(this::createAdapter, 0, 1, 60000, 60000, 1);
+        IDatabaseAdapter broken = pool.borrow(10);
+        pool.discardBorrowed(broken);
+        assertEquals(1, closed.get());
+        assertEquals(0, pool.getNumAdapters());
+        assertEquals(0, pool.getNumBorrowed());
+        IDatabaseAdapter replacement = pool.borrow(10);
+        assertNotSame("A discarded adapter isn't borrowed again.", broken, replacement);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testMaintainEvictsIdleAndKeepsMinIdle() throws Exception {
+        TokenAdapterPool pool = new TokenAdapterPool(this::createAdapter, 1, 4, 0, 60000, 1);
+        IDatabaseAdapter first = pool.borrow(10);
+        IDatabaseAdapter second = pool.borrow(10);
+        pool.giveBack(first);
+        pool.giveBack(second);
+        assertEquals(2, pool.getNumIdle());
+        Thread.sleep(5);
+        pool.maintain();
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(1, pool.getNumAdapters());
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    public void testMaintainOpensMinIdleAdapters() {
+        TokenAdapterPool pool = new TokenAdapterPool(this::createAdapter, 3, 4, 60000, 60000, 1);
+        pool.maintain();
+        assertEquals(3, pool.getNumIdle());
+        assertEquals(3, created.get());
+        pool.close();
+        assertEquals(0, pool.getNumAdapters());
+        assertEquals(3, closed.get());
+    }
+
+}
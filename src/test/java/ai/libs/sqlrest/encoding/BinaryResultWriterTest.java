@@ -0,0 +1,56 @@
+package ai.libs.sqlrest.encoding;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BinaryResultWriterTest {
+
+    private static byte[] write(ResultSet resultSet) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryResultWriter().write(resultSet, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testEncoding() throws Exception {
+        ResultSet resultSet = FakeResultSet.create(new String[]{"id", "x", "t", "s"},
+                new int[]{Types.INTEGER, Types.DOUBLE, Types.TIMESTAMP, Types.VARCHAR},
+                new String[]{"INT", "DOUBLE", "DATETIME", "VARCHAR"},
+                new Object[][]{{-1, 1.5, new Timestamp(64), "\u00e4"}, {300, null, null, null}});
+        byte[] expected = {
+                'S', 'Q', 'L', 'R', 1, 4,
+                2, 'i', 'd', BinaryResultWriter.TYPE_LONG,
+                1, 'x', BinaryResultWriter.TYPE_DOUBLE,
+                1, 't', BinaryResultWriter.TYPE_TIMESTAMP,
+                1, 's', BinaryResultWriter.TYPE_STRING,
+                // -1 zig-zag encoded, 1.5 as IEEE 754, 64 zig-zag encoded, "\u00e4" as UTF-8
+                1, 0, 1, 0x3F, (byte) 0xF8, 0, 0, 0, 0, 0, 0, (byte) 0x80, 1, 2, (byte) 0xC3, (byte) 0xA4,
+                // 300 zig-zag encoded is 600, as varint 0xD8 0x04
+                1, 0b1110, (byte) 0xD8, 0x04,
+                0
+        };
+        assertArrayEquals(expected, write(resultSet));
+    }
+
+    @Test
+    public void testReaderDecodesRows() throws Exception {
+        ResultSet resultSet = FakeResultSet.create(new String[]{"id", "t", "s"},
+                new int[]{Types.INTEGER, Types.TIMESTAMP, Types.VARCHAR}, new String[]{"INT", "DATETIME", "VARCHAR"},
+                new Object[][]{{-1, new Timestamp(64), "a"}, {300, null, null}});
+        BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(write(resultSet)));
+        assertEquals(Arrays.asList("id", "t", "s"), reader.getColumnNames());
+        assertArrayEquals(new Object[]{-1L, new Timestamp(64), "a"}, reader.nextRow());
+        assertArrayEquals(new Object[]{300L, null, null}, reader.nextRow());
+        assertNull(reader.nextRow());
+        assertNull(reader.nextRow());
+    }
+
+}
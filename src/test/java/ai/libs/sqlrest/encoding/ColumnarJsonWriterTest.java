@@ -0,0 +1,64 @@
+package ai.libs.sqlrest.encoding;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ColumnarJsonWriterTest {
+
+    private static ResultSet createResultSet(String[] names, String[] types, Object[][] rows) {
+        return FakeResultSet.create(names, new int[names.length], types, rows);
+    }
+
+    @Test
+    public void testColumnsAreWrittenOnce() throws Exception {
+        ResultSet resultSet = createResultSet(new String[]{"id", "name"}, new String[]{"INT", "VARCHAR"},
+                new Object[][]{{1, "a"}, {2, null}});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ColumnarJsonWriter(new ObjectMapper()).write(resultSet, out);
+        assertEquals("{\"columns\":[{\"name\":\"id\",\"type\":\"INT\"},{\"name\":\"name\",\"type\":\"VARCHAR\"}]," +
+                "\"rows\":[[1,\"a\"],[2,null]]}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEmptyResult() throws Exception {
+        ResultSet resultSet = createResultSet(new String[]{"id"}, new String[]{"INT"}, new Object[0][]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ColumnarJsonWriter(new ObjectMapper()).write(resultSet, out);
+        assertEquals("{\"columns\":[{\"name\":\"id\",\"type\":\"INT\"}],\"rows\":[]}",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReaderDecodesRows() throws Exception {
+        ResultSet resultSet = createResultSet(new String[]{"id", "name"}, new String[]{"INT", "VARCHAR"},
+                new Object[][]{{1, "a"}, {2, null}});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ColumnarJsonWriter(new ObjectMapper()).write(resultSet, out);
+        RowReader reader = new ColumnarJsonReader(new JsonFactory(), new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(Arrays.asList("id", "name"), reader.getColumnNames());
+        assertArrayEquals(new Object[]{1, "a"}, reader.nextRow());
+        assertArrayEquals(new Object[]{2, null}, reader.nextRow());
+        assertNull(reader.nextRow());
+
+        reader = new ColumnarJsonReader(new JsonFactory(), new ByteArrayInputStream(
+                "{\"columns\":[\"x\",\"y\"],\"rows\":[[true,1.5],[1]]}".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(new Object[]{true, 1.5}, reader.nextRow());
+        try {
+            reader.nextRow();
+            fail("The row lacks a value.");
+        } catch (IOException expected) {
+            // malformed row
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package ai.libs.sqlrest.encoding;
+
+import ai.libs.sqlrest.Fakes;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+
+/**
+ * Creates result sets over the given rows for testing the writers and the streamed rows.
+ */
+public class FakeResultSet {
+
+    public static ResultSet create(String[] names, int[] types, String[] typeNames, Object[][] rows) {
+        ResultSetMetaData metaData = Fakes.create(ResultSetMetaData.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return names.length;
+                case "getColumnLabel":
+                case "getColumnName":
+                    return names[(int) args[0] - 1];
+                case "getColumnType":
+                    return types[(int) args[0] - 1];
+                case "getColumnTypeName":
+                    return typeNames[(int) args[0] - 1];
+                case "isSigned":
+                    return true;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        int[] cursor = {-1};
+        Object[] last = {null};
+        return Fakes.create(ResultSet.class, (proxy, method, args) -> {
+            if (method.getName().equals("getMetaData")) {
+                return metaData;
+            } else if (method.getName().equals("next")) {
+                return ++cursor[0] < rows.length;
+            } else if (method.getName().equals("close")) {
+                return null;
+            } else if (method.getName().equals("wasNull")) {
+                return last[0] == null;
+            } else if (!method.getName().startsWith("get")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            Object value = rows[cursor[0]][(int) args[0] - 1];
+            last[0] = value;
+            switch (method.getName()) {
+                case "getLong":
+                    return value == null ? 0L : ((Number) value).longValue();
+                case "getInt":
+                    return value == null ? 0 : ((Number) value).intValue();
+                case "getFloat":
+                    return value == null ? 0.0f : ((Number) value).floatValue();
+                case "getDouble":
+                    return value == null ? 0.0 : ((Number) value).doubleValue();
+                case "getBoolean":
+                    return value != null && (Boolean) value;
+                case "getString":
+                    return value == null ? null : value.toString();
+                case "getBigDecimal":
+                    return value == null ? null : new BigDecimal(value.toString());
+                case "getTimestamp":
+                    return (Timestamp) value;
+                default:
+                    return value;
+            }
+        });
+    }
+
+}
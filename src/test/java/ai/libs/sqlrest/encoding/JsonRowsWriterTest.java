@@ -0,0 +1,40 @@
+package ai.libs.sqlrest.encoding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Types;
+
+import static org.junit.Assert.*;
+
+public class JsonRowsWriterTest {
+
+    private static ResultSet createResultSet(Object[][] rows) {
+        return FakeResultSet.create(new String[]{"id", "name"}, new int[]{Types.INTEGER, Types.VARCHAR},
+                new String[]{"INT", "VARCHAR"}, rows);
+    }
+
+    private static String write(ResultSet resultSet, boolean ndjson) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JsonRowsWriter(new ObjectMapper(), ndjson).write(resultSet, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRowsAreAJsonArray() throws Exception {
+        assertEquals("[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":null}]",
+                write(createResultSet(new Object[][]{{1, "a"}, {2, null}}), false));
+        assertEquals("[]", write(createResultSet(new Object[0][]), false));
+    }
+
+    @Test
+    public void testRowsAreNewlineDelimitedJson() throws Exception {
+        assertEquals("{\"id\":1,\"name\":\"a\"}\n{\"id\":2,\"name\":null}\n{\"id\":3,\"name\":\"c\"}\n",
+                write(createResultSet(new Object[][]{{1, "a"}, {2, null}, {3, "c"}}), true));
+        assertEquals("", write(createResultSet(new Object[0][]), true));
+    }
+
+}
@@ -0,0 +1,43 @@
+package ai.libs.sqlrest.encoding;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ResultSetJsonSerializerTest {
+
+    @Test
+    public void testRowsAreWrittenLikeTheirMaps() throws Exception {
+        String[] names = {"id", "score", "ratio", "name", "done", "created"};
+        int[] types = {Types.INTEGER, Types.REAL, Types.DOUBLE, Types.VARCHAR, Types.BOOLEAN, Types.TIMESTAMP};
+        Object[][] rows = {
+                {7, 0.1f, 0.25, "a\"b", true, new Timestamp(1000L)},
+                {null, null, null, null, null, null}
+        };
+        ResultSet resultSet = FakeResultSet.create(names, types, new String[names.length], rows);
+        ObjectMapper mapper = new ObjectMapper();
+        ResultSetJsonSerializer serializer = new ResultSetJsonSerializer(mapper, resultSet.getMetaData());
+        for (Object[] row : rows) {
+            assertTrue(resultSet.next());
+            StringWriter json = new StringWriter();
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(json)) {
+                serializer.writeObject(resultSet, generator);
+            }
+            Map<String, Object> expected = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                expected.put(names[i], row[i]);
+            }
+            assertEquals(mapper.readTree(mapper.writeValueAsString(expected)), mapper.readTree(json.toString()));
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package ai.libs.sqlrest.interceptors;
+
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.IQueryInterceptor;
+import ai.libs.sqlrest.model.DeadlineExceededException;
+import ai.libs.sqlrest.model.InvalidRequestTimeoutException;
+import ai.libs.sqlrest.model.SQLQuery;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DeadlineTest {
+
+    private final AtomicInteger numRequested = new AtomicInteger(0);
+
+    private final AtomicInteger numClosed = new AtomicInteger(0);
+
+    private final IQueryInterceptor arbiter = query -> {
+        numRequested.incrementAndGet();
+        ClosableQuery access = new ClosableQuery(null, query);
+        access.addCloseHook(c -> numClosed.incrementAndGet());
+        return access;
+    };
+
+    private static SQLQuery query(long timeout) {
+        SQLQuery query = new SQLQuery("token", "SELECT 1");
+        if(timeout >= 0) {
+            query.setTimeout(timeout);
+        }
+        return query;
+    }
+
+    @Test
+    public void testAccessIsAwaitedUntilTheDeadline() throws Exception {
+        LimitedAccessConnectionInterceptor limited = new LimitedAccessConnectionInterceptor(1, arbiter);
+        ClosableQuery first = limited.requestConnection(query(-1));
+        long start = System.currentTimeMillis();
+        try {
+            limited.requestConnection(query(50));
+            fail("The only access is taken, the request should time out at its deadline.");
+        } catch (DeadlineExceededException expected) {
+            assertTrue(System.currentTimeMillis() - start >= 40);
+        }
+        assertEquals(1, numRequested.get());
+        first.close();
+        limited.requestConnection(query(50)).close();
+        assertEquals(2, numRequested.get());
+    }
+
+    @Test
+    public void testExpiredRequestsAreDropped() throws Exception {
+        DeadlineInterceptor deadlines = new DeadlineInterceptor(arbiter);
+        deadlines.requestConnection(query(-1)).close();
+        try {
+            deadlines.requestConnection(query(0));
+            fail("The deadline of the request passed already.");
+        } catch (DeadlineExceededException expected) {
+            assertEquals("The request doesn't get a connection.", 1, numRequested.get());
+        }
+
+        SQLQuery slow = query(20);
+        DeadlineInterceptor waiting = new DeadlineInterceptor(query -> {
+            Thread.sleep(40);
+            return arbiter.requestConnection(query);
+        });
+        try {
+            waiting.requestConnection(slow);
+            fail("The deadline passed while the request waited for a connection.");
+        } catch (DeadlineExceededException expected) {
+            assertEquals("The connection is given back.", 2, numClosed.get());
+        }
+    }
+
+    @Test
+    public void testTimeoutHeaderIsValidated() {
+        SQLQuery query = new SQLQuery("token", "SELECT 1");
+        query.setTimeoutFromHeader(null);
+        assertFalse(query.hasDeadline());
+        query.setTimeoutFromHeader(" 5000 ");
+        assertTrue(query.getRemainingMillis() > 4000);
+        for (String invalid : new String[]{"soon", "", "0", "-1"}) {
+            try {
+                new SQLQuery("token", "SELECT 1").setTimeoutFromHeader(invalid);
+                fail("The timeout " + invalid + " is no positive number of milli seconds.");
+            } catch (InvalidRequestTimeoutException expected) {
+                // answered with 400
+            }
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package ai.libs.sqlrest.interceptors;
+
+import ai.libs.jaicore.db.IDatabaseAdapter;
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.Fakes;
+import ai.libs.sqlrest.model.SQLQuery;
+import org.junit.Test;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class LeasedConnectionArbiterTest {
+
+    private static final SQLQuery QUERY = new SQLQuery("token", "SELECT 1");
+
+    @Test
+    public void testLeasesAreExclusive() throws Exception {
+        List<IDatabaseAdapter> adapters = Arrays.asList(Fakes.adapter(), Fakes.adapter());
+        LeasedConnectionArbiter arbiter = new LeasedConnectionArbiter(t -> adapters, 20, 10);
+        ClosableQuery first = arbiter.requestConnection(QUERY);
+        ClosableQuery second = arbiter.requestConnection(QUERY);
+        assertNotSame(first.getAdapter(), second.getAdapter());
+        try {
+            arbiter.requestConnection(QUERY);
+            fail("All adapters are leased, the request should time out.");
+        } catch (SQLTransientConnectionException expected) {
+            // no adapter was released
+        }
+        first.close();
+        assertSame(first.getAdapter(), arbiter.requestConnection(QUERY).getAdapter());
+    }
+
+    @Test
+    public void testReleasedAdapterIsHandedToWaitingRequest() throws Exception {
+        List<IDatabaseAdapter> adapters = Collections.singletonList(Fakes.adapter());
+        LeasedConnectionArbiter arbiter = new LeasedConnectionArbiter(t -> adapters, 5000, 10);
+        ClosableQuery first = arbiter.requestConnection(QUERY);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ClosableQuery> waiting = executor.submit(() -> arbiter.requestConnection(QUERY));
+            while(arbiter.getNumWaiting("token") == 0) {
+                Thread.sleep(1);
+            }
+            first.close();
+            assertSame(adapters.get(0), waiting.get(5, TimeUnit.SECONDS).getAdapter());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWaitingRequestsAreBounded() throws Exception {
+        List<IDatabaseAdapter> adapters = Collections.singletonList(Fakes.adapter());
+        LeasedConnectionArbiter arbiter = new LeasedConnectionArbiter(t -> adapters, 5000, 0);
+        arbiter.requestConnection(QUERY);
+        long start = System.currentTimeMillis();
+        try {
+            arbiter.requestConnection(QUERY);
+            fail("The wait queue is full, the request should be rejected.");
+        } catch (SQLTransientConnectionException expected) {
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsNeverShareAnAdapter() throws Exception {
+        List<IDatabaseAdapter> adapters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            adapters.add(Fakes.adapter());
+        }
+        LeasedConnectionArbiter arbiter = new LeasedConnectionArbiter(t -> adapters, 10000, 100);
+        Set<IDatabaseAdapter> inUse = ConcurrentHashMap.newKeySet();
+        AtomicBoolean shared = new AtomicBoolean(false);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                futures.add(executor.submit(() -> {
+                    ClosableQuery access = arbiter.requestConnection(QUERY);
+                    if(!inUse.add(access.getAdapter())) {
+                        shared.set(true);
+                    }
+                    inUse.remove(access.getAdapter());
+                    access.close();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertFalse("An adapter was leased by two requests at once.", shared.get());
+        assertEquals(0, arbiter.getNumWaiting("token"));
+    }
+
+}
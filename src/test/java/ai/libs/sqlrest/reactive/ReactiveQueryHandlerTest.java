@@ -0,0 +1,149 @@
+package ai.libs.sqlrest.reactive;
+
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.Fakes;
+import ai.libs.sqlrest.QueryCancellations;
+import ai.libs.sqlrest.QueryExecutors;
+import ai.libs.sqlrest.QueryRuntimeModel;
+import ai.libs.sqlrest.TestQueryExecutors;
+import ai.libs.sqlrest.encoding.FakeResultSet;
+import ai.libs.sqlrest.encoding.JsonRowsWriter;
+import ai.libs.sqlrest.model.SQLQuery;
+import ai.libs.sqlrest.supplier.CustomDatabaseAdapter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Types;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sends queries to the routes of the reactive server, see {@link ReactiveServerConfiguration}, whose adapter
+ * reads the rows from fake result sets.
+ */
+public class ReactiveQueryHandlerTest {
+
+    private static final String QUERY = "{\"token\":\"token\",\"query\":\"SELECT id, name FROM t\"}";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicInteger numConnectionsClosed = new AtomicInteger(0);
+
+    /*
+     * Thrown by the statements if set.
+     */
+    private volatile SQLException failure;
+
+    private final QueryExecutors executors = TestQueryExecutors.create(2);
+
+    private final CustomDatabaseAdapter adapter = new CustomDatabaseAdapter(Fakes.connections(this::createConnection),
+            null, "user", "passwd", "db");
+
+    private final WebTestClient client = WebTestClient.bindToRouterFunction(new ReactiveServerConfiguration()
+            .reactiveQueryRoutes(new ReactiveQueryHandler(query -> {
+                ClosableQuery access = new ClosableQuery(adapter, query);
+                access.addCloseHook(c -> numConnectionsClosed.incrementAndGet());
+                return access;
+            }, executors, mapper, new QueryRuntimeModel(), new QueryCancellations())))
+            .handlerStrategies(HandlerStrategies.builder().exceptionHandler(new StatementTimeoutHandler()).build())
+            .build();
+
+    @After
+    public void shutdown() throws Exception {
+        executors.shutdown();
+        adapter.close();
+    }
+
+    private Connection createConnection() {
+        return Fakes.create(Connection.class, (connection, method, args) ->
+                method.getName().equals("prepareStatement") ? createStatement((Connection) connection) : null);
+    }
+
+    private PreparedStatement createStatement(Connection connection) {
+        return Fakes.create(PreparedStatement.class, (statement, method, args) -> {
+            if (failure != null && method.getName().startsWith("execute")) {
+                throw failure;
+            }
+            switch (method.getName()) {
+                case "executeQuery":
+                    return FakeResultSet.create(new String[]{"id", "name"}, new int[]{Types.INTEGER, Types.VARCHAR},
+                            new String[]{"INT", "VARCHAR"}, new Object[][]{{1, "a"}, {2, "b"}});
+                case "getConnection":
+                    return connection;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @Test
+    public void testRowsOfQueryAreAJsonArray() throws Exception {
+        byte[] body = client.post().uri("/query").contentType(MediaType.APPLICATION_JSON).bodyValue(QUERY)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody().returnResult().getResponseBody();
+        assertEquals(mapper.readTree("[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]"), mapper.readTree(body));
+        assertEquals("The connection is released once the rows are sent.", 1, numConnectionsClosed.get());
+    }
+
+    @Test
+    public void testRowsOfQueryAreNewlineDelimitedJsonIfAccepted() throws Exception {
+        String body = client.post().uri("/query").contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.parseMediaType(JsonRowsWriter.APPLICATION_NDJSON_VALUE)).bodyValue(QUERY)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        assertEquals("{\"id\":1,\"name\":\"a\"}\n{\"id\":2,\"name\":\"b\"}\n", body);
+    }
+
+    @Test
+    public void testTimedOutStatementsAreAnsweredWith504() {
+        failure = new SQLTimeoutException("Statement cancelled due to timeout or client request");
+        client.post().uri("/query").contentType(MediaType.APPLICATION_JSON).bodyValue(QUERY)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        client.post().uri("/update").contentType(MediaType.APPLICATION_JSON).bodyValue(QUERY)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+
+        failure = new SQLException("Query execution was interrupted", "70100");
+        client.post().uri("/insert").contentType(MediaType.APPLICATION_JSON).bodyValue(QUERY)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        assertEquals("The connections are released.", 3, numConnectionsClosed.get());
+
+        failure = new SQLException("Table 't' doesn't exist", "42S02");
+        client.post().uri("/update").contentType(MediaType.APPLICATION_JSON).bodyValue(QUERY)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    @Test
+    public void testExpiredDeadlineIsAnsweredWith504() {
+        client.post().uri("/update").contentType(MediaType.APPLICATION_JSON).header(SQLQuery.TIMEOUT_HEADER, "1")
+                .bodyValue(QUERY)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    @Test
+    public void testInvalidRequestTimeoutIsRejected() {
+        client.post().uri("/query").contentType(MediaType.APPLICATION_JSON).header(SQLQuery.TIMEOUT_HEADER, "soon")
+                .bodyValue(QUERY)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.BAD_REQUEST);
+        assertEquals("The query doesn't run.", 0, numConnectionsClosed.get());
+    }
+
+}
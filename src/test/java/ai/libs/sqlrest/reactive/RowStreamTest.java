@@ -0,0 +1,139 @@
+package ai.libs.sqlrest.reactive;
+
+import ai.libs.sqlrest.ClosableQuery;
+import ai.libs.sqlrest.Fakes;
+import ai.libs.sqlrest.encoding.FakeResultSet;
+import ai.libs.sqlrest.model.SQLQuery;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RowStreamTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicInteger numCursorsClosed = new AtomicInteger(0);
+
+    private final AtomicInteger numConnectionsClosed = new AtomicInteger(0);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static ResultSet rows(int numRows) {
+        Object[][] rows = new Object[numRows][];
+        for (int i = 0; i < numRows; i++) {
+            rows[i] = new Object[]{i, "row " + i};
+        }
+        return FakeResultSet.create(new String[]{"id", "name"}, new int[]{Types.INTEGER, Types.VARCHAR},
+                new String[]{"INT", "VARCHAR"}, rows);
+    }
+
+    private RowStream open(ResultSet resultSet, boolean ndjson) throws Exception {
+        ClosableQuery connection = new ClosableQuery(null, new SQLQuery("token", "SELECT id, name FROM t"));
+        connection.addCloseHook(c -> numConnectionsClosed.incrementAndGet());
+        return new RowStream(connection, resultSet, numCursorsClosed::incrementAndGet, mapper, ndjson);
+    }
+
+    private static String readAll(RowStream stream) throws Exception {
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        byte[] chunk;
+        while ((chunk = stream.nextChunk()) != null) {
+            all.write(chunk);
+        }
+        return new String(all.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRowsAreAJsonArray() throws Exception {
+        try (RowStream stream = open(rows(2), false)) {
+            assertEquals(mapper.readTree("[{\"id\":0,\"name\":\"row 0\"},{\"id\":1,\"name\":\"row 1\"}]"),
+                    mapper.readTree(readAll(stream)));
+        }
+        assertEquals(1, numCursorsClosed.get());
+        assertEquals(1, numConnectionsClosed.get());
+
+        try (RowStream stream = open(rows(0), false)) {
+            assertEquals("[]", readAll(stream));
+        }
+    }
+
+    @Test
+    public void testLargeResultsAreSentInChunks() throws Exception {
+        int numRows = 2000;
+        try (RowStream stream = open(rows(numRows), false)) {
+            byte[] first = stream.nextChunk();
+            assertTrue("A chunk is sent once it exceeds the chunk size.", first.length >= RowStream.CHUNK_SIZE);
+            assertTrue(first.length < 2 * RowStream.CHUNK_SIZE);
+            JsonNode array = mapper.readTree(new String(first, StandardCharsets.UTF_8) + readAll(stream));
+            assertEquals(numRows, array.size());
+            assertEquals(numRows - 1, array.get(numRows - 1).get("id").asInt());
+        }
+    }
+
+    @Test
+    public void testRowsAreNewlineDelimitedJson() throws Exception {
+        String ndjson;
+        try (RowStream stream = open(rows(3), true)) {
+            ndjson = readAll(stream);
+        }
+        assertTrue(ndjson.endsWith("\n"));
+        String[] lines = ndjson.split("\n");
+        assertEquals(3, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(mapper.readTree("{\"id\":" + i + ",\"name\":\"row " + i + "\"}"), mapper.readTree(lines[i]));
+        }
+    }
+
+    @Test
+    public void testStreamClosedWhileReadingIsClosedOnceTheChunkIsRead() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        ResultSet rows = rows(2);
+        ResultSet blocking = Fakes.create(ResultSet.class, (proxy, method, args) -> {
+            if (method.getName().equals("next") && reading.getCount() > 0) {
+                reading.countDown();
+                closed.await();
+            }
+            try {
+                return method.invoke(rows, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        RowStream stream = open(blocking, false);
+        Future<byte[]> chunk = executor.submit(stream::nextChunk);
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        stream.close();
+        assertEquals("The result set isn't closed under the reading thread.", 0, numCursorsClosed.get());
+        assertEquals(0, numConnectionsClosed.get());
+        closed.countDown();
+
+        assertEquals(2, mapper.readTree(chunk.get(5, TimeUnit.SECONDS)).size());
+        assertEquals(1, numCursorsClosed.get());
+        assertEquals(1, numConnectionsClosed.get());
+        assertNull(stream.nextChunk());
+        stream.close();
+        assertEquals("The query is closed once.", 1, numCursorsClosed.get());
+    }
+
+}
@@ -0,0 +1,120 @@
+package ai.libs.sqlrest.supplier;
+
+import ai.libs.sqlrest.Fakes;
+import ai.libs.sqlrest.IServerConfig;
+import ai.libs.sqlrest.model.DeadlineExceededException;
+import org.aeonbits.owner.ConfigCache;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class BaseConnectionHandlerTest {
+
+    private final Set<PreparedStatement> closedStatements = new HashSet<>();
+
+    private int numPrepared = 0;
+
+    private final BaseConnectionHandler handler = new BaseConnectionHandler(Fakes.connections(this::createConnection), null, "user", "passwd", "db", new ConnectionMaintainer(ConfigCache.getOrCreate(IServerConfig.class)));
+
+    private Connection createConnection() {
+        return Fakes.create(Connection.class, (connection, method, args) -> {
+            if (method.getName().equals("prepareStatement")) {
+                numPrepared++;
+                return createStatement((Connection) connection);
+            }
+            return null;
+        });
+    }
+
+    private PreparedStatement createStatement(Connection connection) {
+        return Fakes.create(PreparedStatement.class, (statement, method, args) -> {
+            switch (method.getName()) {
+                case "getConnection":
+                    return connection;
+                case "close":
+                    closedStatements.add((PreparedStatement) statement);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @Test
+    public void testStatementsAreReusedPerSql() throws SQLException {
+        handler.acquire();
+        PreparedStatement first, second;
+        try (StatementLease lease = handler.prepare("SELECT ?", false, true)) {
+            first = lease.getStatement();
+            try (StatementLease concurrent = handler.prepare("SELECT ?", false, true)) {
+                second = concurrent.getStatement();
+                assertNotSame("A statement in use isn't handed out twice.", first, second);
+            }
+        }
+        assertTrue("Only one statement per SQL is cached.", closedStatements.contains(first));
+        try (StatementLease lease = handler.prepare("SELECT ?", false, true)) {
+            assertSame(second, lease.getStatement());
+        }
+        assertEquals(2, numPrepared);
+        assertEquals(1, handler.getNumCachedStatements());
+
+        try (StatementLease lease = handler.prepare("SELECT ?", true, true)) {
+            assertNotSame("Statements returning generated keys are cached separately.", second, lease.getStatement());
+        }
+        try (StatementLease lease = handler.prepare("SELECT 1", false, false)) {
+            assertNotNull(lease.getStatement());
+        }
+        assertEquals(2, handler.getNumCachedStatements());
+        handler.release();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedStatementIsEvicted() throws SQLException {
+        int cacheSize = ConfigCache.getOrCreate(IServerConfig.class).getStatementCacheSize();
+        handler.acquire();
+        PreparedStatement leastRecentlyUsed = null;
+        for (int i = 0; i <= cacheSize; i++) {
+            try (StatementLease lease = handler.prepare("SELECT " + i + ", ?", false, true)) {
+                if (i == 0) {
+                    leastRecentlyUsed = lease.getStatement();
+                }
+            }
+        }
+        assertEquals(cacheSize, handler.getNumCachedStatements());
+        assertTrue(closedStatements.contains(leastRecentlyUsed));
+        handler.release();
+    }
+
+    @Test
+    public void testStatementsOfReplacedConnectionAreDropped() throws SQLException {
+        handler.acquire();
+        StatementLease lease = handler.prepare("SELECT ?", false, true);
+        handler.release();
+        handler.renewConnection();
+        lease.close();
+        assertEquals(0, handler.getNumCachedStatements());
+        assertTrue(closedStatements.contains(lease.getStatement()));
+    }
+
+    @Test
+    public void testWaitForExclusiveHolderEndsAtTheDeadline() throws Exception {
+        handler.acquireExclusive(1000);
+        try {
+            new QueryCancellation("token", System.currentTimeMillis() + 200).run(handler::acquire);
+            fail("The connection is held exclusively.");
+        } catch (DeadlineExceededException expected) {
+            // The deadline passed while the request waited.
+        } finally {
+            handler.release();
+        }
+        new QueryCancellation("token", System.currentTimeMillis() + 200).run(handler::acquire);
+        handler.release();
+    }
+
+}
@@ -0,0 +1,84 @@
+package ai.libs.sqlrest.supplier;
+
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    private final CircuitBreaker breaker = new CircuitBreaker("host", 3, 1000, 3000, now::get);
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertFalse(breaker.isAvailable());
+        assertEquals(1000, breaker.getRemainingOpenTime());
+    }
+
+    @Test
+    public void testHalfOpenLetsSingleProbeThrough() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        now.set(1000);
+        assertTrue(breaker.isAvailable());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse("Only one probe is allowed at once.", breaker.tryAcquire());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testProbeThatFailsBeforeConnectingReopens() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        now.set(1000);
+        DefaultConnectionSupplier supplier = new DefaultConnectionSupplier() {
+            @Override
+            DataSource getDataSource(String host, String user, String password, String database) {
+                throw new IllegalStateException("Invalid configuration of the data source.");
+            }
+        };
+        try {
+            supplier.get(breaker, "host", "user", "passwd", "db");
+            fail("The data source can't be created.");
+        } catch (IllegalStateException expected) {
+            // the probe failed
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now.set(10000);
+        assertTrue("The host is probed again.", breaker.tryAcquire());
+    }
+
+    @Test
+    public void testOpenDurationGrowsWithFailedProbes() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        now.set(1000);
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        assertEquals(2000, breaker.getRemainingOpenTime());
+        now.set(3000);
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        assertEquals("The open duration is capped.", 3000, breaker.getRemainingOpenTime());
+    }
+
+}
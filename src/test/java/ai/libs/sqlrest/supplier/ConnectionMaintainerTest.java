@@ -0,0 +1,141 @@
+package ai.libs.sqlrest.supplier;
+
+import ai.libs.sqlrest.Fakes;
+import ai.libs.sqlrest.IServerConfig;
+import org.aeonbits.owner.ConfigFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConnectionMaintainerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final List<Connection> opened = Collections.synchronizedList(new ArrayList<>());
+
+    private final Set<Connection> closed = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    private final Set<Connection> broken = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    /*
+     * Counted down once a validation started, which then waits for the proceed latch.
+     */
+    private final CountDownLatch validating = new CountDownLatch(1);
+
+    private final CountDownLatch proceed = new CountDownLatch(1);
+
+    private volatile boolean blockValidation = false;
+
+    private final ConnectionMaintainer maintainer;
+
+    private final BaseConnectionHandler handler;
+
+    public ConnectionMaintainerTest() {
+        Map<String, String> properties = new HashMap<>();
+        // The handler is never used before the tests validate it, so it is due for validation at once.
+        properties.put(IServerConfig.K_CONNECTION_PING_INTERVAL, "60000");
+        properties.put(IServerConfig.K_CONNECTION_VALIDATION_QUERY, "");
+        maintainer = new ConnectionMaintainer(ConfigFactory.create(IServerConfig.class, properties));
+        handler = new BaseConnectionHandler(Fakes.connections(this::createConnection), null, "user", "passwd", "db", maintainer);
+    }
+
+    @After
+    public void shutdown() {
+        proceed.countDown();
+        executor.shutdownNow();
+    }
+
+    private Connection createConnection() {
+        Connection created = Fakes.create(Connection.class, (connection, method, args) -> {
+            switch (method.getName()) {
+                case "isValid":
+                    if (blockValidation) {
+                        validating.countDown();
+                        proceed.await();
+                    }
+                    return !broken.contains(connection);
+                case "isClosed":
+                    return closed.contains(connection);
+                case "close":
+                    closed.add((Connection) connection);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        opened.add(created);
+        return created;
+    }
+
+    @Test
+    public void testBrokenIdleConnectionIsReplaced() {
+        maintainer.maintain();
+        assertEquals("The connection is opened in the background.", 1, opened.size());
+        maintainer.maintain();
+        assertEquals("A valid connection is kept.", 1, opened.size());
+
+        broken.add(opened.get(0));
+        maintainer.maintain();
+        assertEquals(2, opened.size());
+        assertTrue(closed.contains(opened.get(0)));
+        assertFalse(closed.contains(opened.get(1)));
+    }
+
+    @Test
+    public void testConnectionInUseIsKeptIfValidationFails() throws Exception {
+        maintainer.maintain();
+        Connection connection = opened.get(0);
+        blockValidation = true;
+        broken.add(connection);
+        Future<?> maintenance = executor.submit(maintainer::maintain);
+        assertTrue(validating.await(5, TimeUnit.SECONDS));
+
+        Future<Connection> acquired = executor.submit(handler::acquire);
+        assertSame("The connection is acquired while it is validated.", connection, acquired.get(5, TimeUnit.SECONDS));
+        proceed.countDown();
+        maintenance.get(5, TimeUnit.SECONDS);
+
+        assertFalse("The connection in use isn't closed.", closed.contains(connection));
+        assertSame(connection, handler.getConnection());
+        handler.release();
+    }
+
+    @Test
+    public void testConnectionReplacedDuringValidationIsKept() throws Exception {
+        maintainer.maintain();
+        Connection validated = opened.get(0);
+        blockValidation = true;
+        broken.add(validated);
+        Future<?> maintenance = executor.submit(maintainer::maintain);
+        assertTrue(validating.await(5, TimeUnit.SECONDS));
+
+        executor.submit(() -> {
+            handler.renewConnection();
+            return null;
+        }).get(5, TimeUnit.SECONDS);
+        Connection replacement = opened.get(1);
+        assertTrue(closed.contains(validated));
+        proceed.countDown();
+        maintenance.get(5, TimeUnit.SECONDS);
+
+        assertEquals("The replacement isn't replaced again.", 2, opened.size());
+        assertFalse(closed.contains(replacement));
+        assertSame(replacement, handler.getConnection());
+    }
+
+}
@@ -0,0 +1,169 @@
+package ai.libs.sqlrest.supplier;
+
+import ai.libs.sqlrest.Fakes;
+import ai.libs.sqlrest.encoding.BinaryResultReader;
+import ai.libs.sqlrest.encoding.BinaryResultWriter;
+import ai.libs.sqlrest.encoding.ColumnarJsonReader;
+import ai.libs.sqlrest.encoding.ColumnarJsonWriter;
+import ai.libs.sqlrest.encoding.FakeResultSet;
+import ai.libs.sqlrest.encoding.RowReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs statements with an adapter whose statements record the values of their batches and their fetch size.
+ * The inserted rows were encoded and decoded in the formats of the bulk inserts before.
+ */
+public class CustomDatabaseAdapterTest {
+
+    private final List<String> preparedSql = new ArrayList<>();
+
+    private final List<List<List<Object>>> batches = new ArrayList<>();
+
+    private final Map<PreparedStatement, Integer> fetchSizes = new HashMap<>();
+
+    private final CustomDatabaseAdapter adapter = new CustomDatabaseAdapter(Fakes.connections(this::createConnection),
+            null, "user", "passwd", "db");
+
+    @After
+    public void close() {
+        adapter.close();
+    }
+
+    private Connection createConnection() {
+        return Fakes.create(Connection.class, (connection, method, args) -> {
+            if (method.getName().equals("prepareStatement")) {
+                preparedSql.add((String) args[0]);
+                return createStatement((Connection) connection);
+            }
+            return null;
+        });
+    }
+
+    private PreparedStatement createStatement(Connection connection) {
+        Object[] values = new Object[3];
+        List<List<Object>> batch = new ArrayList<>();
+        int[] numInserted = {0};
+        return Fakes.create(PreparedStatement.class, (statement, method, args) -> {
+            switch (method.getName()) {
+                case "setNull":
+                    values[(int) args[0] - 1] = null;
+                    return null;
+                case "setInt":
+                case "setLong":
+                case "setDouble":
+                case "setString":
+                    values[(int) args[0] - 1] = args[1];
+                    return null;
+                case "addBatch":
+                    batch.add(new ArrayList<>(Arrays.asList(values)));
+                    return null;
+                case "executeBatch":
+                    batches.add(new ArrayList<>(batch));
+                    numInserted[0] += batch.size();
+                    batch.clear();
+                    return new int[0];
+                case "getGeneratedKeys":
+                    Object[][] keys = new Object[batches.get(batches.size() - 1).size()][];
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = new Object[]{numInserted[0] - keys.length + i + 1};
+                    }
+                    return FakeResultSet.create(new String[]{"id"}, new int[]{Types.INTEGER}, new String[]{"INT"}, keys);
+                case "getFetchSize":
+                    return fetchSizes.getOrDefault(statement, 0);
+                case "setFetchSize":
+                    fetchSizes.put((PreparedStatement) statement, (Integer) args[0]);
+                    return null;
+                case "executeQuery":
+                    return FakeResultSet.create(new String[]{"id"}, new int[]{Types.INTEGER}, new String[]{"INT"},
+                            new Object[0][]);
+                case "getConnection":
+                    return connection;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static ResultSet rows() {
+        return FakeResultSet.create(new String[]{"id", "name", "x"}, new int[]{Types.INTEGER, Types.VARCHAR, Types.DOUBLE},
+                new String[]{"INT", "VARCHAR", "DOUBLE"}, new Object[][]{{1, "a", 1.5}, {2, null, 2.5}, {3, "c", -0.5}});
+    }
+
+    private int[] insert(RowReader reader) throws Exception {
+        return adapter.insertRows("t", reader.getColumnNames(), reader::nextRow, 2);
+    }
+
+    @Test
+    public void testRowsOfColumnarJsonAreInsertedInChunks() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectMapper mapper = new ObjectMapper();
+        new ColumnarJsonWriter(mapper).write(rows(), out);
+        int[] ids = insert(new ColumnarJsonReader(mapper.getFactory(), new ByteArrayInputStream(out.toByteArray())));
+
+        assertEquals(Collections.singletonList("INSERT INTO `t` (`id`, `name`, `x`) VALUES (?, ?, ?)"), preparedSql);
+        assertEquals(Arrays.asList(
+                Arrays.asList(Arrays.asList(1, "a", 1.5), Arrays.asList(2, null, 2.5)),
+                Collections.singletonList(Arrays.asList(3, "c", -0.5))), batches);
+        assertArrayEquals(new int[]{1, 2, 3}, ids);
+    }
+
+    @Test
+    public void testRowsOfBinaryResultAreInsertedInChunks() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryResultWriter().write(rows(), out);
+        int[] ids = insert(new BinaryResultReader(new ByteArrayInputStream(out.toByteArray())));
+
+        // The binary encoding has integers as longs.
+        assertEquals(Arrays.asList(
+                Arrays.asList(Arrays.asList(1L, "a", 1.5), Arrays.asList(2L, null, 2.5)),
+                Collections.singletonList(Arrays.asList(3L, "c", -0.5))), batches);
+        assertArrayEquals(new int[]{1, 2, 3}, ids);
+    }
+
+    @Test
+    public void testChunkSizeNeedsToBePositive() throws Exception {
+        try {
+            adapter.insertRows("t", Collections.singletonList("id"), () -> new Object[]{1}, 0);
+            fail("Rows would never be sent in chunks of 0 rows.");
+        } catch (IllegalArgumentException expected) {
+            // invalid chunk size
+        }
+        assertTrue("Nothing is inserted.", batches.isEmpty());
+    }
+
+    @Test
+    public void testFetchSizeOfCursorIsResetOnceItIsClosed() throws Exception {
+        String sql = "SELECT id FROM t WHERE id > ?";
+        try (QueryCursor cursor = adapter.openCursor(sql, Collections.singletonList(0), 100)) {
+            assertFalse(cursor.getResultSet().next());
+            assertEquals(Collections.singletonList(100), new ArrayList<>(fetchSizes.values()));
+        }
+        assertEquals("The cached statement has its default fetch size again.",
+                Collections.singletonList(0), new ArrayList<>(fetchSizes.values()));
+
+        try (QueryCursor cursor = adapter.openCursor(sql, Collections.singletonList(1), 50)) {
+            assertFalse(cursor.getResultSet().next());
+            assertEquals("The statement is reused.", 1, preparedSql.size());
+            assertEquals(Collections.singletonList(50), new ArrayList<>(fetchSizes.values()));
+        }
+        assertEquals(Collections.singletonList(0), new ArrayList<>(fetchSizes.values()));
+    }
+
+}
@@ -0,0 +1,93 @@
+package ai.libs.sqlrest.supplier;
+
+import ai.libs.sqlrest.Fakes;
+import ai.libs.sqlrest.model.DeadlineExceededException;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class QueryCancellationTest {
+
+    private final AtomicInteger numCancelled = new AtomicInteger(0);
+
+    private final AtomicInteger queryTimeout = new AtomicInteger(0);
+
+    private final Statement statement = Fakes.create(Statement.class, (proxy, method, args) -> {
+        if (method.getName().equals("cancel")) {
+            numCancelled.incrementAndGet();
+            return null;
+        } else if (method.getName().equals("setQueryTimeout")) {
+            queryTimeout.set((int) args[0]);
+            return null;
+        }
+        throw new UnsupportedOperationException(method.getName());
+    });
+
+    @Test
+    public void testRunningStatementsAreCancelled() throws Exception {
+        QueryCancellation cancellation = new QueryCancellation();
+        assertNull(QueryCancellation.current());
+        cancellation.run(() -> {
+            assertSame(cancellation, QueryCancellation.current());
+            cancellation.register(statement);
+            return null;
+        });
+        assertNull("The cancellation is only bound while the work runs.", QueryCancellation.current());
+
+        assertTrue("The statement is still registered.", cancellation.cancel());
+        assertEquals(1, numCancelled.get());
+        assertFalse("A request is cancelled once.", cancellation.cancel());
+        assertEquals(1, numCancelled.get());
+        try {
+            cancellation.register(statement);
+            fail("No statement runs after the cancellation.");
+        } catch (SQLException expected) {
+            assertEquals(QueryCancellation.CANCELLED_SQL_STATE, expected.getSQLState());
+        }
+    }
+
+    @Test
+    public void testWorkIsCancelledBeforeItStartsButNotAfterItFinished() throws Exception {
+        QueryCancellation queued = new QueryCancellation();
+        assertTrue(queued.cancel());
+        try {
+            queued.run(() -> {
+                fail("The work of a cancelled request doesn't run.");
+                return null;
+            });
+        } catch (SQLException expected) {
+            assertEquals(QueryCancellation.CANCELLED_SQL_STATE, expected.getSQLState());
+        }
+
+        QueryCancellation done = new QueryCancellation();
+        done.run(() -> {
+            done.register(statement);
+            done.unregister(statement);
+            return null;
+        });
+        assertFalse("Nothing is left to cancel.", done.cancel());
+        assertEquals(0, numCancelled.get());
+    }
+
+    @Test
+    public void testStatementsTimeOutAtTheDeadline() throws Exception {
+        QueryCancellation cancellation = new QueryCancellation("token", System.currentTimeMillis() + 2500);
+        assertTrue(cancellation.register(statement));
+        assertEquals("The timeout is rounded up to whole seconds.", 3, queryTimeout.get());
+        cancellation.unregister(statement);
+
+        QueryCancellation expired = new QueryCancellation("token", System.currentTimeMillis() - 1);
+        try {
+            expired.register(statement);
+            fail("No statement runs after the deadline.");
+        } catch (DeadlineExceededException expected) {
+            // dropped before touching the database
+        }
+        assertFalse(new QueryCancellation().register(statement));
+    }
+
+}
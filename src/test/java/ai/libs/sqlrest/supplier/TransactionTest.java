@@ -0,0 +1,75 @@
+package ai.libs.sqlrest.supplier;
+
+import ai.libs.sqlrest.Fakes;
+import ai.libs.sqlrest.IServerConfig;
+import org.aeonbits.owner.ConfigCache;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TransactionTest {
+
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+    private final BaseConnectionHandler handler = new BaseConnectionHandler(Fakes.connections(
+            () -> Fakes.create(Connection.class, (proxy, method, args) -> {
+                calls.add(method.getName() + (args == null ? "" : args[0]));
+                return null;
+            })), null, "user", "passwd", "db", new ConnectionMaintainer(ConfigCache.getOrCreate(IServerConfig.class)));
+
+    @Test
+    public void testUncommittedTransactionIsRolledBack() throws SQLException {
+        Transaction uncommitted = new Transaction(handler, 1000);
+        assertTrue(calls.contains("setAutoCommitfalse"));
+        uncommitted.close();
+        assertEquals("rollback", calls.get(calls.size() - 2));
+        assertEquals("setAutoCommittrue", calls.get(calls.size() - 1));
+
+        calls.clear();
+        try (Transaction transaction = new Transaction(handler, 1000)) {
+            transaction.commit();
+        }
+        assertFalse(calls.contains("rollback"));
+        assertTrue(calls.contains("commit"));
+    }
+
+    @Test
+    public void testTransactionHoldsConnectionExclusively() throws Exception {
+        handler.acquire();
+        try {
+            new Transaction(handler, 50).close();
+            fail("The connection is in use.");
+        } catch (SQLException expected) {
+            // waited for the other user
+        }
+        handler.release();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Transaction transaction = new Transaction(handler, 1000);
+        try {
+            Thread other = new Thread(() -> {
+                try {
+                    handler.acquire();
+                    handler.release();
+                    acquired.countDown();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            other.start();
+            assertFalse("Others wait for the transaction.", acquired.await(100, TimeUnit.MILLISECONDS));
+        } finally {
+            transaction.close();
+        }
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+    }
+
+}